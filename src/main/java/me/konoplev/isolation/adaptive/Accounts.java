@@ -0,0 +1,15 @@
+package me.konoplev.isolation.adaptive;
+
+/**
+ * The rows of {@code account} as seen by a transaction of {@link AdaptiveTransactions}. The {@link Strategy}
+ * decides whether a read locks the row, and whether a write goes to the database at once or at the end.
+ * <p>
+ * Only single rows can be read, a predicate (e.g. "all accounts of a user") can't be validated at the end.
+ */
+public interface Accounts {
+
+  int amount(int accountId);
+
+  void setAmount(int accountId, int amount);
+
+}
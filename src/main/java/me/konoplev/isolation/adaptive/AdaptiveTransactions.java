@@ -0,0 +1,156 @@
+package me.konoplev.isolation.adaptive;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import me.konoplev.isolation.util.TransactionsWrapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs transactions of a {@link TransactionClass} with the {@link Strategy} that has recently been the cheapest
+ * for the class, instead of one picked for good at the call site. Each transaction is retried on
+ * {@link ConcurrencyFailureException}, or a serialization failure or deadlock raised by the commit,
+ * up to {@code isolation.adaptive.max-attempts} times, so the work may run more than once and shouldn't have
+ * side effects besides {@link Accounts}.
+ * <p>
+ * The decisions are published to the {@link MeterRegistry} of the application, or to the global registry
+ * of Micrometer if there is none, tagged with the transaction class and the strategy:
+ * <ul>
+ *   <li>{@code isolation.adaptive.selected} is 1 for the strategy in use and 0 for the others</li>
+ *   <li>{@code isolation.adaptive.abort.rate} and {@code isolation.adaptive.cost} are the averages the choice
+ *   is based on</li>
+ *   <li>{@code isolation.adaptive.switches} counts the changes of the strategy</li>
+ *   <li>{@code isolation.adaptive.transactions} times the transactions, tagged with the outcome too,
+ *   and {@code isolation.adaptive.aborts} counts the aborted attempts</li>
+ * </ul>
+ */
+@Service
+public class AdaptiveTransactions {
+
+  private static final String SERIALIZATION_FAILURE = "40001";
+  private static final String DEADLOCK_DETECTED = "40P01";
+
+  private final TransactionsWrapper transactionsWrapper;
+  private final JdbcTemplate jdbcTemplate;
+  private final MeterRegistry meterRegistry;
+  private final int maxAttempts;
+  private final int explorationPeriod;
+  private final double maxAbortRate;
+  private final Map<TransactionClass, StrategySelector> selectors = new ConcurrentHashMap<>();
+
+  public AdaptiveTransactions(TransactionsWrapper transactionsWrapper,
+                              JdbcTemplate jdbcTemplate,
+                              ObjectProvider<MeterRegistry> meterRegistry,
+                              @Value("${isolation.adaptive.max-attempts:10}") int maxAttempts,
+                              @Value("${isolation.adaptive.exploration-period:50}") int explorationPeriod,
+                              @Value("${isolation.adaptive.max-abort-rate:0.5}") double maxAbortRate) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("A transaction needs at least one attempt: " + maxAttempts);
+    }
+    this.transactionsWrapper = transactionsWrapper;
+    this.jdbcTemplate = jdbcTemplate;
+    this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+    this.maxAttempts = maxAttempts;
+    this.explorationPeriod = explorationPeriod;
+    this.maxAbortRate = maxAbortRate;
+  }
+
+  public <T> T execute(TransactionClass transactionClass, AccountsWork<T> work) {
+    StrategySelector selector = selectors.computeIfAbsent(transactionClass, this::newSelector);
+    Strategy strategy = selector.next();
+    long startedAt = System.nanoTime();
+    int aborts = 0;
+    while (true) {
+      try {
+        T result = strategy.attempt(transactionsWrapper, jdbcTemplate, transactionClass.prevents(), work);
+        observe(transactionClass, selector, strategy, startedAt, aborts, true);
+        return result;
+      } catch (RuntimeException e) {
+        if (!isConcurrencyFailure(e)) {
+          throw e;
+        }
+        aborts++;
+        Counter.builder("isolation.adaptive.aborts").tags(tags(transactionClass, strategy))
+            .register(meterRegistry).increment();
+        if (aborts == maxAttempts) {
+          observe(transactionClass, selector, strategy, startedAt, aborts, false);
+          throw e;
+        }
+      }
+    }
+  }
+
+  public Strategy currentStrategy(TransactionClass transactionClass) {
+    StrategySelector selector = selectors.get(transactionClass);
+    return selector == null ? Strategy.SERIALIZABLE : selector.current();
+  }
+
+  private void observe(TransactionClass transactionClass, StrategySelector selector, Strategy strategy,
+                       long startedAt, int aborts, boolean committed) {
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - startedAt);
+    Timer.builder("isolation.adaptive.transactions")
+        .tags(tags(transactionClass, strategy).and("outcome", committed ? "committed" : "failed"))
+        .register(meterRegistry).record(elapsed);
+    if (selector.observe(strategy, elapsed, aborts, committed)) {
+      Strategy current = selector.current();
+      Counter.builder("isolation.adaptive.switches").tags(tags(transactionClass, current))
+          .register(meterRegistry).increment();
+      System.out.println(transactionClass.name() + " switched to " + current + ": abort rate "
+          + selector.abortRate(current) + ", " + selector.costSeconds(current) + " s per transaction");
+    }
+  }
+
+  private StrategySelector newSelector(TransactionClass transactionClass) {
+    var selector = new StrategySelector(explorationPeriod, maxAbortRate);
+    for (Strategy strategy : Strategy.values()) {
+      Tags tags = tags(transactionClass, strategy);
+      Gauge.builder("isolation.adaptive.selected", selector, s -> s.current() == strategy ? 1 : 0)
+          .tags(tags).register(meterRegistry);
+      Gauge.builder("isolation.adaptive.abort.rate", selector, s -> s.abortRate(strategy))
+          .tags(tags).register(meterRegistry);
+      Gauge.builder("isolation.adaptive.cost", selector, s -> s.costSeconds(strategy))
+          .tags(tags).baseUnit("seconds").register(meterRegistry);
+    }
+    return selector;
+  }
+
+  /**
+   * A serialization failure raised by the commit, as Postgres reports write skews, isn't translated into
+   * a {@link ConcurrencyFailureException} by {@code HibernateJpaDialect}, it's only found by its SQL state.
+   */
+  static boolean isConcurrencyFailure(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof ConcurrencyFailureException) {
+        return true;
+      }
+      if (cause instanceof SQLException sqlException
+          && (SERIALIZATION_FAILURE.equals(sqlException.getSQLState())
+          || DEADLOCK_DETECTED.equals(sqlException.getSQLState()))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Tags tags(TransactionClass transactionClass, Strategy strategy) {
+    return Tags.of("class", transactionClass.name(), "strategy", strategy.name());
+  }
+
+  @FunctionalInterface
+  public interface AccountsWork<T> {
+    T run(Accounts accounts);
+  }
+
+}
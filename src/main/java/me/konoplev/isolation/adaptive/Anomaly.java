@@ -0,0 +1,22 @@
+package me.konoplev.isolation.adaptive;
+
+/**
+ * The anomaly a {@link TransactionClass} must not run into. Every {@link Strategy} prevents both,
+ * they differ in what {@link Strategy#OPTIMISTIC} has to check at the end of the transaction.
+ */
+public enum Anomaly {
+  /**
+   * Two transactions read the same row and both write it, one of the writes is lost.
+   * It's enough to check that the rows written haven't changed since they were read.
+   */
+  LOST_UPDATE,
+  /**
+   * Two transactions check an invariant over the same rows and write different ones, together they break it.
+   * Every row read has to be unchanged at the end, not only the ones written.
+   */
+  WRITE_SKEW;
+
+  boolean validatesReadOnlyRows() {
+    return this == WRITE_SKEW;
+  }
+}
@@ -0,0 +1,123 @@
+package me.konoplev.isolation.adaptive;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.konoplev.isolation.adaptive.AdaptiveTransactions.AccountsWork;
+import me.konoplev.isolation.util.TransactionsWrapper;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Ways to run a transaction of a {@link TransactionClass} that prevent its {@link Anomaly}. Each of them can
+ * fail with a {@code ConcurrencyFailureException}, {@link AdaptiveTransactions} retries the transaction then.
+ */
+public enum Strategy {
+  /**
+   * Plain reads and writes, the database aborts one of the conflicting transactions.
+   */
+  SERIALIZABLE {
+    @Override
+    <T> T attempt(TransactionsWrapper transactions, JdbcTemplate jdbcTemplate, Anomaly anomaly, AccountsWork<T> work) {
+      var result = new AtomicReference<T>();
+      transactions.serializable(() -> result.set(work.run(new DirectAccounts(jdbcTemplate, ""))));
+      return result.get();
+    }
+  },
+  /**
+   * Every row read is locked until the end of the transaction, conflicting transactions wait for each other.
+   * Only deadlocks abort.
+   */
+  SELECT_FOR_UPDATE {
+    @Override
+    <T> T attempt(TransactionsWrapper transactions, JdbcTemplate jdbcTemplate, Anomaly anomaly, AccountsWork<T> work) {
+      var result = new AtomicReference<T>();
+      transactions.readCommitted(() -> result.set(work.run(new DirectAccounts(jdbcTemplate, " for update"))));
+      return result.get();
+    }
+  },
+  /**
+   * Reads lock nothing, writes are kept until the end of the transaction. Then the rows are locked in the order
+   * of their ids and the writes are applied only if the rows still have the amounts that were read. Rows read but
+   * not written are checked too if the anomaly is {@link Anomaly#WRITE_SKEW}.
+   */
+  OPTIMISTIC {
+    @Override
+    <T> T attempt(TransactionsWrapper transactions, JdbcTemplate jdbcTemplate, Anomaly anomaly, AccountsWork<T> work) {
+      var result = new AtomicReference<T>();
+      transactions.readCommitted(() -> {
+        var accounts = new OptimisticAccounts(jdbcTemplate);
+        result.set(work.run(accounts));
+        accounts.validateAndWrite(anomaly);
+      });
+      return result.get();
+    }
+  };
+
+  abstract <T> T attempt(TransactionsWrapper transactions, JdbcTemplate jdbcTemplate, Anomaly anomaly, AccountsWork<T> work);
+
+  private record DirectAccounts(JdbcTemplate jdbcTemplate, String lockClause) implements Accounts {
+
+    @Override
+    public int amount(int accountId) {
+      return jdbcTemplate.queryForObject("select amount from account where id = ?" + lockClause, Integer.class, accountId);
+    }
+
+    @Override
+    public void setAmount(int accountId, int amount) {
+      jdbcTemplate.update("update account set amount = ? where id = ?", amount, accountId);
+    }
+  }
+
+  private static class OptimisticAccounts implements Accounts {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, Integer> read = new HashMap<>();
+    private final Map<Integer, Integer> written = new TreeMap<>();
+
+    private OptimisticAccounts(JdbcTemplate jdbcTemplate) {
+      this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int amount(int accountId) {
+      Integer amount = written.get(accountId);
+      if (amount != null) {
+        return amount;
+      }
+      // the transaction has to see the amount it will validate
+      return read.computeIfAbsent(accountId,
+          id -> jdbcTemplate.queryForObject("select amount from account where id = ?", Integer.class, id));
+    }
+
+    @Override
+    public void setAmount(int accountId, int amount) {
+      written.put(accountId, amount);
+    }
+
+    // Comparing amounts instead of versions is enough: the transaction decided on the amounts only,
+    // it would decide the same on a row that changed and changed back
+    void validateAndWrite(Anomaly anomaly) {
+      if (anomaly.validatesReadOnlyRows()) {
+        read.keySet().stream().filter(id -> !written.containsKey(id)).sorted().forEach(id -> {
+          Integer current = jdbcTemplate.queryForObject("select amount from account where id = ? for share", Integer.class, id);
+          if (!read.get(id).equals(current)) {
+            throw new OptimisticLockingFailureException("Account " + id + " was read as " + read.get(id) + ", it's " + current + " now");
+          }
+        });
+      }
+      written.forEach((id, amount) -> {
+        Integer expected = read.get(id);
+        if (expected == null) {
+          if (jdbcTemplate.update("update account set amount = ? where id = ?", amount, id) != 1) {
+            throw new IllegalStateException("There is no account " + id);
+          }
+        } else if (jdbcTemplate.update("update account set amount = ? where id = ? and amount = ?", amount, id, expected) != 1) {
+          throw new OptimisticLockingFailureException("Account " + id + " has changed since it was read as " + expected);
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package me.konoplev.isolation.adaptive;
+
+import java.time.Duration;
+
+/**
+ * Chooses the {@link Strategy} for the transactions of one {@link TransactionClass}. For every strategy it keeps
+ * exponentially weighted averages of the time a transaction took, retries included, and of the share of attempts
+ * that were aborted. The cheapest strategy aborting no more than {@code maxAbortRate} of attempts is used,
+ * unless it's cheaper than the current one by less than {@link #SWITCH_MARGIN}, so the choice doesn't flap.
+ * <p>
+ * Every {@code explorationPeriod}-th transaction runs with the strategy observed the longest time ago,
+ * so the averages of the strategies not in use follow the load too.
+ */
+class StrategySelector {
+
+  static final double SMOOTHING = 0.1;
+  static final double SWITCH_MARGIN = 0.2;
+
+  private final int explorationPeriod;
+  private final double maxAbortRate;
+  private final Statistics[] statistics = new Statistics[Strategy.values().length];
+  private Strategy current = Strategy.SERIALIZABLE;
+  private long transactions;
+
+  StrategySelector(int explorationPeriod, double maxAbortRate) {
+    if (explorationPeriod < 2) {
+      throw new IllegalArgumentException("Exploring every transaction leaves no room for the chosen strategy: " + explorationPeriod);
+    }
+    this.explorationPeriod = explorationPeriod;
+    this.maxAbortRate = maxAbortRate;
+    for (Strategy strategy : Strategy.values()) {
+      statistics[strategy.ordinal()] = new Statistics();
+    }
+  }
+
+  synchronized Strategy next() {
+    transactions++;
+    if (transactions % explorationPeriod != 0) {
+      return current;
+    }
+    Strategy leastRecent = current;
+    for (Strategy strategy : Strategy.values()) {
+      if (strategy != current && (leastRecent == current
+          || statistics(strategy).observedAt < statistics(leastRecent).observedAt)) {
+        leastRecent = strategy;
+      }
+    }
+    return leastRecent;
+  }
+
+  /**
+   * @param aborts the attempts aborted by a conflict before the transaction committed or was given up
+   * @return true if the current strategy has changed
+   */
+  synchronized boolean observe(Strategy strategy, Duration elapsed, int aborts, boolean committed) {
+    Statistics observed = statistics(strategy);
+    int attempts = aborts + (committed ? 1 : 0);
+    observed.add(elapsed.toNanos(), attempts == 0 ? 1 : (double) aborts / attempts, transactions);
+    Strategy best = best();
+    if (best == current || !worthSwitching(best)) {
+      return false;
+    }
+    current = best;
+    return true;
+  }
+
+  synchronized Strategy current() {
+    return current;
+  }
+
+  /**
+   * @return NaN while the strategy hasn't been observed
+   */
+  synchronized double abortRate(Strategy strategy) {
+    return statistics(strategy).samples == 0 ? Double.NaN : statistics(strategy).abortRate;
+  }
+
+  /**
+   * @return NaN while the strategy hasn't been observed
+   */
+  synchronized double costSeconds(Strategy strategy) {
+    return statistics(strategy).samples == 0 ? Double.NaN : statistics(strategy).nanos / 1_000_000_000;
+  }
+
+  private Strategy best() {
+    Strategy best = null;
+    for (Strategy strategy : Strategy.values()) {
+      Statistics candidate = statistics(strategy);
+      if (candidate.samples > 0 && (best == null || better(candidate, statistics(best)))) {
+        best = strategy;
+      }
+    }
+    return best;
+  }
+
+  private boolean better(Statistics candidate, Statistics best) {
+    boolean candidateAcceptable = candidate.abortRate <= maxAbortRate;
+    if (candidateAcceptable != best.abortRate <= maxAbortRate) {
+      return candidateAcceptable;
+    }
+    return candidate.nanos < best.nanos;
+  }
+
+  private boolean worthSwitching(Strategy best) {
+    Statistics currentStatistics = statistics(current);
+    return currentStatistics.samples == 0
+        || currentStatistics.abortRate > maxAbortRate && statistics(best).abortRate <= maxAbortRate
+        || statistics(best).nanos < currentStatistics.nanos * (1 - SWITCH_MARGIN);
+  }
+
+  private Statistics statistics(Strategy strategy) {
+    return statistics[strategy.ordinal()];
+  }
+
+  private static class Statistics {
+    private long samples;
+    private double nanos;
+    private double abortRate;
+    // the number of the transaction when the strategy was observed last
+    private long observedAt;
+
+    private void add(double sampleNanos, double sampleAbortRate, long transaction) {
+      if (samples == 0) {
+        nanos = sampleNanos;
+        abortRate = sampleAbortRate;
+      } else {
+        nanos += SMOOTHING * (sampleNanos - nanos);
+        abortRate += SMOOTHING * (sampleAbortRate - abortRate);
+      }
+      samples++;
+      observedAt = transaction;
+    }
+  }
+}
@@ -0,0 +1,8 @@
+package me.konoplev.isolation.adaptive;
+
+/**
+ * A kind of transaction run by {@link AdaptiveTransactions}, e.g. "withdrawal". Transactions of the same class
+ * share the statistics the strategy is chosen by, so they should touch similar rows in a similar way.
+ */
+public record TransactionClass(String name, Anomaly prevents) {
+}
@@ -0,0 +1,179 @@
+package me.konoplev.isolation.balance;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import me.konoplev.isolation.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Read-through cache of account balances for hot accounts read by many requests at once. Concurrent misses
+ * of the same account share one query ("single flight"), a cached balance is served for at most
+ * {@code isolation.balance-cache.max-staleness}.
+ * <p>
+ * Only committed balances get into the cache: it's loaded in a transaction of its own, and a caller in
+ * a transaction bypasses it, so it sees its own writes and never publishes them. Writes through
+ * {@link AccountRepository} invalidate the accounts after their transaction commits, see
+ * {@link BalanceCacheInvalidation}. Other writes, e.g. plain SQL, show up once the cached balance is too old.
+ */
+@Service
+public class BalanceCache {
+
+  private static final int GENERATION_STRIPES = 1024;
+
+  private final AccountRepository accountRepository;
+  private final long maxStalenessNanos;
+  private final int maxSize;
+  private final Map<Integer, Cached> cache = new ConcurrentHashMap<>();
+  private final Map<Integer, CompletableFuture<Optional<Integer>>> loading = new ConcurrentHashMap<>();
+  // bumped by every invalidation of an account of the stripe, a load that saw it change doesn't cache its result
+  private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+  private final LongAdder loads = new LongAdder();
+  // when the oldest balance left by the last eviction gets too old, there's nothing to evict before that
+  private volatile long nextEvictionAt = System.nanoTime();
+
+  public BalanceCache(AccountRepository accountRepository,
+                      @Value("${isolation.balance-cache.max-staleness:1s}") Duration maxStaleness,
+                      @Value("${isolation.balance-cache.max-size:10000}") int maxSize) {
+    this.accountRepository = accountRepository;
+    this.maxStalenessNanos = maxStaleness.toNanos();
+    this.maxSize = maxSize;
+  }
+
+  public Optional<Integer> balance(int accountId) {
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      return accountRepository.findAmountById(accountId);
+    }
+    Cached cached = cache.get(accountId);
+    if (cached != null && System.nanoTime() - cached.loadedAt() < maxStalenessNanos) {
+      return cached.balance();
+    }
+    var own = new CompletableFuture<Optional<Integer>>();
+    CompletableFuture<Optional<Integer>> inFlight = loading.putIfAbsent(accountId, own);
+    if (inFlight == null) {
+      return load(accountId, own);
+    }
+    try {
+      return inFlight.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException cause ? cause : e;
+    }
+  }
+
+  /**
+   * Drops the cached balances of the accounts when the current transaction commits, or at once if there's none.
+   * A rolled back transaction changed nothing, so there's nothing to drop then.
+   */
+  public void invalidateAfterCommit(Collection<Integer> accountIds) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      accountIds.forEach(this::invalidate);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        accountIds.forEach(BalanceCache.this::invalidate);
+      }
+    });
+  }
+
+  public void invalidateAllAfterCommit() {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      invalidateAll();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        invalidateAll();
+      }
+    });
+  }
+
+  public void invalidate(int accountId) {
+    generations.incrementAndGet(stripe(accountId));
+    cache.remove(accountId);
+    // readers coming after the commit must not join a load that may have started before it
+    loading.remove(accountId);
+  }
+
+  public void invalidateAll() {
+    for (int stripe = 0; stripe < GENERATION_STRIPES; stripe++) {
+      generations.incrementAndGet(stripe);
+    }
+    cache.clear();
+    loading.clear();
+  }
+
+  /**
+   * The number of queries the cache has run.
+   */
+  public long loads() {
+    return loads.sum();
+  }
+
+  private Optional<Integer> load(int accountId, CompletableFuture<Optional<Integer>> own) {
+    int stripe = stripe(accountId);
+    long generation = generations.get(stripe);
+    // the balance may be as old as the start of the query
+    long startedAt = System.nanoTime();
+    try {
+      loads.increment();
+      Optional<Integer> balance = accountRepository.findAmountById(accountId);
+      if (cache.size() >= maxSize && !cache.containsKey(accountId)) {
+        evictExpired();
+      }
+      if (cache.size() < maxSize || cache.containsKey(accountId)) {
+        var cached = new Cached(balance, startedAt);
+        cache.merge(accountId, cached, (old, loaded) -> old.loadedAt() - loaded.loadedAt() > 0 ? old : loaded);
+        // invalidated while loading, the balance may be older than the write
+        if (generations.get(stripe) != generation) {
+          cache.remove(accountId, cached);
+        }
+      }
+      own.complete(balance);
+      return balance;
+    } catch (RuntimeException e) {
+      own.completeExceptionally(e);
+      throw e;
+    } finally {
+      loading.remove(accountId, own);
+    }
+  }
+
+  // makes room for accounts that became hot after the cache had filled up
+  private void evictExpired() {
+    long now = System.nanoTime();
+    if (now - nextEvictionAt < 0) {
+      return;
+    }
+    long oldest = now;
+    for (var iterator = cache.values().iterator(); iterator.hasNext(); ) {
+      long loadedAt = iterator.next().loadedAt();
+      if (now - loadedAt >= maxStalenessNanos) {
+        iterator.remove();
+      } else if (loadedAt - oldest < 0) {
+        oldest = loadedAt;
+      }
+    }
+    nextEvictionAt = oldest + maxStalenessNanos;
+  }
+
+  private static int stripe(int accountId) {
+    return Math.floorMod(accountId, GENERATION_STRIPES);
+  }
+
+  private record Cached(Optional<Integer> balance, long loadedAt) {
+  }
+
+}
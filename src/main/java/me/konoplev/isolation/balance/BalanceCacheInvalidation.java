@@ -0,0 +1,68 @@
+package me.konoplev.isolation.balance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import me.konoplev.isolation.repository.AccountRepository;
+import me.konoplev.isolation.repository.dto.Account;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalidates the {@link BalanceCache} after every write through {@link AccountRepository}: {@code save*},
+ * {@code delete*} and {@code update*} methods. The accounts are taken from the first argument, ids or entities,
+ * a write without them (e.g. {@code deleteAll()}) invalidates the whole cache.
+ * <p>
+ * The advice wraps the repository from outside, so a write that isn't joining a transaction has already been
+ * committed when it runs.
+ */
+@Aspect
+@Component
+public class BalanceCacheInvalidation {
+
+  private final BalanceCache balanceCache;
+
+  public BalanceCacheInvalidation(BalanceCache balanceCache) {
+    this.balanceCache = balanceCache;
+  }
+
+  @AfterReturning("execution(* me.konoplev.isolation.repository.AccountRepository.save*(..))"
+      + " || execution(* me.konoplev.isolation.repository.AccountRepository.delete*(..))"
+      + " || execution(* me.konoplev.isolation.repository.AccountRepository.update*(..))")
+  public void invalidate(JoinPoint write) {
+    List<Integer> accountIds = new ArrayList<>();
+    // the methods of AccountRepository take the accounts they write first, e.g. updateAmount(id, newAmount)
+    if (write.getArgs().length == 0 || !addAccountIds(write.getArgs()[0], accountIds)) {
+      balanceCache.invalidateAllAfterCommit();
+    } else {
+      balanceCache.invalidateAfterCommit(accountIds);
+    }
+  }
+
+  // false if the argument may write accounts that can't be told
+  private static boolean addAccountIds(Object argument, List<Integer> accountIds) {
+    if (argument instanceof Integer accountId) {
+      accountIds.add(accountId);
+      return true;
+    }
+    if (argument instanceof Account account) {
+      if (account.getId() == null) {
+        return false;
+      }
+      accountIds.add(account.getId());
+      return true;
+    }
+    if (argument instanceof Iterable<?> arguments) {
+      for (Object element : arguments) {
+        if (!addAccountIds(element, accountIds)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+}
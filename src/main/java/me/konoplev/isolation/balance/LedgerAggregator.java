@@ -0,0 +1,116 @@
+package me.konoplev.isolation.balance;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+/**
+ * Periodically folds the ledger into account amounts in micro-batches of {@code batchSize} entries,
+ * each batch in its own transaction. A run drains everything appended before it started.
+ * <p>
+ * Starts with the application if {@code isolation.ledger.aggregation.enabled} is set, and runs every
+ * {@code isolation.ledger.aggregation.interval} in batches of {@code isolation.ledger.aggregation.batch-size}.
+ * Entries of accounts that don't exist can't be folded and stay in the ledger, a run reports how many
+ * there are whenever the number changes.
+ */
+@Service
+public class LedgerAggregator implements SmartLifecycle {
+
+  private final LedgerBalances ledgerBalances;
+  private final boolean autoStartup;
+  private final Duration interval;
+  private final int batchSize;
+  private ScheduledExecutorService executor;
+  // only touched by the thread of the executor
+  private long reportedOrphans;
+
+  public LedgerAggregator(LedgerBalances ledgerBalances,
+                          @Value("${isolation.ledger.aggregation.enabled:false}") boolean autoStartup,
+                          @Value("${isolation.ledger.aggregation.interval:1s}") Duration interval,
+                          @Value("${isolation.ledger.aggregation.batch-size:1000}") int batchSize) {
+    this.ledgerBalances = ledgerBalances;
+    this.autoStartup = autoStartup;
+    this.interval = interval;
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public void start() {
+    start(interval, batchSize);
+  }
+
+  public synchronized void start(Duration interval, int batchSize) {
+    if (executor != null) {
+      throw new IllegalStateException("Ledger aggregation is already started");
+    }
+    reportedOrphans = 0;
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "ledger-aggregator");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(() -> {
+      try {
+        foldAll(batchSize);
+        reportOrphans();
+      } catch (RuntimeException e) {
+        // an exception would cancel the periodic task, the next run retries the same entries
+        System.out.println("Ledger aggregation failed: " + e);
+      }
+    }, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (executor == null) {
+      return;
+    }
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    executor = null;
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return executor != null;
+  }
+
+  @Override
+  public boolean isAutoStartup() {
+    return autoStartup;
+  }
+
+  /**
+   * @return the number of folded entries
+   */
+  public long foldAll(int batchSize) {
+    long folded = 0;
+    int batch;
+    do {
+      batch = ledgerBalances.fold(batchSize);
+      folded += batch;
+    } while (batch == batchSize);
+    return folded;
+  }
+
+  private void reportOrphans() {
+    long orphans = ledgerBalances.orphanedEntries();
+    if (orphans != reportedOrphans) {
+      System.out.println(orphans + " ledger entries belong to accounts that don't exist and can't be folded");
+      reportedOrphans = orphans;
+    }
+  }
+
+}
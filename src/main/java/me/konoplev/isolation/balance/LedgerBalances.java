@@ -0,0 +1,112 @@
+package me.konoplev.isolation.balance;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+import me.konoplev.isolation.repository.LedgerRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Write-behind balances: a write appends an immutable entry to {@code account_ledger} instead of updating
+ * {@code account.amount}, so concurrent writers of the same account never wait for its row lock.
+ * {@link LedgerAggregator} folds the entries into {@code account.amount} in the background, and a balance
+ * is the materialized amount plus the entries that are not folded yet.
+ * <p>
+ * Appends are unconditional, a withdrawal that must not overdraw an account still needs
+ * the account row to be locked.
+ */
+@Service
+public class LedgerBalances {
+
+  private static final int MAX_ROWS_PER_INSERT = 500;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final LedgerRepository ledgerRepository;
+
+  public LedgerBalances(JdbcTemplate jdbcTemplate, LedgerRepository ledgerRepository) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.ledgerRepository = ledgerRepository;
+  }
+
+  @Transactional
+  public void append(int accountId, int delta) {
+    appendAll(List.of(new Entry(accountId, delta)));
+  }
+
+  @Transactional
+  public void transfer(int fromAccountId, int toAccountId, int amount) {
+    appendAll(List.of(new Entry(fromAccountId, -amount), new Entry(toAccountId, amount)));
+  }
+
+  /**
+   * Appends the entries with as few multi-row inserts as possible.
+   */
+  @Transactional
+  public void appendAll(List<Entry> entries) {
+    for (int from = 0; from < entries.size(); from += MAX_ROWS_PER_INSERT) {
+      List<Entry> chunk = entries.subList(from, Math.min(entries.size(), from + MAX_ROWS_PER_INSERT));
+      jdbcTemplate.update(
+          "insert into account_ledger (account_id, delta) values " + String.join(", ", Collections.nCopies(chunk.size(), "(?, ?)")),
+          chunk.stream().flatMap(entry -> Stream.of(entry.accountId(), entry.delta())).toArray());
+    }
+  }
+
+  @Transactional
+  public Optional<Long> balance(int accountId) {
+    return ledgerRepository.balance(accountId);
+  }
+
+  /**
+   * Moves up to {@code maxEntries} of the oldest entries into {@code account.amount}. Entries locked by another
+   * fold are skipped, so several aggregators can work at the same time. Entries of accounts that don't exist
+   * are left in the ledger and don't hold back the others.
+   *
+   * @return the number of folded entries
+   */
+  @Transactional(isolation = Isolation.READ_COMMITTED, propagation = Propagation.REQUIRES_NEW)
+  public int fold(int maxEntries) {
+    Map<Integer, List<Long>> entryIdsPerAccount = new TreeMap<>();
+    Map<Integer, Long> deltaPerAccount = new HashMap<>();
+    jdbcTemplate.query("select l.id, l.account_id, l.delta from account_ledger l "
+            + "where exists (select 1 from account a where a.id = l.account_id) "
+            + "order by l.id limit ? for update of l skip locked",
+        resultSet -> {
+          int accountId = resultSet.getInt(2);
+          entryIdsPerAccount.computeIfAbsent(accountId, id -> new ArrayList<>()).add(resultSet.getLong(1));
+          deltaPerAccount.merge(accountId, resultSet.getLong(3), Long::sum);
+        },
+        maxEntries);
+
+    // accounts are updated in id order, so concurrent folds can't deadlock each other
+    List<Long> folded = new ArrayList<>();
+    entryIdsPerAccount.forEach((accountId, entryIds) -> {
+      if (jdbcTemplate.update("update account set amount = amount + ? where id = ?", deltaPerAccount.get(accountId), accountId) == 1) {
+        folded.addAll(entryIds);
+      }
+    });
+    for (int from = 0; from < folded.size(); from += MAX_ROWS_PER_INSERT) {
+      List<Long> chunk = folded.subList(from, Math.min(folded.size(), from + MAX_ROWS_PER_INSERT));
+      jdbcTemplate.update(
+          "delete from account_ledger where id in (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")",
+          chunk.toArray());
+    }
+    return folded.size();
+  }
+
+  /**
+   * The entries of accounts that don't exist, {@link #fold(int)} leaves them in the ledger.
+   */
+  @Transactional
+  public long orphanedEntries() {
+    return jdbcTemplate.queryForObject("select count(*) from account_ledger l "
+        + "where not exists (select 1 from account a where a.id = l.account_id)", Long.class);
+  }
+
+  public record Entry(int accountId, int delta) {
+  }
+
+}
@@ -0,0 +1,120 @@
+package me.konoplev.isolation.balance;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.OptionalInt;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.konoplev.isolation.util.DatabaseVendor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * A local copy of the amounts of all accounts, for read-mostly traffic that can't afford a query per read.
+ * Enabled by {@code isolation.local-balances.enabled}. The amounts are kept off the heap in an
+ * {@link OffHeapBalanceTable}, so millions of accounts neither take heap nor add work for the garbage collector.
+ * <p>
+ * The table is filled by a scan of {@code account} at startup and follows the committed writes through
+ * {@code AccountRepository}, see {@link LocalBalancesWriteThrough}. Writes through plain SQL, and changes of
+ * loaded entities saved by dirty checking, aren't seen until {@link #reload()}.
+ */
+@Service
+@ConditionalOnProperty("isolation.local-balances.enabled")
+public class LocalBalances implements SmartInitializingSingleton {
+
+  // rows of the scan lose to every committed write, whenever its stamp was taken
+  private static final long SCAN_STAMP = 1;
+  private static final int SCAN_FETCH_SIZE = 10_000;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final OffHeapBalanceTable table;
+  private final AtomicLong stamps = new AtomicLong(SCAN_STAMP);
+
+  public LocalBalances(JdbcTemplate jdbcTemplate,
+                       @Value("${isolation.local-balances.expected-accounts:1000000}") int expectedAccounts) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.table = new OffHeapBalanceTable(expectedAccounts);
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    reload();
+  }
+
+  public OptionalInt amount(int accountId) {
+    long amount = table.amount(accountId);
+    return amount == OffHeapBalanceTable.ABSENT ? OptionalInt.empty() : OptionalInt.of((int) amount);
+  }
+
+  /**
+   * Like {@link #amount(int)}, without allocating anything.
+   */
+  public int amountOrDefault(int accountId, int defaultAmount) {
+    long amount = table.amount(accountId);
+    return amount == OffHeapBalanceTable.ABSENT ? defaultAmount : (int) amount;
+  }
+
+  public int size() {
+    return table.size();
+  }
+
+  public long offHeapBytes() {
+    return table.offHeapBytes();
+  }
+
+  /**
+   * Replaces the table with a new scan of {@code account}. Writes committed while it runs aren't lost,
+   * but a write applied between the clearing and the scan may be, so it's meant for quiet moments,
+   * e.g. after the tables were truncated.
+   */
+  public void reload() {
+    long start = System.nanoTime();
+    table.clear();
+    int scanned = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+      boolean autoCommit = connection.getAutoCommit();
+      // Postgres streams the result with a cursor only inside a transaction
+      connection.setAutoCommit(false);
+      try (Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+        statement.setFetchSize(DatabaseVendor.of(connection) == DatabaseVendor.MYSQL ? Integer.MIN_VALUE : SCAN_FETCH_SIZE);
+        int rows = 0;
+        try (ResultSet accounts = statement.executeQuery("select id, amount from account")) {
+          while (accounts.next()) {
+            table.put(accounts.getInt(1), accounts.getInt(2), SCAN_STAMP);
+            rows++;
+          }
+        }
+        connection.commit();
+        return rows;
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+    });
+    System.out.println("Loaded " + scanned + " balances in " + (System.nanoTime() - start) / 1_000_000 + " ms, "
+        + table.offHeapBytes() / (1024 * 1024) + " MiB off heap");
+  }
+
+  /**
+   * Taken while the written rows are still locked by the transaction, so stamps of writes of the same row
+   * are in the order of their commits.
+   */
+  long nextStamp() {
+    return stamps.incrementAndGet();
+  }
+
+  void put(int accountId, int amount, long stamp) {
+    table.put(accountId, amount, stamp);
+  }
+
+  void remove(int accountId, long stamp) {
+    table.remove(accountId, stamp);
+  }
+
+}
@@ -0,0 +1,141 @@
+package me.konoplev.isolation.balance;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+
+import me.konoplev.isolation.repository.AccountRepository;
+import me.konoplev.isolation.repository.dto.Account;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Applies the writes through {@link AccountRepository} to {@link LocalBalances} once their transaction commits:
+ * {@code updateAmount}, saved entities and deleted accounts. {@code deleteAll()} and the like reload the table.
+ * <p>
+ * The stamp of a write is taken before the commit, while the database still holds the lock of the row,
+ * so when the callbacks of two transactions writing the same row run out of order the later write still wins.
+ * Entities saved or deleted without a flush are written by the flush of the commit, so the persistence context
+ * is flushed before the stamp is taken, otherwise the row wouldn't be locked yet.
+ * A write called without a transaction is run in one, otherwise the repository would commit it before
+ * the stamp could be taken.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty("isolation.local-balances.enabled")
+public class LocalBalancesWriteThrough {
+
+  private final LocalBalances localBalances;
+  private final TransactionTemplate transactionTemplate;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  public LocalBalancesWriteThrough(LocalBalances localBalances, PlatformTransactionManager transactionManager) {
+    this.localBalances = localBalances;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  @Around("execution(* me.konoplev.isolation.repository.AccountRepository.save*(..))"
+      + " || execution(* me.konoplev.isolation.repository.AccountRepository.delete*(..))"
+      + " || execution(* me.konoplev.isolation.repository.AccountRepository.update*(..))")
+  public Object writeThrough(ProceedingJoinPoint write) throws Throwable {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      return proceedAndRegister(write);
+    }
+    try {
+      return transactionTemplate.execute(status -> {
+        try {
+          return proceedAndRegister(write);
+        } catch (RuntimeException | Error e) {
+          throw e;
+        } catch (Throwable e) {
+          throw new UndeclaredThrowableException(e);
+        }
+      });
+    } catch (UndeclaredThrowableException e) {
+      throw e.getUndeclaredThrowable();
+    }
+  }
+
+  private Object proceedAndRegister(ProceedingJoinPoint write) throws Throwable {
+    Object result = write.proceed();
+    List<Change> changes = changes(write.getSignature().getName(), write.getArgs(), result);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      private long stamp;
+
+      @Override
+      public void beforeCommit(boolean readOnly) {
+        if (!readOnly) {
+          entityManager.flush();
+        }
+        stamp = localBalances.nextStamp();
+      }
+
+      @Override
+      public void afterCommit() {
+        if (changes == null) {
+          localBalances.reload();
+          return;
+        }
+        for (Change change : changes) {
+          if (change.removed()) {
+            localBalances.remove(change.accountId(), stamp);
+          } else {
+            localBalances.put(change.accountId(), change.amount(), stamp);
+          }
+        }
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return null if the accounts written can't be told
+   */
+  private static List<Change> changes(String method, Object[] arguments, Object result) {
+    List<Change> changes = new ArrayList<>();
+    if (method.equals("updateAmount")) {
+      changes.add(new Change((Integer) arguments[0], (Integer) arguments[1], false));
+      return changes;
+    }
+    if (method.startsWith("save")) {
+      // the saved entities have their ids, and the amounts as they were flushed or will be
+      return addAccounts(result, false, changes) ? changes : null;
+    }
+    return arguments.length > 0 && addAccounts(arguments[0], true, changes) ? changes : null;
+  }
+
+  private static boolean addAccounts(Object accounts, boolean removed, List<Change> changes) {
+    if (accounts instanceof Integer accountId) {
+      changes.add(new Change(accountId, 0, removed));
+      return true;
+    }
+    if (accounts instanceof Account account && account.getId() != null) {
+      changes.add(new Change(account.getId(), account.getAmount(), removed));
+      return true;
+    }
+    if (accounts instanceof Iterable<?> iterable) {
+      for (Object element : iterable) {
+        if (!addAccounts(element, removed, changes)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  private record Change(int accountId, int amount, boolean removed) {
+  }
+
+}
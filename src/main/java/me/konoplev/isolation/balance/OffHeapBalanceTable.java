@@ -0,0 +1,164 @@
+package me.konoplev.isolation.balance;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Open addressing hash table from account id to amount in a direct buffer: no boxed keys, no entry objects,
+ * nothing on the heap per account. A slot is two longs, the id and the amount packed into one, so a reader always
+ * gets an amount of the id it asked for, and the stamp of the write that stored them.
+ * <p>
+ * Reads don't lock. Writes take a single lock and only apply if their stamp is newer than the stored one,
+ * so writes arriving out of order leave the newest amount. A removed account keeps its slot and stamp,
+ * an older write can't bring it back.
+ */
+class OffHeapBalanceTable {
+
+  static final long ABSENT = Long.MIN_VALUE;
+  private static final long EMPTY = 0;
+  private static final long REMOVED = Long.MIN_VALUE;
+  private static final int SLOT_BYTES = 16;
+  // a direct buffer is indexed by int
+  private static final int MAX_CAPACITY = 1 << 26;
+  private static final double MAX_LOAD = 0.6;
+  private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private volatile ByteBuffer slots;
+  private int capacity;
+  private int used;
+
+  OffHeapBalanceTable(int expectedAccounts) {
+    capacity = capacityFor(expectedAccounts);
+    slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+  }
+
+  /**
+   * @return the amount, or {@link #ABSENT} if the account isn't in the table
+   */
+  long amount(int accountId) {
+    ByteBuffer table = slots;
+    int mask = table.capacity() / SLOT_BYTES - 1;
+    for (int slot = hash(accountId) & mask; ; slot = slot + 1 & mask) {
+      // the stamp is written after the id and amount, reading it first makes them visible
+      long stamp = (long) LONGS.getAcquire(table, slot * SLOT_BYTES + 8);
+      if (stamp == EMPTY) {
+        return ABSENT;
+      }
+      long entry = (long) LONGS.getAcquire(table, slot * SLOT_BYTES);
+      if ((int) (entry >>> 32) == accountId) {
+        return (stamp & REMOVED) != 0 ? ABSENT : (int) entry;
+      }
+    }
+  }
+
+  /**
+   * @param stamp positive, a larger stamp means a later write
+   */
+  void put(int accountId, int amount, long stamp) {
+    write(accountId, amount, stamp);
+  }
+
+  void remove(int accountId, long stamp) {
+    write(accountId, 0, stamp | REMOVED);
+  }
+
+  void clear() {
+    writeLock.lock();
+    try {
+      slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+      used = 0;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  int size() {
+    writeLock.lock();
+    try {
+      int size = 0;
+      for (int slot = 0; slot < capacity; slot++) {
+        long stamp = (long) LONGS.get(slots, slot * SLOT_BYTES + 8);
+        if (stamp != EMPTY && (stamp & REMOVED) == 0) {
+          size++;
+        }
+      }
+      return size;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  long offHeapBytes() {
+    return slots.capacity();
+  }
+
+  private void write(int accountId, int amount, long stamp) {
+    if ((stamp & ~REMOVED) == EMPTY) {
+      throw new IllegalArgumentException("Stamps start from 1: " + stamp);
+    }
+    writeLock.lock();
+    try {
+      if (used + 1 > capacity * MAX_LOAD) {
+        resize(capacity * 2);
+      }
+      int slot = slotOf(slots, capacity - 1, accountId);
+      int offset = slot * SLOT_BYTES;
+      long stored = (long) LONGS.get(slots, offset + 8);
+      if (stored == EMPTY) {
+        used++;
+      } else if ((stored & ~REMOVED) >= (stamp & ~REMOVED)) {
+        return;
+      }
+      LONGS.setRelease(slots, offset, (long) accountId << 32 | amount & 0xFFFF_FFFFL);
+      LONGS.setRelease(slots, offset + 8, stamp);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  // the slot of the account, or the empty one it goes to
+  private static int slotOf(ByteBuffer table, int mask, int accountId) {
+    for (int slot = hash(accountId) & mask; ; slot = slot + 1 & mask) {
+      int offset = slot * SLOT_BYTES;
+      if ((long) LONGS.get(table, offset + 8) == EMPTY || (int) ((long) LONGS.get(table, offset) >>> 32) == accountId) {
+        return slot;
+      }
+    }
+  }
+
+  private void resize(int newCapacity) {
+    if (newCapacity > MAX_CAPACITY) {
+      throw new IllegalStateException("The table can't hold more than " + (int) (MAX_CAPACITY * MAX_LOAD) + " accounts");
+    }
+    ByteBuffer resized = ByteBuffer.allocateDirect(newCapacity * SLOT_BYTES);
+    for (int slot = 0; slot < capacity; slot++) {
+      long stamp = (long) LONGS.get(slots, slot * SLOT_BYTES + 8);
+      if (stamp != EMPTY) {
+        long entry = (long) LONGS.get(slots, slot * SLOT_BYTES);
+        int offset = slotOf(resized, newCapacity - 1, (int) (entry >>> 32)) * SLOT_BYTES;
+        LONGS.set(resized, offset, entry);
+        LONGS.set(resized, offset + 8, stamp);
+      }
+    }
+    // readers still probing the old buffer see it unchanged, no write happens while resizing
+    slots = resized;
+    capacity = newCapacity;
+  }
+
+  private static int capacityFor(int accounts) {
+    long slots = Math.max(16, Math.min(MAX_CAPACITY, (long) (accounts / MAX_LOAD) + 1));
+    return Integer.highestOneBit((int) slots - 1) << 1;
+  }
+
+  private static int hash(int accountId) {
+    // the finalizer of murmur3, sequential ids would otherwise fill runs of adjacent slots
+    int hash = (accountId ^ accountId >>> 16) * 0x85EBCA6B;
+    hash = (hash ^ hash >>> 13) * 0xC2B2AE35;
+    return hash ^ hash >>> 16;
+  }
+
+}
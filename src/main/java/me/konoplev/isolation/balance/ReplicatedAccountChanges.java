@@ -0,0 +1,64 @@
+package me.konoplev.isolation.balance;
+
+import java.util.List;
+
+import me.konoplev.isolation.cdc.ChangeEvent;
+import me.konoplev.isolation.cdc.ChangeStream;
+import me.konoplev.isolation.cdc.ChangeSubscriber;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps {@link BalanceCache} and, if enabled, {@link LocalBalances} in step with the account changes committed
+ * by other application nodes, as read by {@link ChangeStream}. Changes of this node arrive too, after its own
+ * after-commit callbacks, and change nothing then.
+ * <p>
+ * The stream passes transactions in commit order, so a change it applies can only be overwritten by a later one.
+ * A local callback of a later commit may still be overwritten by a change of an earlier commit arriving after it,
+ * until the stream brings the later commit as well. After a gap in the stream everything is loaded again.
+ */
+@Component
+@ConditionalOnProperty("isolation.cdc.enabled")
+public class ReplicatedAccountChanges implements ChangeSubscriber {
+
+  private final BalanceCache balanceCache;
+  private final ObjectProvider<LocalBalances> localBalances;
+
+  public ReplicatedAccountChanges(BalanceCache balanceCache, ObjectProvider<LocalBalances> localBalances) {
+    this.balanceCache = balanceCache;
+    this.localBalances = localBalances;
+  }
+
+  @Override
+  public void onTransaction(List<ChangeEvent> changes) {
+    for (ChangeEvent change : changes) {
+      if (!change.table().equals("account")) {
+        continue;
+      }
+      switch (change.operation()) {
+        case INSERT, UPDATE -> {
+          balanceCache.invalidate(change.id());
+          localBalances.ifAvailable(balances ->
+              balances.put(change.id(), Integer.parseInt(change.row().get("amount")), balances.nextStamp()));
+        }
+        case DELETE -> {
+          balanceCache.invalidate(change.id());
+          localBalances.ifAvailable(balances -> balances.remove(change.id(), balances.nextStamp()));
+        }
+        case TRUNCATE -> reloadAll();
+      }
+    }
+  }
+
+  @Override
+  public void onGap() {
+    reloadAll();
+  }
+
+  private void reloadAll() {
+    balanceCache.invalidateAll();
+    localBalances.ifAvailable(LocalBalances::reload);
+  }
+
+}
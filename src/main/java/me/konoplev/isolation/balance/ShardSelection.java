@@ -0,0 +1,26 @@
+package me.konoplev.isolation.balance;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public enum ShardSelection {
+  /**
+   * Every write goes to a random shard.
+   */
+  RANDOM {
+    @Override
+    int select(int shards) {
+      return ThreadLocalRandom.current().nextInt(shards);
+    }
+  },
+  /**
+   * A thread always writes into the same shard, so threads don't compete for a shard while there are enough shards.
+   */
+  THREAD_AFFINE {
+    @Override
+    int select(int shards) {
+      return Math.floorMod(Long.hashCode(Thread.currentThread().getId() * 0x9E3779B97F4A7C15L), shards);
+    }
+  };
+
+  abstract int select(int shards);
+}
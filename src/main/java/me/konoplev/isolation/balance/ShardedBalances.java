@@ -0,0 +1,144 @@
+package me.konoplev.isolation.balance;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import me.konoplev.isolation.repository.AccountShardRepository;
+import me.konoplev.isolation.repository.dto.AccountShard;
+import me.konoplev.isolation.util.DatabaseVendor;
+import me.konoplev.isolation.util.TransactionsWrapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Keeps the balance of a hot account split across several rows ("shards") of {@code account_shard}.
+ * Concurrent writes mostly land on different rows, so they don't queue for the lock of a single account row.
+ * The balance is the sum of the shards.
+ * <p>
+ * The methods join the caller's transaction, or start their own if there is none.
+ * <p>
+ * The number of shards of an account is cached. It's read again when a shard it points to turns out to be missing,
+ * e.g. because the account was created again with fewer shards.
+ */
+@Service
+public class ShardedBalances {
+
+  private final AccountShardRepository accountShardRepository;
+  private final TransactionsWrapper transactionsWrapper;
+  private final DatabaseVendor vendor;
+  private final Map<Integer, Integer> shardsPerAccount = new ConcurrentHashMap<>();
+  private volatile ShardSelection shardSelection = ShardSelection.RANDOM;
+
+  public ShardedBalances(AccountShardRepository accountShardRepository, TransactionsWrapper transactionsWrapper,
+                         JdbcTemplate jdbcTemplate) {
+    this.accountShardRepository = accountShardRepository;
+    this.transactionsWrapper = transactionsWrapper;
+    this.vendor = DatabaseVendor.of(jdbcTemplate.getDataSource());
+  }
+
+  public void setShardSelection(ShardSelection shardSelection) {
+    this.shardSelection = shardSelection;
+  }
+
+  @Transactional
+  public void createAccount(int accountId, int shards, int initialAmount) {
+    if (shards < 1) {
+      throw new IllegalArgumentException("An account needs at least one shard: " + shards);
+    }
+    accountShardRepository.saveAllAndFlush(IntStream.range(0, shards)
+        .mapToObj(shard -> new AccountShard(accountId, shard, shard == 0 ? initialAmount : 0))
+        .toList());
+    shardsPerAccount.put(accountId, shards);
+  }
+
+  @Transactional
+  public long balance(int accountId) {
+    return accountShardRepository.sumAmount(accountId);
+  }
+
+  @Transactional
+  public void deposit(int accountId, int amount) {
+    if (accountShardRepository.addAmount(accountId, shardSelection.select(shards(accountId)), amount) == 1) {
+      return;
+    }
+    // the cached count may be stale
+    shardsPerAccount.remove(accountId);
+    if (accountShardRepository.addAmount(accountId, shardSelection.select(shards(accountId)), amount) != 1) {
+      throw new IllegalStateException("Account " + accountId + " has no shards");
+    }
+  }
+
+  /**
+   * Withdraws from a single shard if it has enough money, otherwise locks all shards of the account
+   * and borrows from them in order.
+   * <p>
+   * A shard without enough money stays locked by the update that tried it, and waiting for the shards before it
+   * while holding it could deadlock with another withdrawal. On Postgres the update is rolled back to a savepoint,
+   * which releases the lock. InnoDB keeps the locks of statements rolled back to a savepoint, so on MySQL all shards
+   * are locked in order from the start.
+   *
+   * @return false if the account doesn't have enough money, nothing is changed then
+   */
+  @Transactional
+  public boolean withdraw(int accountId, int amount) {
+    if (vendor == DatabaseVendor.POSTGRES && withdrawFromOneShard(accountId, amount)) {
+      return true;
+    }
+    List<AccountShard> shards = accountShardRepository.lockShards(accountId);
+    if (shards.isEmpty()) {
+      throw new IllegalStateException("Account " + accountId + " has no shards");
+    }
+    // the shard tried above may have been missing
+    shardsPerAccount.put(accountId, shards.size());
+    if (shards.stream().mapToLong(AccountShard::getAmount).sum() < amount) {
+      return false;
+    }
+    int left = amount;
+    for (AccountShard shard : shards) {
+      int taken = Math.min(left, shard.getAmount());
+      if (taken > 0) {
+        accountShardRepository.updateAmount(accountId, shard.getShard(), shard.getAmount() - taken);
+        left -= taken;
+      }
+      if (left == 0) {
+        break;
+      }
+    }
+    return true;
+  }
+
+  private boolean withdrawFromOneShard(int accountId, int amount) {
+    try {
+      transactionsWrapper.nested(() -> {
+        if (accountShardRepository.withdrawIfEnough(accountId, shardSelection.select(shards(accountId)), amount) != 1) {
+          throw new NotEnoughOnShard();
+        }
+      });
+      return true;
+    } catch (NotEnoughOnShard e) {
+      return false;
+    }
+  }
+
+  private int shards(int accountId) {
+    return shardsPerAccount.computeIfAbsent(accountId, id -> {
+      int shards = accountShardRepository.countShards(id);
+      if (shards == 0) {
+        throw new IllegalStateException("Account " + id + " has no shards");
+      }
+      return shards;
+    });
+  }
+
+  // rolls back to the savepoint
+  private static class NotEnoughOnShard extends RuntimeException {
+
+    NotEnoughOnShard() {
+      super(null, null, false, false);
+    }
+  }
+
+}
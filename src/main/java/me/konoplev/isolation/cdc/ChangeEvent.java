@@ -0,0 +1,32 @@
+package me.konoplev.isolation.cdc;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * A row change committed to the database, as read from its replication log.
+ *
+ * @param table       the table name, without the schema
+ * @param row         column values as text: the new row of an insert or update, the key (Postgres) or the whole
+ *                    old row (MySQL) of a delete, nothing for a truncate. Null values are missing
+ * @param position    where in the log the transaction of the change ends, the LSN or the binlog file and position
+ * @param committedAt when the transaction of the change committed
+ */
+public record ChangeEvent(String table, Operation operation, Map<String, String> row, String position,
+                          Instant committedAt) {
+
+  public enum Operation {
+    INSERT,
+    UPDATE,
+    DELETE,
+    TRUNCATE
+  }
+
+  /**
+   * @return the value of the {@code id} column, or null if the event has none, e.g. a truncate
+   */
+  public Integer id() {
+    String id = row.get("id");
+    return id == null ? null : Integer.valueOf(id);
+  }
+}
@@ -0,0 +1,27 @@
+package me.konoplev.isolation.cdc;
+
+import java.util.List;
+
+/**
+ * The replication log of one database vendor.
+ */
+interface ChangeSource extends AutoCloseable {
+
+  /**
+   * Reads the log from its current end until {@link #close()}, passing committed transactions in commit order.
+   */
+  void run(Sink sink) throws Exception;
+
+  @Override
+  void close();
+
+  interface Sink {
+
+    void committed(List<ChangeEvent> changes);
+
+    /**
+     * Everything written to the log so far has been passed.
+     */
+    void caughtUp();
+  }
+}
@@ -0,0 +1,215 @@
+package me.konoplev.isolation.cdc;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import me.konoplev.isolation.util.DatabaseVendor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Committed changes of {@code account} and {@code users}, read from the replication log of the database,
+ * Postgres logical replication or the MySQL binlog. Unlike after-commit callbacks it sees the commits of all
+ * application nodes, and of plain SQL, so caches of every node can follow them.
+ * Enabled by {@code isolation.cdc.enabled}.
+ * <p>
+ * Transactions are passed to the {@link ChangeSubscriber}s in commit order on a single thread. The lag is
+ * the time since the commit of the last transaction passed on, or zero when everything logged has been passed.
+ * It's published as {@code isolation.cdc.lag}, and the changes are counted by {@code isolation.cdc.events}.
+ * A broken connection to the log is reopened. The changes committed in between are lost, so every connection
+ * starts with {@link ChangeSubscriber#onGap()}.
+ */
+@Service
+@ConditionalOnProperty("isolation.cdc.enabled")
+public class ChangeStream implements SmartLifecycle {
+
+  static final List<String> TABLES = List.of("account", "users");
+  private static final long RECONNECT_PAUSE_MILLIS = 1000;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ObjectProvider<ChangeSubscriber> subscriberBeans;
+  private final MeterRegistry meterRegistry;
+  private final String url;
+  private final String username;
+  private final String password;
+  private final String publication;
+  private final List<ChangeSubscriber> subscribers = new CopyOnWriteArrayList<>();
+  private volatile long lagNanos;
+  private volatile String lastPosition;
+  private volatile boolean running;
+  private volatile boolean connected;
+  private volatile ChangeSource source;
+  private Thread reader;
+
+  public ChangeStream(JdbcTemplate jdbcTemplate,
+                      ObjectProvider<ChangeSubscriber> subscriberBeans,
+                      ObjectProvider<MeterRegistry> meterRegistry,
+                      @Value("${spring.datasource.url}") String url,
+                      @Value("${isolation.cdc.username:${spring.datasource.username}}") String username,
+                      @Value("${isolation.cdc.password:${spring.datasource.password}}") String password,
+                      @Value("${isolation.cdc.publication:isolation_cdc}") String publication) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.subscriberBeans = subscriberBeans;
+    this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+    this.url = url;
+    this.username = username;
+    this.password = password;
+    this.publication = publication;
+  }
+
+  public void subscribe(ChangeSubscriber subscriber) {
+    subscribers.add(subscriber);
+  }
+
+  public void unsubscribe(ChangeSubscriber subscriber) {
+    subscribers.remove(subscriber);
+  }
+
+  public Duration lag() {
+    return Duration.ofNanos(lagNanos);
+  }
+
+  /**
+   * @return true once the log is being read, changes committed before that aren't passed on
+   */
+  public boolean isConnected() {
+    return connected;
+  }
+
+  /**
+   * @return the position of the last transaction passed on, null if there was none
+   */
+  public String lastPosition() {
+    return lastPosition;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    subscriberBeans.orderedStream().forEach(subscribers::add);
+    Gauge.builder("isolation.cdc.lag", this, stream -> stream.lagNanos / 1_000_000_000.0)
+        .baseUnit("seconds").register(meterRegistry);
+    running = true;
+    reader = new Thread(this::read, "change-stream");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  @Override
+  public synchronized void stop() {
+    running = false;
+    ChangeSource current = source;
+    if (current != null) {
+      current.close();
+    }
+    try {
+      reader.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  private void read() {
+    while (running) {
+      connected = false;
+      try (ChangeSource opened = newSource()) {
+        source = opened;
+        opened.run(new ChangeSource.Sink() {
+          private boolean gapReported;
+
+          @Override
+          public void committed(List<ChangeEvent> changes) {
+            reportGap();
+            publish(changes);
+          }
+
+          @Override
+          public void caughtUp() {
+            reportGap();
+            connected = true;
+            lagNanos = 0;
+          }
+
+          // the log is read from here on, what subscribers reload now can't miss a later change
+          private void reportGap() {
+            if (!gapReported) {
+              gapReported = true;
+              ChangeStream.this.reportGap();
+            }
+          }
+        });
+      } catch (Exception e) {
+        if (running) {
+          System.out.println("The change stream broke, reconnecting: " + e);
+          pause();
+        }
+      }
+    }
+  }
+
+  private ChangeSource newSource() {
+    return switch (DatabaseVendor.of(jdbcTemplate.getDataSource())) {
+      case POSTGRES -> new PostgresChangeSource(jdbcTemplate, url, username, password, publication, TABLES);
+      case MYSQL -> new MySqlChangeSource(jdbcTemplate, url, username, password, TABLES);
+    };
+  }
+
+  private void publish(List<ChangeEvent> changes) {
+    if (changes.isEmpty()) {
+      return;
+    }
+    for (ChangeEvent change : changes) {
+      Counter.builder("isolation.cdc.events").tags("table", change.table(), "operation", change.operation().name())
+          .register(meterRegistry).increment();
+    }
+    for (ChangeSubscriber subscriber : subscribers) {
+      try {
+        subscriber.onTransaction(changes);
+      } catch (RuntimeException e) {
+        // one broken cache shouldn't keep the others from the changes
+        System.out.println("Subscriber " + subscriber + " failed on " + changes + ": " + e);
+      }
+    }
+    ChangeEvent last = changes.get(changes.size() - 1);
+    lastPosition = last.position();
+    lagNanos = Math.max(0, Duration.between(last.committedAt(), Instant.now()).toNanos());
+  }
+
+  private void reportGap() {
+    for (ChangeSubscriber subscriber : subscribers) {
+      try {
+        subscriber.onGap();
+      } catch (RuntimeException e) {
+        System.out.println("Subscriber " + subscriber + " failed on a gap in the changes: " + e);
+      }
+    }
+  }
+
+  private void pause() {
+    try {
+      TimeUnit.MILLISECONDS.sleep(RECONNECT_PAUSE_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      running = false;
+    }
+  }
+
+}
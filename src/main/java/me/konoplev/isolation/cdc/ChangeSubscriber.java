@@ -0,0 +1,23 @@
+package me.konoplev.isolation.cdc;
+
+import java.util.List;
+
+/**
+ * Receives the changes of {@link ChangeStream}, one committed transaction at a time, in the order
+ * of the commits. Beans implementing it are subscribed when the stream starts.
+ * <p>
+ * All subscribers are called on the single thread that reads the log, a slow subscriber delays the others.
+ */
+@FunctionalInterface
+public interface ChangeSubscriber {
+
+  void onTransaction(List<ChangeEvent> changes);
+
+  /**
+   * The stream has (re)connected to the log, the changes committed before that may never arrive. Called before
+   * the first transaction read on the new connection is passed on, state built from the changes should be reloaded.
+   */
+  default void onGap() {
+  }
+
+}
@@ -0,0 +1,161 @@
+package me.konoplev.isolation.cdc;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.github.shyiko.mysql.binlog.event.DeleteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
+import me.konoplev.isolation.cdc.ChangeEvent.Operation;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * The row-based binlog of MySQL, read as a replica would. The user needs the {@code REPLICATION SLAVE} and
+ * {@code REPLICATION CLIENT} privileges. The binlog has no column names, they are read from
+ * {@code information_schema}.
+ * <p>
+ * The binlog is read from its end at the time of connecting, like the temporary slot of {@link PostgresChangeSource}.
+ */
+class MySqlChangeSource implements ChangeSource {
+
+  private static final Pattern URL = Pattern.compile("jdbc:mysql://([^:/?]+)(?::(\\d+))?/([^?]+).*");
+  private static final Pattern TRUNCATE = Pattern.compile("truncate\\s+(?:table\\s+)?`?(\\w+)`?", Pattern.CASE_INSENSITIVE);
+  private static final long HEARTBEAT_MILLIS = 1000;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final List<String> tables;
+  private final String database;
+  private final BinaryLogClient client;
+  private final Map<Long, String> tablesById = new HashMap<>();
+  private final Map<String, List<String>> columns = new ConcurrentHashMap<>();
+  private List<ChangeEvent> transaction = new ArrayList<>();
+
+  MySqlChangeSource(JdbcTemplate jdbcTemplate, String url, String username, String password, List<String> tables) {
+    Matcher matcher = URL.matcher(url);
+    if (!matcher.matches()) {
+      throw new IllegalArgumentException("Can't read the host and the database of " + url);
+    }
+    this.jdbcTemplate = jdbcTemplate;
+    this.tables = tables;
+    this.database = matcher.group(3);
+    this.client = new BinaryLogClient(matcher.group(1),
+        matcher.group(2) == null ? 3306 : Integer.parseInt(matcher.group(2)), username, password);
+    // replicas of a server need distinct ids
+    client.setServerId(ThreadLocalRandom.current().nextLong(1 << 16, Integer.MAX_VALUE));
+    client.setHeartbeatInterval(HEARTBEAT_MILLIS);
+    var deserializer = new EventDeserializer();
+    deserializer.setCompatibilityMode(EventDeserializer.CompatibilityMode.CHAR_AND_BINARY_AS_BYTE_ARRAY);
+    client.setEventDeserializer(deserializer);
+  }
+
+  @Override
+  public void run(Sink sink) throws IOException {
+    client.registerEventListener(event -> onEvent(event, sink));
+    // blocks until disconnected
+    client.connect();
+  }
+
+  @Override
+  public void close() {
+    try {
+      client.disconnect();
+    } catch (IOException e) {
+      System.out.println("Can't disconnect from the binlog: " + e);
+    }
+  }
+
+  private void onEvent(Event event, Sink sink) {
+    EventHeaderV4 header = event.getHeader();
+    switch (header.getEventType()) {
+      case TABLE_MAP -> {
+        TableMapEventData data = event.getData();
+        if (database.equals(data.getDatabase()) && tables.contains(data.getTable())) {
+          tablesById.put(data.getTableId(), data.getTable());
+        }
+      }
+      case WRITE_ROWS, EXT_WRITE_ROWS -> {
+        WriteRowsEventData data = event.getData();
+        addRows(data.getTableId(), Operation.INSERT, data.getRows());
+      }
+      case UPDATE_ROWS, EXT_UPDATE_ROWS -> {
+        UpdateRowsEventData data = event.getData();
+        addRows(data.getTableId(), Operation.UPDATE, data.getRows().stream().map(Map.Entry::getValue).toList());
+      }
+      case DELETE_ROWS, EXT_DELETE_ROWS -> {
+        DeleteRowsEventData data = event.getData();
+        addRows(data.getTableId(), Operation.DELETE, data.getRows());
+      }
+      case XID -> {
+        List<ChangeEvent> committed = transaction;
+        transaction = new ArrayList<>();
+        if (!committed.isEmpty()) {
+          Instant committedAt = Instant.ofEpochMilli(header.getTimestamp());
+          String position = position(header);
+          sink.committed(committed.stream()
+              .map(change -> new ChangeEvent(change.table(), change.operation(), change.row(), position, committedAt))
+              .toList());
+        }
+      }
+      case QUERY -> {
+        QueryEventData data = event.getData();
+        Matcher truncate = TRUNCATE.matcher(data.getSql().trim());
+        // a truncate commits on its own, no XID follows it
+        if (truncate.lookingAt() && tables.contains(truncate.group(1).toLowerCase(Locale.ROOT))) {
+          sink.committed(List.of(new ChangeEvent(truncate.group(1).toLowerCase(Locale.ROOT), Operation.TRUNCATE,
+              Map.of(), position(header), Instant.ofEpochMilli(header.getTimestamp()))));
+        }
+      }
+      case HEARTBEAT -> sink.caughtUp();
+      default -> {
+      }
+    }
+  }
+
+  private void addRows(long tableId, Operation operation, List<Serializable[]> rows) {
+    String table = tablesById.get(tableId);
+    if (table == null) {
+      return;
+    }
+    List<String> names = columns.computeIfAbsent(table, this::columnNames);
+    for (Serializable[] values : rows) {
+      Map<String, String> row = new LinkedHashMap<>();
+      for (int column = 0; column < values.length && column < names.size(); column++) {
+        if (values[column] != null) {
+          row.put(names.get(column), values[column] instanceof byte[] bytes
+              ? new String(bytes, StandardCharsets.UTF_8)
+              : values[column].toString());
+        }
+      }
+      // position and commit time are known at the commit
+      transaction.add(new ChangeEvent(table, operation, row, null, null));
+    }
+  }
+
+  private List<String> columnNames(String table) {
+    return jdbcTemplate.queryForList("select column_name from information_schema.columns "
+        + "where table_schema = ? and table_name = ? order by ordinal_position", String.class, database, table);
+  }
+
+  private String position(EventHeaderV4 header) {
+    return client.getBinlogFilename() + ":" + header.getNextPosition();
+  }
+
+}
@@ -0,0 +1,155 @@
+package me.konoplev.isolation.cdc;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.konoplev.isolation.cdc.ChangeEvent.Operation;
+import org.postgresql.replication.LogSequenceNumber;
+
+/**
+ * Decodes the messages of the {@code pgoutput} plugin, protocol version 1, into {@link ChangeEvent}s.
+ * Values come in the text format. Messages the events don't need, like types and origins, are skipped.
+ */
+class PgOutputDecoder {
+
+  private static final Instant POSTGRES_EPOCH = Instant.parse("2000-01-01T00:00:00Z");
+
+  private final Map<Integer, Relation> relations = new HashMap<>();
+  private List<ChangeEvent> transaction;
+  private String position;
+  private Instant committedAt;
+  private LogSequenceNumber endOfLastCommit = LogSequenceNumber.INVALID_LSN;
+
+  /**
+   * @return the changes of the transaction if the message is its commit, otherwise null. Null for the commit
+   * of a transaction without changes as well, {@link #endOfLastCommit()} moves on all the same
+   */
+  List<ChangeEvent> decode(ByteBuffer message) {
+    char type = (char) message.get();
+    switch (type) {
+      case 'B' -> {
+        position = LogSequenceNumber.valueOf(message.getLong()).asString();
+        committedAt = timestamp(message.getLong());
+        transaction = new ArrayList<>();
+      }
+      case 'C' -> {
+        message.get();
+        message.getLong();
+        endOfLastCommit = LogSequenceNumber.valueOf(message.getLong());
+        List<ChangeEvent> committed = transaction;
+        transaction = null;
+        // before Postgres 15 transactions that changed no published table are sent too, with nothing in them
+        return committed == null || committed.isEmpty() ? null : committed;
+      }
+      case 'R' -> {
+        int oid = message.getInt();
+        readString(message);
+        String table = readString(message);
+        message.get();
+        short columns = message.getShort();
+        List<String> names = new ArrayList<>(columns);
+        for (int column = 0; column < columns; column++) {
+          message.get();
+          names.add(readString(message));
+          message.getInt();
+          message.getInt();
+        }
+        relations.put(oid, new Relation(table, names));
+      }
+      case 'I' -> {
+        Relation relation = relation(message.getInt());
+        message.get();
+        add(relation.table(), Operation.INSERT, readTuple(message, relation));
+      }
+      case 'U' -> {
+        Relation relation = relation(message.getInt());
+        char tuple = (char) message.get();
+        if (tuple == 'K' || tuple == 'O') {
+          // the old key or row, the new row follows
+          readTuple(message, relation);
+          message.get();
+        }
+        add(relation.table(), Operation.UPDATE, readTuple(message, relation));
+      }
+      case 'D' -> {
+        Relation relation = relation(message.getInt());
+        message.get();
+        add(relation.table(), Operation.DELETE, readTuple(message, relation));
+      }
+      case 'T' -> {
+        int truncated = message.getInt();
+        message.get();
+        for (int i = 0; i < truncated; i++) {
+          add(relation(message.getInt()).table(), Operation.TRUNCATE, Map.of());
+        }
+      }
+      default -> {
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The position to acknowledge, everything before it has been passed on.
+   */
+  LogSequenceNumber endOfLastCommit() {
+    return endOfLastCommit;
+  }
+
+  private void add(String table, Operation operation, Map<String, String> row) {
+    if (transaction == null) {
+      throw new IllegalStateException(operation + " of " + table + " outside of a transaction");
+    }
+    transaction.add(new ChangeEvent(table, operation, row, position, committedAt));
+  }
+
+  private Relation relation(int oid) {
+    Relation relation = relations.get(oid);
+    if (relation == null) {
+      throw new IllegalStateException("Relation " + oid + " wasn't described before its changes");
+    }
+    return relation;
+  }
+
+  private static Map<String, String> readTuple(ByteBuffer message, Relation relation) {
+    short columns = message.getShort();
+    Map<String, String> row = new LinkedHashMap<>();
+    for (int column = 0; column < columns; column++) {
+      char kind = (char) message.get();
+      // 'n' is null, 'u' is an unchanged TOASTed value that isn't sent
+      if (kind == 't') {
+        byte[] value = new byte[message.getInt()];
+        message.get(value);
+        row.put(relation.columns().get(column), new String(value, StandardCharsets.UTF_8));
+      }
+    }
+    return row;
+  }
+
+  private static String readString(ByteBuffer message) {
+    int end = message.position();
+    while (message.get(end) != 0) {
+      end++;
+    }
+    byte[] string = new byte[end - message.position()];
+    message.get(string);
+    // the terminating zero
+    message.get();
+    return new String(string, StandardCharsets.UTF_8);
+  }
+
+  private static Instant timestamp(long microsSincePostgresEpoch) {
+    return POSTGRES_EPOCH.plus(microsSincePostgresEpoch, ChronoUnit.MICROS);
+  }
+
+  private record Relation(String table, List<String> columns) {
+  }
+
+}
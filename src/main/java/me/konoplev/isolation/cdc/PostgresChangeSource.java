@@ -0,0 +1,118 @@
+package me.konoplev.isolation.cdc;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Logical replication of Postgres with the built-in {@code pgoutput} plugin, the server needs
+ * {@code wal_level=logical}. The tables are published by a publication created if it doesn't exist.
+ * <p>
+ * Every node reads through a temporary replication slot of its own. The database drops it with the connection,
+ * so a node that is gone doesn't keep the WAL from being recycled. The caches fed by the stream start empty
+ * anyway, there is nothing to resume after a restart.
+ */
+class PostgresChangeSource implements ChangeSource {
+
+  private static final long IDLE_PAUSE_MILLIS = 10;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final String url;
+  private final String username;
+  private final String password;
+  private final String publication;
+  private final List<String> tables;
+  private volatile boolean closed;
+
+  PostgresChangeSource(JdbcTemplate jdbcTemplate, String url, String username, String password, String publication,
+                       List<String> tables) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.url = url;
+    this.username = username;
+    this.password = password;
+    this.publication = publication;
+    this.tables = tables;
+  }
+
+  @Override
+  public void run(Sink sink) throws SQLException {
+    String walLevel = jdbcTemplate.queryForObject("show wal_level", String.class);
+    if (!"logical".equals(walLevel)) {
+      throw new IllegalStateException("Logical replication needs wal_level=logical, the server has " + walLevel);
+    }
+    createPublication();
+    String slot = "isolation_" + UUID.randomUUID().toString().replace("-", "");
+    try (Connection connection = DriverManager.getConnection(url, replicationProperties())) {
+      PGConnection replication = connection.unwrap(PGConnection.class);
+      replication.getReplicationAPI().createReplicationSlot().logical()
+          .withSlotName(slot)
+          .withOutputPlugin("pgoutput")
+          .withTemporaryOption()
+          .make();
+      try (PGReplicationStream stream = replication.getReplicationAPI().replicationStream().logical()
+          .withSlotName(slot)
+          .withSlotOption("proto_version", "1")
+          .withSlotOption("publication_names", publication)
+          .withStatusInterval(1, TimeUnit.SECONDS)
+          .start()) {
+        var decoder = new PgOutputDecoder();
+        while (!closed) {
+          ByteBuffer message = stream.readPending();
+          if (message == null) {
+            sink.caughtUp();
+            TimeUnit.MILLISECONDS.sleep(IDLE_PAUSE_MILLIS);
+            continue;
+          }
+          LogSequenceNumber acknowledged = decoder.endOfLastCommit();
+          List<ChangeEvent> committed = decoder.decode(message);
+          if (committed != null) {
+            sink.committed(committed);
+          }
+          if (!decoder.endOfLastCommit().equals(acknowledged)) {
+            // the server may drop the WAL up to here, empty transactions included
+            stream.setAppliedLSN(decoder.endOfLastCommit());
+            stream.setFlushedLSN(decoder.endOfLastCommit());
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+
+  private void createPublication() {
+    Integer exists = jdbcTemplate.queryForObject("select count(*) from pg_publication where pubname = ?", Integer.class,
+        publication);
+    if (exists == null || exists == 0) {
+      jdbcTemplate.execute("create publication " + publication + " for table " + String.join(", ", tables));
+    }
+  }
+
+  private Properties replicationProperties() {
+    var properties = new Properties();
+    PGProperty.USER.set(properties, username);
+    PGProperty.PASSWORD.set(properties, password);
+    PGProperty.REPLICATION.set(properties, "database");
+    PGProperty.ASSUME_MIN_SERVER_VERSION.set(properties, "10");
+    // the replication protocol only accepts simple queries
+    PGProperty.PREFER_QUERY_MODE.set(properties, "simple");
+    return properties;
+  }
+
+}
@@ -0,0 +1,104 @@
+package me.konoplev.isolation.diagnostics;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the database from a daemon thread over its own autocommit connection while a scenario runs.
+ * The sampling queries only read system views at READ_COMMITTED, so they take no locks the scenario could wait for.
+ */
+public abstract class DatabaseSampler implements AutoCloseable {
+
+  private final DataSource dataSource;
+  private final Duration interval;
+  private ScheduledExecutorService executor;
+  private Connection connection;
+  private volatile SQLException lastError;
+
+  protected DatabaseSampler(DataSource dataSource, Duration interval) {
+    this.dataSource = dataSource;
+    this.interval = interval;
+  }
+
+  public synchronized void start() throws SQLException {
+    if (executor != null) {
+      throw new IllegalStateException(getClass().getSimpleName() + " is already started");
+    }
+    connection = dataSource.getConnection();
+    try {
+      connection.setAutoCommit(true);
+      connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+      prepare(connection);
+    } catch (SQLException | RuntimeException e) {
+      // e.g. a sampler the database doesn't support, the connection goes back to the pool
+      connection.close();
+      connection = null;
+      throw e;
+    }
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, getClass().getSimpleName());
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(this::sampleAndKeepError, 0, interval.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Stops polling. One more sample is taken so that the state at the end of the scenario is always captured,
+   * but only once the background thread is done with the connection. If a sample hangs even after
+   * an interrupt, the final one is skipped and {@link #lastError()} tells about it.
+   */
+  public synchronized void stop() throws SQLException {
+    if (executor == null) {
+      return;
+    }
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+        executor.shutdownNow();
+        // a JDBC connection isn't meant to be used by two threads at once
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+          lastError = new SQLException(getClass().getSimpleName() + " is still sampling, the final sample is skipped");
+          return;
+        }
+      }
+      sample(connection);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      executor = null;
+      connection.close();
+    }
+  }
+
+  @Override
+  public void close() throws SQLException {
+    stop();
+  }
+
+  /**
+   * The last error the background thread got, sampling goes on after an error.
+   */
+  public SQLException lastError() {
+    return lastError;
+  }
+
+  protected void prepare(Connection connection) throws SQLException {
+  }
+
+  protected abstract void sample(Connection connection) throws SQLException;
+
+  private void sampleAndKeepError() {
+    try {
+      sample(connection);
+    } catch (SQLException e) {
+      lastError = e;
+    }
+  }
+
+}
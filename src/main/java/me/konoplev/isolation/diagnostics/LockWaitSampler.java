@@ -0,0 +1,92 @@
+package me.konoplev.isolation.diagnostics;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import me.konoplev.isolation.diagnostics.WaitForGraph.WaitEdge;
+import me.konoplev.isolation.util.DatabaseVendor;
+import me.konoplev.isolation.util.PhaseSync;
+import me.konoplev.isolation.util.PhaseSync.Phases;
+
+/**
+ * Polls who waits for whom while a {@link PhaseSync} scenario runs and records every change of the wait-for graph
+ * together with the phase the scenario was in.
+ * <p>
+ * Postgres data comes from {@code pg_stat_activity} and {@code pg_blocking_pids}, MySQL data from
+ * {@code performance_schema.data_lock_waits}. The MySQL user needs SELECT on performance_schema.
+ */
+public class LockWaitSampler extends DatabaseSampler {
+
+  private static final String POSTGRES_WAITS = """
+      select a.pid, blocking.pid,
+             coalesce((select coalesce(l.relation::regclass::text, l.locktype)
+                       from pg_locks l where l.pid = a.pid and not l.granted
+                       order by l.relation nulls last limit 1), a.wait_event_type || ':' || a.wait_event),
+             left(a.query, 200)
+      from pg_stat_activity a
+      cross join lateral unnest(pg_blocking_pids(a.pid)) as blocking(pid)
+      where a.datname = current_database()
+      """;
+
+  private static final String MYSQL_WAITS = """
+      select waiting.PROCESSLIST_ID, blocking.PROCESSLIST_ID,
+             concat(l.OBJECT_NAME, coalesce(concat('.', l.INDEX_NAME), ''), ' ', l.LOCK_MODE,
+                    coalesce(concat(' ', l.LOCK_DATA), '')),
+             left(waiting.PROCESSLIST_INFO, 200)
+      from performance_schema.data_lock_waits w
+      join performance_schema.data_locks l on l.ENGINE_LOCK_ID = w.REQUESTING_ENGINE_LOCK_ID
+      join performance_schema.threads waiting on waiting.THREAD_ID = w.REQUESTING_THREAD_ID
+      join performance_schema.threads blocking on blocking.THREAD_ID = w.BLOCKING_THREAD_ID
+      """;
+
+  private final WaitForGraph graph = new WaitForGraph();
+  private final Supplier<Phases> currentPhase;
+  private PreparedStatement query;
+  private long startedAt;
+
+  public LockWaitSampler(DataSource dataSource, Duration interval, Supplier<Phases> currentPhase) {
+    super(dataSource, interval);
+    this.currentPhase = currentPhase;
+  }
+
+  public static LockWaitSampler start(DataSource dataSource, Duration interval, PhaseSync phaseSync) throws SQLException {
+    LockWaitSampler sampler = new LockWaitSampler(dataSource, interval, phaseSync::currentPhase);
+    sampler.start();
+    // a stalled scenario reports the sessions it was blocked by
+    phaseSync.setStallDiagnostics(sampler.graph()::toString);
+    return sampler;
+  }
+
+  public WaitForGraph graph() {
+    return graph;
+  }
+
+  @Override
+  protected void prepare(Connection connection) throws SQLException {
+    query = connection.prepareStatement(switch (DatabaseVendor.of(connection)) {
+      case POSTGRES -> POSTGRES_WAITS;
+      case MYSQL -> MYSQL_WAITS;
+    });
+    startedAt = System.nanoTime();
+  }
+
+  @Override
+  protected void sample(Connection connection) throws SQLException {
+    Phases phase = currentPhase.get();
+    List<WaitEdge> edges = new ArrayList<>();
+    try (ResultSet resultSet = query.executeQuery()) {
+      while (resultSet.next()) {
+        edges.add(new WaitEdge(resultSet.getLong(1), resultSet.getLong(2), resultSet.getString(3), resultSet.getString(4)));
+      }
+    }
+    graph.add(Duration.ofNanos(System.nanoTime() - startedAt), phase, edges);
+  }
+
+}
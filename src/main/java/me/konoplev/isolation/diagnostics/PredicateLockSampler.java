@@ -0,0 +1,76 @@
+package me.konoplev.isolation.diagnostics;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import me.konoplev.isolation.diagnostics.SsiFootprint.Granularity;
+import me.konoplev.isolation.diagnostics.SsiFootprint.PredicateLock;
+import me.konoplev.isolation.util.DatabaseVendor;
+
+/**
+ * Samples Postgres {@code pg_locks} for SIRead predicate locks while a SERIALIZABLE scenario runs.
+ * <pre>
+ * try (var sampler = PredicateLockSampler.start(dataSource, Duration.ofMillis(10))) {
+ *   // run the scenario
+ *   sampler.stop();
+ *   System.out.println(sampler.report());
+ * }
+ * </pre>
+ */
+public class PredicateLockSampler extends DatabaseSampler {
+
+  private static final String PREDICATE_LOCKS = """
+      select l.virtualtransaction, l.relation::regclass::text, l.locktype, l.page, l.tuple
+      from pg_locks l
+      where l.mode = 'SIReadLock'
+        and l.database = (select oid from pg_database where datname = current_database())
+      """;
+
+  private final SsiFootprint footprint = new SsiFootprint();
+  private PreparedStatement query;
+
+  public PredicateLockSampler(DataSource dataSource, Duration interval) {
+    super(dataSource, interval);
+  }
+
+  public static PredicateLockSampler start(DataSource dataSource, Duration interval) throws SQLException {
+    PredicateLockSampler sampler = new PredicateLockSampler(dataSource, interval);
+    sampler.start();
+    return sampler;
+  }
+
+  public SsiFootprint.Report report() {
+    return footprint.report();
+  }
+
+  @Override
+  protected void prepare(Connection connection) throws SQLException {
+    if (DatabaseVendor.of(connection) != DatabaseVendor.POSTGRES) {
+      throw new IllegalStateException("Predicate locks are only implemented by Postgres");
+    }
+    query = connection.prepareStatement(PREDICATE_LOCKS);
+  }
+
+  @Override
+  protected void sample(Connection connection) throws SQLException {
+    List<PredicateLock> locks = new ArrayList<>();
+    try (ResultSet resultSet = query.executeQuery()) {
+      while (resultSet.next()) {
+        locks.add(new PredicateLock(
+            resultSet.getString(1),
+            resultSet.getString(2),
+            Granularity.of(resultSet.getString(3)),
+            resultSet.getObject(4, Integer.class),
+            resultSet.getObject(5, Integer.class)));
+      }
+    }
+    footprint.add(locks);
+  }
+
+}
@@ -0,0 +1,153 @@
+package me.konoplev.isolation.diagnostics;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregates samples of SIRead predicate locks taken by SERIALIZABLE transactions in Postgres.
+ * <p>
+ * A predicate lock doesn't block anybody, but a write into a locked tuple, page or relation by a concurrent
+ * transaction is a read-write conflict, and two of them in a row abort one of the transactions. So the targets
+ * locked by several transactions at once are the places where the aborts come from. Page and relation locks make
+ * it much worse: they cover rows the transaction has never read. They come either from an escalation (too many
+ * tuple locks on a page or pages in a relation) or from a sequential scan, which usually means a missing index.
+ */
+public class SsiFootprint {
+
+  private final Map<String, RelationStats> relations = new TreeMap<>();
+  private Set<PredicateLock> previous = Set.of();
+  private int samples;
+
+  public synchronized void add(Collection<PredicateLock> locks) {
+    samples++;
+    Set<PredicateLock> current = new HashSet<>(locks);
+    Map<String, List<PredicateLock>> byRelation = current.stream()
+        .collect(Collectors.groupingBy(PredicateLock::relation));
+    byRelation.forEach((relation, relationLocks) -> relations.computeIfAbsent(relation, RelationStats::new).observe(relationLocks));
+    detectGranularityChanges(current);
+    previous = current;
+  }
+
+  public synchronized Report report() {
+    return new Report(samples, relations.values().stream().map(RelationStats::toReport).toList());
+  }
+
+  private void detectGranularityChanges(Set<PredicateLock> current) {
+    for (PredicateLock lock : current) {
+      if (lock.granularity() == Granularity.TUPLE || previous.contains(lock)) {
+        continue;
+      }
+      List<PredicateLock> before = previous.stream()
+          .filter(previousLock -> previousLock.owner().equals(lock.owner()) && previousLock.relation().equals(lock.relation()))
+          .toList();
+      RelationStats stats = relations.get(lock.relation());
+      if (lock.granularity() == Granularity.PAGE) {
+        if (before.stream().anyMatch(previousLock -> previousLock.granularity() == Granularity.TUPLE
+            && Objects.equals(previousLock.page(), lock.page()))) {
+          stats.escalations.add(new Escalation(lock.owner(), Granularity.TUPLE, Granularity.PAGE, lock.page()));
+        }
+      } else if (before.isEmpty()) {
+        stats.relationScans.add(lock.owner());
+      } else {
+        stats.escalations.add(new Escalation(lock.owner(), before.get(0).granularity(), Granularity.RELATION, null));
+      }
+    }
+  }
+
+  public enum Granularity {
+    TUPLE,
+    PAGE,
+    RELATION;
+
+    static Granularity of(String lockType) {
+      return valueOf(lockType.toUpperCase(Locale.ROOT));
+    }
+  }
+
+  /**
+   * @param owner virtual transaction id, locks of committed transactions outlive their backend so the pid isn't enough
+   */
+  public record PredicateLock(String owner, String relation, Granularity granularity, Integer page, Integer tuple) {
+
+    String target() {
+      return switch (granularity) {
+        case RELATION -> "relation";
+        case PAGE -> "page " + page;
+        case TUPLE -> "tuple (" + page + "," + tuple + ")";
+      };
+    }
+  }
+
+  public record Escalation(String owner, Granularity from, Granularity to, Integer page) {
+  }
+
+  public record RelationReport(String relation, int transactions, int maxTupleLocks, int maxPageLocks,
+                               int maxRelationLocks, SortedSet<Integer> pages, Set<Escalation> escalations,
+                               int relationScans, SortedMap<String, Integer> sharedTargets) {
+
+    @Override
+    public String toString() {
+      return relation + ": " + transactions + " transactions"
+          + ", max locks tuple/page/relation " + maxTupleLocks + "/" + maxPageLocks + "/" + maxRelationLocks
+          + ", pages " + pages
+          + ", escalations " + escalations.size()
+          + ", relation scans " + relationScans
+          + (sharedTargets.isEmpty() ? "" : ", locked by several transactions " + sharedTargets);
+    }
+  }
+
+  public record Report(int samples, List<RelationReport> relations) {
+
+    public Optional<RelationReport> relation(String name) {
+      return relations.stream().filter(relation -> relation.relation().equals(name)).findFirst();
+    }
+
+    @Override
+    public String toString() {
+      return "SIRead locks in " + samples + " samples"
+          + relations.stream().map(RelationReport::toString).collect(Collectors.joining("\n  ", ":\n  ", ""));
+    }
+  }
+
+  private static class RelationStats {
+    private final String relation;
+    private final Set<String> owners = new HashSet<>();
+    private final SortedSet<Integer> pages = new TreeSet<>();
+    private final Set<Escalation> escalations = new LinkedHashSet<>();
+    private final Set<String> relationScans = new HashSet<>();
+    private final SortedMap<String, Integer> sharedTargets = new TreeMap<>();
+    private final int[] maxLocks = new int[Granularity.values().length];
+
+    private RelationStats(String relation) {
+      this.relation = relation;
+    }
+
+    private void observe(List<PredicateLock> locks) {
+      int[] locksNow = new int[Granularity.values().length];
+      Map<String, Set<String>> ownersByTarget = new HashMap<>();
+      for (PredicateLock lock : locks) {
+        owners.add(lock.owner());
+        locksNow[lock.granularity().ordinal()]++;
+        if (lock.page() != null) {
+          pages.add(lock.page());
+        }
+        ownersByTarget.computeIfAbsent(lock.target(), target -> new HashSet<>()).add(lock.owner());
+      }
+      for (int i = 0; i < maxLocks.length; i++) {
+        maxLocks[i] = Math.max(maxLocks[i], locksNow[i]);
+      }
+      ownersByTarget.forEach((target, targetOwners) -> {
+        if (targetOwners.size() > 1) {
+          sharedTargets.merge(target, targetOwners.size(), Math::max);
+        }
+      });
+    }
+
+    private RelationReport toReport() {
+      return new RelationReport(relation, owners.size(),
+          maxLocks[Granularity.TUPLE.ordinal()], maxLocks[Granularity.PAGE.ordinal()], maxLocks[Granularity.RELATION.ordinal()],
+          new TreeSet<>(pages), new LinkedHashSet<>(escalations), relationScans.size(), new TreeMap<>(sharedTargets));
+    }
+  }
+
+}
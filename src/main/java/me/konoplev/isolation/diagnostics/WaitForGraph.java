@@ -0,0 +1,110 @@
+package me.konoplev.isolation.diagnostics;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import me.konoplev.isolation.util.PhaseSync.Phases;
+
+/**
+ * Timeline of lock waits between database sessions. Only samples that differ from the previous one are kept,
+ * so a long wait is a single entry, not one entry per poll.
+ */
+public class WaitForGraph {
+
+  private final List<Snapshot> timeline = new ArrayList<>();
+  private final Map<String, Integer> maxWaitersPerBlocker = new TreeMap<>();
+  private final Set<List<Long>> deadlocks = new LinkedHashSet<>();
+  private Set<WaitEdge> previous = Set.of();
+
+  public synchronized void add(Duration elapsed, Phases phase, Collection<WaitEdge> edges) {
+    Set<WaitEdge> current = new LinkedHashSet<>(edges);
+    if (current.equals(previous)) {
+      return;
+    }
+    previous = current;
+    timeline.add(new Snapshot(elapsed, phase, List.copyOf(current)));
+    current.stream()
+        .collect(Collectors.groupingBy(edge -> edge.blocker() + " on " + edge.object(), Collectors.counting()))
+        .forEach((blocker, waiters) -> maxWaitersPerBlocker.merge(blocker, waiters.intValue(), Math::max));
+    deadlocks.addAll(cycles(current));
+  }
+
+  public synchronized List<Snapshot> timeline() {
+    return List.copyOf(timeline);
+  }
+
+  /**
+   * The biggest number of sessions waiting for the same session on the same object, a convoy if it's more than one.
+   */
+  public synchronized Map<String, Integer> maxWaitersPerBlocker() {
+    return new TreeMap<>(maxWaitersPerBlocker);
+  }
+
+  /**
+   * Wait cycles seen before the database detected the deadlock and killed one of the sessions.
+   */
+  public synchronized Set<List<Long>> deadlocks() {
+    return new LinkedHashSet<>(deadlocks);
+  }
+
+  @Override
+  public synchronized String toString() {
+    StringBuilder result = new StringBuilder("Lock waits timeline:");
+    for (Snapshot snapshot : timeline) {
+      result.append("\n  +").append(snapshot.elapsed().toMillis()).append("ms [").append(snapshot.phase()).append("]");
+      if (snapshot.edges().isEmpty()) {
+        result.append(" no waits");
+      }
+      snapshot.edges().forEach(edge -> result.append("\n    ").append(edge));
+    }
+    result.append("\nMax waiters per blocker: ").append(maxWaitersPerBlocker);
+    if (!deadlocks.isEmpty()) {
+      result.append("\nDeadlocks: ").append(deadlocks);
+    }
+    return result.toString();
+  }
+
+  private static Set<List<Long>> cycles(Set<WaitEdge> edges) {
+    Map<Long, Set<Long>> blockers = new HashMap<>();
+    edges.forEach(edge -> blockers.computeIfAbsent(edge.waiter(), waiter -> new TreeSet<>()).add(edge.blocker()));
+    Set<List<Long>> cycles = new LinkedHashSet<>();
+    for (Long start : blockers.keySet()) {
+      findCycles(start, new ArrayList<>(List.of(start)), blockers, cycles);
+    }
+    return cycles;
+  }
+
+  private static void findCycles(Long session, List<Long> path, Map<Long, Set<Long>> blockers, Set<List<Long>> cycles) {
+    for (Long blocker : blockers.getOrDefault(session, Set.of())) {
+      if (blocker.equals(path.get(0))) {
+        // the same cycle is found from every session in it, keep the one starting from the smallest id
+        if (path.get(0).equals(Collections.min(path))) {
+          cycles.add(List.copyOf(path));
+        }
+      } else if (!path.contains(blocker)) {
+        path.add(blocker);
+        findCycles(blocker, path, blockers, cycles);
+        path.remove(path.size() - 1);
+      }
+    }
+  }
+
+  /**
+   * @param waiter  the session (Postgres backend pid, MySQL connection id) waiting for a lock
+   * @param blocker the session holding the lock
+   * @param object  what the lock protects, e.g. a relation or an index record
+   * @param query   the statement the waiter is blocked in
+   */
+  public record WaitEdge(long waiter, long blocker, String object, String query) {
+
+    @Override
+    public String toString() {
+      return waiter + " -> " + blocker + " on " + object + ": " + query;
+    }
+  }
+
+  public record Snapshot(Duration elapsed, Phases phase, List<WaitEdge> edges) {
+  }
+
+}
@@ -0,0 +1,89 @@
+package me.konoplev.isolation.matrix;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import me.konoplev.isolation.matrix.MatrixReport.Cell;
+import org.springframework.transaction.annotation.Isolation;
+
+/**
+ * Runs every scenario at every isolation level against every database and collects a {@link MatrixReport}.
+ * Databases are run in parallel, the runs against one database one after another, because they share its rows.
+ */
+public class IsolationMatrix {
+
+  public static final List<Isolation> ISOLATION_LEVELS = List.of(
+      Isolation.READ_UNCOMMITTED, Isolation.READ_COMMITTED, Isolation.REPEATABLE_READ, Isolation.SERIALIZABLE);
+
+  private final List<SessionFactory> databases;
+
+  /**
+   * @param databases every database once, two factories of the same database would interfere
+   */
+  public IsolationMatrix(List<SessionFactory> databases) {
+    this.databases = List.copyOf(databases);
+  }
+
+  /**
+   * @param repetitions runs per cell, the forced interleaving makes the outcome stable, repetitions
+   *                    make the latency and abort rate less noisy
+   */
+  public MatrixReport run(List<Scenario> scenarios, List<Isolation> isolations, int repetitions) {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      List<CompletableFuture<List<Cell>>> perDatabase = new ArrayList<>();
+      for (SessionFactory database : databases) {
+        var runner = new ScenarioRunner(database, executor);
+        perDatabase.add(CompletableFuture.supplyAsync(() -> cells(database.name(), runner, scenarios, isolations, repetitions), executor));
+      }
+      List<Cell> cells = new ArrayList<>();
+      for (CompletableFuture<List<Cell>> database : perDatabase) {
+        cells.addAll(database.join());
+      }
+      return new MatrixReport(List.copyOf(cells));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static List<Cell> cells(String database, ScenarioRunner runner, List<Scenario> scenarios,
+                                  List<Isolation> isolations, int repetitions) {
+    List<Cell> cells = new ArrayList<>();
+    for (Scenario scenario : scenarios) {
+      for (Isolation isolation : isolations) {
+        int anomalies = 0;
+        int aborted = 0;
+        int transactions = 0;
+        int stalled = 0;
+        long totalLatencyNanos = 0;
+        long maxLatencyNanos = 0;
+        for (int i = 0; i < repetitions; i++) {
+          ScenarioRunner.Run run;
+          try {
+            run = runner.run(scenario, isolation, 0);
+          } catch (Exception e) {
+            throw new CompletionException("Can't run " + scenario.name() + " at " + isolation + " on " + database, e);
+          }
+          anomalies += run.anomaly() ? 1 : 0;
+          aborted += run.aborted();
+          transactions += run.transactions();
+          stalled += run.stalled() ? 1 : 0;
+          for (Duration latency : run.latencies()) {
+            totalLatencyNanos += latency.toNanos();
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency.toNanos());
+          }
+        }
+        cells.add(new Cell(database, scenario.name(), isolation, repetitions, anomalies, aborted, transactions, stalled,
+            Duration.ofNanos(transactions == 0 ? 0 : totalLatencyNanos / transactions), Duration.ofNanos(maxLatencyNanos),
+            scenario.preventedFrom()));
+      }
+    }
+    return cells;
+  }
+
+}
@@ -0,0 +1,99 @@
+package me.konoplev.isolation.matrix;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import me.konoplev.isolation.util.DatabaseVendor;
+
+class JdbcSession implements Session {
+
+  private final Connection connection;
+  private final DatabaseVendor vendor;
+  private final int idOffset;
+  private boolean finished;
+
+  JdbcSession(Connection connection, DatabaseVendor vendor, int idOffset) {
+    this.connection = connection;
+    this.vendor = vendor;
+    this.idOffset = idOffset;
+  }
+
+  @Override
+  public int read(int accountId) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement("select amount from account where id = ?")) {
+      statement.setInt(1, accountId + idOffset);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        if (!resultSet.next()) {
+          throw new IllegalStateException("There is no account " + accountId);
+        }
+        return resultSet.getInt(1);
+      }
+    }
+  }
+
+  @Override
+  public int sum(int fromAccountId, int toAccountId) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(
+        "select coalesce(sum(amount), 0) from account where id between ? and ?")) {
+      statement.setInt(1, fromAccountId + idOffset);
+      statement.setInt(2, toAccountId + idOffset);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        return resultSet.getInt(1);
+      }
+    }
+  }
+
+  @Override
+  public void write(int accountId, int amount) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement("update account set amount = ? where id = ?")) {
+      statement.setInt(1, amount);
+      statement.setInt(2, accountId + idOffset);
+      statement.executeUpdate();
+    }
+  }
+
+  @Override
+  public void insert(int accountId, int amount) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement("insert into account (id, amount) values (?, ?)")) {
+      statement.setInt(1, accountId + idOffset);
+      statement.setInt(2, amount);
+      statement.executeUpdate();
+    }
+  }
+
+  @Override
+  public void commit() throws SQLException {
+    connection.commit();
+    finished = true;
+  }
+
+  @Override
+  public void rollback() throws SQLException {
+    finished = true;
+    connection.rollback();
+  }
+
+  @Override
+  public void close() throws SQLException {
+    try {
+      if (!finished) {
+        connection.rollback();
+      }
+      // the connection goes back to the pool, the pool itself restores autocommit and the isolation level
+      connection.setAutoCommit(true);
+      try (Statement statement = connection.createStatement()) {
+        statement.execute(switch (vendor) {
+          case POSTGRES -> "reset lock_timeout";
+          case MYSQL -> "set innodb_lock_wait_timeout = default";
+        });
+      }
+    } finally {
+      connection.close();
+    }
+  }
+
+}
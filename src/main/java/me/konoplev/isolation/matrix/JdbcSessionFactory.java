@@ -0,0 +1,87 @@
+package me.konoplev.isolation.matrix;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+
+import me.konoplev.isolation.util.DatabaseVendor;
+import me.konoplev.isolation.util.Deadline;
+import org.springframework.transaction.annotation.Isolation;
+
+/**
+ * Sessions over the {@code account} table of a real database, the table of the application's schema.
+ * <p>
+ * A step that waits for a lock longer than {@code lockTimeout}, or than the {@link Deadline} of the scenario has
+ * left when the session is opened, fails and its transaction counts as aborted. Otherwise a lock held
+ * by a transaction waiting for a later phase would stall the scenario.
+ */
+public class JdbcSessionFactory implements SessionFactory {
+
+  private final String name;
+  private final DataSource dataSource;
+  private final DatabaseVendor vendor;
+  private final Duration lockTimeout;
+
+  public JdbcSessionFactory(DataSource dataSource) {
+    this(DatabaseVendor.of(dataSource).name(), dataSource, Duration.ofSeconds(2));
+  }
+
+  public JdbcSessionFactory(String name, DataSource dataSource, Duration lockTimeout) {
+    this.name = name;
+    this.dataSource = dataSource;
+    this.vendor = DatabaseVendor.of(dataSource);
+    this.lockTimeout = lockTimeout;
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public void prepare(Map<Integer, Integer> amounts, int idOffset) throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      try (PreparedStatement delete = connection.prepareStatement("delete from account where id >= ? and id < ?")) {
+        delete.setInt(1, idOffset);
+        delete.setInt(2, idOffset + Scenario.MAX_ACCOUNTS);
+        delete.executeUpdate();
+      }
+      try (PreparedStatement insert = connection.prepareStatement("insert into account (id, amount) values (?, ?)")) {
+        for (var account : amounts.entrySet()) {
+          insert.setInt(1, account.getKey() + idOffset);
+          insert.setInt(2, account.getValue());
+          insert.addBatch();
+        }
+        insert.executeBatch();
+      }
+    }
+  }
+
+  @Override
+  public Session open(Isolation isolation, int idOffset) throws SQLException {
+    Duration timeout = Deadline.current().map(Deadline::remaining)
+        .filter(remaining -> remaining.compareTo(lockTimeout) < 0)
+        .orElse(lockTimeout);
+    Connection connection = dataSource.getConnection();
+    try {
+      try (Statement statement = connection.createStatement()) {
+        statement.execute(switch (vendor) {
+          case POSTGRES -> "set lock_timeout = " + Math.max(1, timeout.toMillis());
+          // whole seconds only
+          case MYSQL -> "set innodb_lock_wait_timeout = " + Math.max(1, timeout.toSeconds());
+        });
+      }
+      connection.setTransactionIsolation(isolation.value());
+      connection.setAutoCommit(false);
+      return new JdbcSession(connection, vendor, idOffset);
+    } catch (SQLException e) {
+      connection.close();
+      throw e;
+    }
+  }
+
+}
@@ -0,0 +1,72 @@
+package me.konoplev.isolation.matrix;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.transaction.annotation.Isolation;
+
+/**
+ * Outcome, abort rate and latency of every scenario per database and isolation level.
+ */
+public record MatrixReport(List<Cell> cells) {
+
+  public Cell cell(String database, String scenario, Isolation isolation) {
+    return cells.stream()
+        .filter(cell -> cell.database().equals(database) && cell.scenario().equals(scenario) && cell.isolation() == isolation)
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("No " + scenario + " at " + isolation + " on " + database));
+  }
+
+  public String toCsv() {
+    StringBuilder result = new StringBuilder(
+        "scenario,isolation,database,outcome,runs,anomalies,abort_rate,stalled_runs,mean_latency_ms,max_latency_ms,violates_standard\n");
+    for (Cell cell : cells) {
+      result.append(String.join(",", cell.scenario(), cell.isolation().name(), cell.database(), cell.outcome().name(),
+              String.valueOf(cell.runs()), String.valueOf(cell.anomalies()), String.format("%.3f", cell.abortRate()),
+              String.valueOf(cell.stalledRuns()), String.valueOf(cell.meanLatency().toMillis()),
+              String.valueOf(cell.maxLatency().toMillis()), String.valueOf(cell.violatesStandard())))
+          .append("\n");
+    }
+    return result.toString();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder(String.format("%-20s %-17s %-10s %-10s %9s %6s %8s %8s%n",
+        "scenario", "isolation", "database", "outcome", "anomalies", "aborts", "mean ms", "max ms"));
+    for (Cell cell : cells) {
+      result.append(String.format("%-20s %-17s %-10s %-10s %4d/%-4d %5.0f%% %8d %8d%s%n",
+          cell.scenario(), cell.isolation(), cell.database(), cell.outcome(), cell.anomalies(), cell.runs(),
+          cell.abortRate() * 100, cell.meanLatency().toMillis(), cell.maxLatency().toMillis(),
+          (cell.violatesStandard() ? " the standard forbids the anomaly" : "")
+              + (cell.stalledRuns() > 0 ? " " + cell.stalledRuns() + " stalled" : "")));
+    }
+    return result.toString();
+  }
+
+  /**
+   * @param abortedTransactions out of {@code transactions} of all runs
+   * @param stalledRuns         runs with a timed out phase, their outcome doesn't follow the scenario
+   * @param preventedFrom       see {@link Scenario#preventedFrom()}
+   */
+  public record Cell(String database, String scenario, Isolation isolation, int runs, int anomalies,
+                     int abortedTransactions, int transactions, int stalledRuns,
+                     Duration meanLatency, Duration maxLatency, Isolation preventedFrom) {
+
+    public Outcome outcome() {
+      if (anomalies > 0) {
+        return Outcome.ANOMALY;
+      }
+      return abortedTransactions > 0 ? Outcome.ABORTED : Outcome.PREVENTED;
+    }
+
+    public double abortRate() {
+      return transactions == 0 ? 0 : (double) abortedTransactions / transactions;
+    }
+
+    public boolean violatesStandard() {
+      return anomalies > 0 && isolation.value() >= preventedFrom.value();
+    }
+  }
+
+}
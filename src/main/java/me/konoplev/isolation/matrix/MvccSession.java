@@ -0,0 +1,82 @@
+package me.konoplev.isolation.matrix;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import me.konoplev.isolation.matrix.MvccSessionFactory.State;
+import org.springframework.transaction.annotation.Isolation;
+
+/**
+ * A transaction of {@link MvccSessionFactory}, its state is guarded by the lock of the factory.
+ */
+class MvccSession implements Session {
+
+  private final MvccSessionFactory factory;
+  private final int idOffset;
+  final Isolation isolation;
+  // the last commit the transaction sees, taken at the first statement
+  long snapshot = -1;
+  long committedAt;
+  State state = State.ACTIVE;
+  final List<Integer> written = new ArrayList<>();
+  // ranges of ids, inclusive
+  final List<int[]> reads = new ArrayList<>();
+  // read-write dependencies: concurrent transactions that didn't see a write of this one, and the other way round
+  final Set<MvccSession> in = new HashSet<>();
+  final Set<MvccSession> out = new HashSet<>();
+  MvccSession waitingFor;
+
+  MvccSession(MvccSessionFactory factory, Isolation isolation, int idOffset) {
+    this.factory = factory;
+    this.isolation = isolation;
+    this.idOffset = idOffset;
+  }
+
+  boolean hasRead(int id) {
+    for (int[] range : reads) {
+      if (range[0] <= id && id <= range[1]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public int read(int accountId) throws SQLException {
+    return factory.read(this, accountId + idOffset);
+  }
+
+  @Override
+  public int sum(int fromAccountId, int toAccountId) throws SQLException {
+    return factory.sum(this, fromAccountId + idOffset, toAccountId + idOffset);
+  }
+
+  @Override
+  public void write(int accountId, int amount) throws SQLException {
+    factory.write(this, accountId + idOffset, amount);
+  }
+
+  @Override
+  public void insert(int accountId, int amount) throws SQLException {
+    factory.insert(this, accountId + idOffset, amount);
+  }
+
+  @Override
+  public void commit() throws SQLException {
+    factory.commit(this);
+  }
+
+  @Override
+  public void rollback() {
+    factory.rollback(this);
+  }
+
+  @Override
+  public void close() {
+    factory.rollback(this);
+  }
+
+}
@@ -0,0 +1,423 @@
+package me.konoplev.isolation.matrix;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.transaction.annotation.Isolation;
+
+/**
+ * An in-memory multi-version model of the {@code account} table. Scenarios run against it in microseconds
+ * instead of the milliseconds of a database round trip, and without a container.
+ * <ul>
+ *   <li>{@code READ_UNCOMMITTED} reads the latest version, committed or not, like MySQL does</li>
+ *   <li>{@code READ_COMMITTED} reads the latest committed version at every statement</li>
+ *   <li>{@code REPEATABLE_READ} reads the snapshot taken at the first statement. Updating a row that was changed
+ *   after the snapshot fails, like in Postgres</li>
+ *   <li>{@code SERIALIZABLE} is {@code REPEATABLE_READ} plus serializable snapshot isolation: a transaction with
+ *   both an incoming and an outgoing read-write dependency on concurrent serializable transactions fails</li>
+ * </ul>
+ * Writers of a row wait for each other up to the lock timeout, a wait cycle fails at once. The failures are
+ * {@link SQLException}s with the SQLSTATEs of Postgres, the failed transaction is rolled back right away.
+ * <p>
+ * The outcomes are meant to agree with Postgres from {@code READ_COMMITTED} up, see {@code IsolationMatrixTest}.
+ */
+public class MvccSessionFactory implements SessionFactory {
+
+  static final String SERIALIZATION_FAILURE = "40001";
+  static final String DEADLOCK_DETECTED = "40P01";
+  static final String LOCK_NOT_AVAILABLE = "55P03";
+  static final String UNIQUE_VIOLATION = "23505";
+  static final String TRANSACTION_ABORTED = "25P02";
+
+  private final String name;
+  private final long lockTimeoutNanos;
+  // one lock for the whole model: statements are atomic, and the model is about semantics, not about scalability
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition released = lock.newCondition();
+  private final TreeMap<Integer, List<Version>> rows = new TreeMap<>();
+  // the active ones and the finished ones that active transactions may still depend on
+  private final List<MvccSession> transactions = new ArrayList<>();
+  private long lastCommit;
+
+  public MvccSessionFactory() {
+    this("MVCC", Duration.ofSeconds(2));
+  }
+
+  public MvccSessionFactory(String name, Duration lockTimeout) {
+    this.name = name;
+    this.lockTimeoutNanos = lockTimeout.toNanos();
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public void prepare(Map<Integer, Integer> amounts, int idOffset) {
+    lock.lock();
+    try {
+      rows.subMap(idOffset, idOffset + Scenario.MAX_ACCOUNTS).clear();
+      long committedAt = ++lastCommit;
+      amounts.forEach((id, amount) -> {
+        List<Version> versions = new ArrayList<>(2);
+        versions.add(new Version(amount, null, committedAt));
+        rows.put(id + idOffset, versions);
+      });
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Session open(Isolation isolation, int idOffset) {
+    var session = new MvccSession(this, isolation == Isolation.DEFAULT ? Isolation.READ_COMMITTED : isolation, idOffset);
+    lock.lock();
+    try {
+      transactions.add(session);
+    } finally {
+      lock.unlock();
+    }
+    return session;
+  }
+
+  int read(MvccSession transaction, int id) throws SQLException {
+    lock.lock();
+    try {
+      begin(transaction);
+      List<Version> versions = rows.get(id);
+      Version visible = versions == null ? null : visible(transaction, versions);
+      if (visible == null) {
+        throw new IllegalStateException("There is no account " + id);
+      }
+      transaction.reads.add(new int[] {id, id});
+      readConflicts(transaction, id, id);
+      return visible.amount;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int sum(MvccSession transaction, int fromId, int toId) throws SQLException {
+    lock.lock();
+    try {
+      begin(transaction);
+      int sum = 0;
+      for (List<Version> versions : rows.subMap(fromId, true, toId, true).values()) {
+        Version visible = visible(transaction, versions);
+        sum += visible == null ? 0 : visible.amount;
+      }
+      // a predicate read, rows inserted into the range later conflict with it too
+      transaction.reads.add(new int[] {fromId, toId});
+      readConflicts(transaction, fromId, toId);
+      return sum;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void write(MvccSession transaction, int id, int amount) throws SQLException {
+    lock.lock();
+    try {
+      begin(transaction);
+      awaitRowLock(transaction, id);
+      List<Version> versions = rows.get(id);
+      if (versions == null || latestCommittedOrOwn(transaction, versions) == null) {
+        // an update of no rows
+        return;
+      }
+      checkNotUpdatedSinceSnapshot(transaction, versions);
+      writeConflicts(transaction, id);
+      append(transaction, id, versions, amount);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void insert(MvccSession transaction, int id, int amount) throws SQLException {
+    lock.lock();
+    try {
+      begin(transaction);
+      awaitRowLock(transaction, id);
+      List<Version> versions = rows.get(id);
+      if (versions != null && latestCommittedOrOwn(transaction, versions) != null) {
+        throw fail(transaction, UNIQUE_VIOLATION, "duplicate key value violates unique constraint, id " + id);
+      }
+      writeConflicts(transaction, id);
+      append(transaction, id, rows.computeIfAbsent(id, newId -> new ArrayList<>(2)), amount);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void commit(MvccSession transaction) throws SQLException {
+    lock.lock();
+    try {
+      checkActive(transaction);
+      if (isPivot(transaction)) {
+        throw fail(transaction, SERIALIZATION_FAILURE,
+            "could not serialize access due to read/write dependencies among transactions");
+      }
+      transaction.committedAt = ++lastCommit;
+      for (int id : transaction.written) {
+        List<Version> versions = rows.get(id);
+        versions.get(versions.size() - 1).committedAt = transaction.committedAt;
+      }
+      transaction.state = State.COMMITTED;
+      finish(transaction);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void rollback(MvccSession transaction) {
+    lock.lock();
+    try {
+      if (transaction.state != State.ACTIVE) {
+        return;
+      }
+      for (int id : transaction.written) {
+        List<Version> versions = rows.get(id);
+        versions.remove(versions.size() - 1);
+        if (versions.isEmpty()) {
+          rows.remove(id);
+        }
+      }
+      transaction.state = State.ABORTED;
+      finish(transaction);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void begin(MvccSession transaction) throws SQLException {
+    checkActive(transaction);
+    if (transaction.snapshot < 0) {
+      transaction.snapshot = lastCommit;
+    }
+  }
+
+  private void checkActive(MvccSession transaction) throws SQLException {
+    if (transaction.state != State.ACTIVE) {
+      throw new SQLException("current transaction is " + transaction.state.name().toLowerCase(), TRANSACTION_ABORTED);
+    }
+  }
+
+  private Version visible(MvccSession transaction, List<Version> versions) {
+    for (int i = versions.size() - 1; i >= 0; i--) {
+      Version version = versions.get(i);
+      if (version.writer == transaction || transaction.isolation == Isolation.READ_UNCOMMITTED) {
+        return version;
+      }
+      if (version.isCommitted()
+          && (transaction.isolation == Isolation.READ_COMMITTED || version.committedAt <= transaction.snapshot)) {
+        return version;
+      }
+    }
+    return null;
+  }
+
+  private static Version latestCommittedOrOwn(MvccSession transaction, List<Version> versions) {
+    for (int i = versions.size() - 1; i >= 0; i--) {
+      Version version = versions.get(i);
+      if (version.writer == transaction || version.isCommitted()) {
+        return version;
+      }
+    }
+    return null;
+  }
+
+  private void awaitRowLock(MvccSession transaction, int id) throws SQLException {
+    long deadline = System.nanoTime() + lockTimeoutNanos;
+    try {
+      while (true) {
+        MvccSession holder = lockHolder(transaction, rows.get(id));
+        if (holder == null) {
+          return;
+        }
+        transaction.waitingFor = holder;
+        if (waitsFor(holder, transaction)) {
+          throw fail(transaction, DEADLOCK_DETECTED, "deadlock detected on account " + id);
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          throw fail(transaction, LOCK_NOT_AVAILABLE, "canceling statement due to lock timeout on account " + id);
+        }
+        released.awaitNanos(remaining);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw fail(transaction, LOCK_NOT_AVAILABLE, "interrupted waiting for a lock on account " + id);
+    } finally {
+      transaction.waitingFor = null;
+    }
+  }
+
+  private static MvccSession lockHolder(MvccSession transaction, List<Version> versions) {
+    if (versions == null || versions.isEmpty()) {
+      return null;
+    }
+    // only the latest version can be uncommitted, the row lock keeps other writers out until it's committed
+    Version latest = versions.get(versions.size() - 1);
+    return latest.isCommitted() || latest.writer == transaction ? null : latest.writer;
+  }
+
+  // every wait cycle is found by the transaction that closes it, so the chain ends or comes back to the waiter
+  private static boolean waitsFor(MvccSession holder, MvccSession waiter) {
+    for (MvccSession next = holder; next != null; next = next.waitingFor) {
+      if (next == waiter) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // first updater wins: the row was changed by a transaction the snapshot doesn't see
+  private void checkNotUpdatedSinceSnapshot(MvccSession transaction, List<Version> versions) throws SQLException {
+    if (transaction.isolation.value() < Isolation.REPEATABLE_READ.value()) {
+      return;
+    }
+    Version latest = latestCommittedOrOwn(transaction, versions);
+    if (latest.writer != transaction && latest.committedAt > transaction.snapshot) {
+      throw fail(transaction, SERIALIZATION_FAILURE, "could not serialize access due to concurrent update");
+    }
+  }
+
+  private void append(MvccSession transaction, int id, List<Version> versions, int amount) {
+    Version latest = versions.isEmpty() ? null : versions.get(versions.size() - 1);
+    if (latest != null && latest.writer == transaction && !latest.isCommitted()) {
+      latest.amount = amount;
+      return;
+    }
+    versions.add(new Version(amount, transaction, 0));
+    transaction.written.add(id);
+  }
+
+  /**
+   * The reader doesn't see versions written by concurrent transactions: it's serialized before them.
+   */
+  private void readConflicts(MvccSession reader, int fromId, int toId) throws SQLException {
+    if (reader.isolation != Isolation.SERIALIZABLE) {
+      return;
+    }
+    for (List<Version> versions : rows.subMap(fromId, true, toId, true).values()) {
+      for (Version version : versions) {
+        MvccSession writer = version.writer;
+        if (writer != null && writer != reader && writer.isolation == Isolation.SERIALIZABLE
+            && (!version.isCommitted() || version.committedAt > reader.snapshot)) {
+          addDependency(reader, writer, reader);
+        }
+      }
+    }
+  }
+
+  /**
+   * Concurrent transactions that have read the row didn't see this write: they are serialized before the writer.
+   */
+  private void writeConflicts(MvccSession writer, int id) throws SQLException {
+    if (writer.isolation != Isolation.SERIALIZABLE) {
+      return;
+    }
+    for (MvccSession reader : List.copyOf(transactions)) {
+      if (reader != writer && reader.isolation == Isolation.SERIALIZABLE && reader.state != State.ABORTED
+          && (reader.state == State.ACTIVE || reader.committedAt > writer.snapshot) && reader.hasRead(id)) {
+        addDependency(reader, writer, writer);
+      }
+    }
+  }
+
+  private void addDependency(MvccSession reader, MvccSession writer, MvccSession current) throws SQLException {
+    reader.out.add(writer);
+    writer.in.add(reader);
+    for (MvccSession transaction : List.of(reader, writer)) {
+      // an active pivot other than the current transaction fails at its commit, unless its partners abort first.
+      // A committed pivot can't be undone, the current transaction closes the dangerous structure instead
+      if ((transaction == current || transaction.state == State.COMMITTED) && isPivot(transaction)) {
+        throw fail(current, SERIALIZATION_FAILURE,
+            "could not serialize access due to read/write dependencies among transactions");
+      }
+    }
+  }
+
+  private static boolean isPivot(MvccSession transaction) {
+    return transaction.in.stream().anyMatch(other -> other.state != State.ABORTED)
+        && transaction.out.stream().anyMatch(other -> other.state != State.ABORTED);
+  }
+
+  private SQLException fail(MvccSession transaction, String sqlState, String message) {
+    rollback(transaction);
+    return new SQLException(message, sqlState);
+  }
+
+  private void finish(MvccSession transaction) {
+    long oldestSnapshot = lastCommit;
+    for (MvccSession other : transactions) {
+      if (other.state == State.ACTIVE && other.snapshot >= 0) {
+        oldestSnapshot = Math.min(oldestSnapshot, other.snapshot);
+      }
+    }
+    long horizon = oldestSnapshot;
+    // nobody active can depend on a transaction committed before every snapshot, or on an aborted one
+    transactions.removeIf(other -> {
+      boolean forgotten = other.state == State.ABORTED || other.state == State.COMMITTED && other.committedAt <= horizon;
+      if (forgotten) {
+        // otherwise the dependencies would chain every transaction ever run
+        other.in.clear();
+        other.out.clear();
+      }
+      return forgotten;
+    });
+    for (int id : transaction.written) {
+      List<Version> versions = rows.get(id);
+      if (versions != null) {
+        vacuum(versions, horizon);
+      }
+    }
+    released.signalAll();
+  }
+
+  // versions older than the newest one every snapshot sees are invisible to everybody
+  private static void vacuum(List<Version> versions, long horizon) {
+    for (int i = versions.size() - 1; i > 0; i--) {
+      Version version = versions.get(i);
+      if (version.isCommitted() && version.committedAt <= horizon) {
+        versions.subList(0, i).clear();
+        return;
+      }
+    }
+  }
+
+  enum State {
+    ACTIVE,
+    COMMITTED,
+    ABORTED
+  }
+
+  private static class Version {
+
+    private int amount;
+    private final MvccSession writer;
+    private long committedAt;
+
+    /**
+     * @param writer      {@code null} for the rows of {@link #prepare(Map, int)}
+     * @param committedAt {@code 0} while the writer hasn't committed
+     */
+    Version(int amount, MvccSession writer, long committedAt) {
+      this.amount = amount;
+      this.writer = writer;
+      this.committedAt = committedAt;
+    }
+
+    boolean isCommitted() {
+      return committedAt > 0;
+    }
+  }
+
+}
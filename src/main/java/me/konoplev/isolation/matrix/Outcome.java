@@ -0,0 +1,16 @@
+package me.konoplev.isolation.matrix;
+
+public enum Outcome {
+  /**
+   * The anomaly happened at least once.
+   */
+  ANOMALY,
+  /**
+   * The anomaly never happened, because the database aborted a transaction.
+   */
+  ABORTED,
+  /**
+   * The anomaly never happened and all transactions committed.
+   */
+  PREVENTED
+}
@@ -0,0 +1,42 @@
+package me.konoplev.isolation.matrix;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import me.konoplev.isolation.util.PhaseSync;
+import org.springframework.transaction.annotation.Isolation;
+
+/**
+ * An anomaly defined once as data: the accounts it starts from, the transactions with their interleaving
+ * and how to tell that the anomaly happened. All transactions of a run use the same isolation level.
+ *
+ * @param initialAmounts logical account id to amount, ids are below {@link #MAX_ACCOUNTS}
+ * @param preventedFrom  the weakest isolation level that must prevent the anomaly by the SQL standard
+ *                       (and Berenson et al. for lost updates)
+ * @param timeout        deadline of a run with the forced interleaving, see {@link PhaseSync#PhaseSync(Duration)}
+ */
+public record Scenario(String name,
+                       Map<Integer, Integer> initialAmounts,
+                       List<TransactionScript> transactions,
+                       AnomalyCheck anomaly,
+                       Isolation preventedFrom,
+                       Duration timeout) {
+
+  public static final int MAX_ACCOUNTS = 100;
+
+  public Scenario(String name, Map<Integer, Integer> initialAmounts, List<TransactionScript> transactions,
+                  AnomalyCheck anomaly, Isolation preventedFrom) {
+    this(name, initialAmounts, transactions, anomaly, preventedFrom, PhaseSync.DEFAULT_TIMEOUT);
+  }
+
+  @FunctionalInterface
+  public interface AnomalyCheck {
+    /**
+     * @param finalState a read committed session started after all transactions of the run have finished
+     * @param values     what the transactions have seen, only of the committed ones
+     */
+    boolean happened(Session finalState, Map<String, Integer> values) throws Exception;
+  }
+
+}
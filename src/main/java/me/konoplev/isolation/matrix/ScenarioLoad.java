@@ -0,0 +1,86 @@
+package me.konoplev.isolation.matrix;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.transaction.annotation.Isolation;
+
+/**
+ * Load mode of a {@link Scenario}: the phases are ignored and the transactions are run over and over by
+ * concurrent workers, to estimate how often the anomaly or an abort actually happens.
+ * <p>
+ * Every worker has its own accounts (offsets {@link Scenario#MAX_ACCOUNTS} apart), so a run's outcome depends
+ * only on its own transactions, while the database is loaded by all workers at once. A worker holds a connection
+ * per transaction of the scenario, the connection pool should be big enough for all of them.
+ */
+public class ScenarioLoad {
+
+  private final SessionFactory sessionFactory;
+
+  public ScenarioLoad(SessionFactory sessionFactory) {
+    this.sessionFactory = sessionFactory;
+  }
+
+  public LoadReport run(Scenario scenario, Isolation isolation, int workers, int runsPerWorker) {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    var runner = new ScenarioRunner(sessionFactory, executor);
+    var anomalies = new AtomicInteger();
+    var runsWithAborts = new AtomicInteger();
+    var abortedTransactions = new AtomicInteger();
+    var transactions = new AtomicInteger();
+    try {
+      long startedAt = System.nanoTime();
+      List<Future<?>> running = new ArrayList<>();
+      for (int worker = 0; worker < workers; worker++) {
+        int idOffset = worker * Scenario.MAX_ACCOUNTS;
+        running.add(executor.submit(() -> {
+          for (int i = 0; i < runsPerWorker; i++) {
+            var run = runner.runUnordered(scenario, isolation, idOffset);
+            anomalies.addAndGet(run.anomaly() ? 1 : 0);
+            runsWithAborts.addAndGet(run.aborted() > 0 ? 1 : 0);
+            abortedTransactions.addAndGet(run.aborted());
+            transactions.addAndGet(run.transactions());
+          }
+          return null;
+        }));
+      }
+      for (Future<?> worker : running) {
+        worker.get();
+      }
+      return new LoadReport(sessionFactory.name(), scenario.name(), isolation, workers, workers * runsPerWorker,
+          anomalies.get(), runsWithAborts.get(), abortedTransactions.get(), transactions.get(),
+          Duration.ofNanos(System.nanoTime() - startedAt));
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException("Can't run " + scenario.name() + " at " + isolation + " on " + sessionFactory.name(), e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public record LoadReport(String database, String scenario, Isolation isolation, int workers, int runs,
+                           int anomalies, int runsWithAborts, int abortedTransactions, int transactions,
+                           Duration elapsed) {
+
+    public double anomalyProbability() {
+      return (double) anomalies / runs;
+    }
+
+    public double abortRate() {
+      return transactions == 0 ? 0 : (double) abortedTransactions / transactions;
+    }
+
+    public double runsPerSecond() {
+      return runs * 1_000_000_000.0 / elapsed.toNanos();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s at %s on %s, %d workers: %d runs, anomaly in %.2f%%, aborts in %.2f%% of transactions, %.0f runs/s",
+          scenario, isolation, database, workers, runs, anomalyProbability() * 100, abortRate() * 100, runsPerSecond());
+    }
+  }
+
+}
@@ -0,0 +1,183 @@
+package me.konoplev.isolation.matrix;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import me.konoplev.isolation.util.Deadline;
+import me.konoplev.isolation.util.PhaseLatencies;
+import me.konoplev.isolation.util.PhaseSync;
+import me.konoplev.isolation.util.PhaseSync.FallibleFunction;
+import me.konoplev.isolation.util.PhaseSync.Phases;
+import org.springframework.transaction.annotation.Isolation;
+
+/**
+ * Runs scenarios against one database, every transaction of a run in its own thread. The transactions of a run
+ * share the {@link Deadline} of its scenario, sessions take their lock timeouts from it.
+ */
+public class ScenarioRunner {
+
+  private final SessionFactory sessionFactory;
+  private final Executor executor;
+  private final PhaseLatencies latencies;
+
+  public ScenarioRunner(SessionFactory sessionFactory, Executor executor) {
+    this(sessionFactory, executor, new PhaseLatencies());
+  }
+
+  /**
+   * @param latencies of the phases and transactions of all runs with the forced interleaving
+   */
+  public ScenarioRunner(SessionFactory sessionFactory, Executor executor, PhaseLatencies latencies) {
+    this.sessionFactory = sessionFactory;
+    this.executor = executor;
+    this.latencies = latencies;
+  }
+
+  public PhaseLatencies latencies() {
+    return latencies;
+  }
+
+  /**
+   * Runs the scenario once with the interleaving its phases define.
+   */
+  public Run run(Scenario scenario, Isolation isolation, int idOffset) throws Exception {
+    sessionFactory.prepare(scenario.initialAmounts(), idOffset);
+    var phaseSync = new PhaseSync(scenario.timeout(), latencies);
+    List<CompletableFuture<TransactionRun>> transactions = new ArrayList<>();
+    for (TransactionScript script : scenario.transactions()) {
+      transactions.add(CompletableFuture.supplyAsync(
+          () -> phaseSync.deadline().call(() -> execute(script, isolation, idOffset, phaseSync::phase)), executor));
+    }
+    List<TransactionRun> results = transactions.stream().map(CompletableFuture::join).toList();
+    for (int i = 0; i < results.size(); i++) {
+      latencies.recordTransaction(scenario.transactions().get(i).name(), results.get(i).latency.toNanos());
+    }
+    // steps catch their exceptions themselves, the only ones PhaseSync keeps are timeouts
+    return result(scenario, idOffset, results, !phaseSync.noExceptions());
+  }
+
+  /**
+   * Runs the scenario once without forcing any interleaving: the transactions start together and every one
+   * executes its steps in order as fast as it can. Whether the anomaly happens is up to the database and the timing.
+   */
+  public Run runUnordered(Scenario scenario, Isolation isolation, int idOffset) throws Exception {
+    sessionFactory.prepare(scenario.initialAmounts(), idOffset);
+    var start = new CountDownLatch(1);
+    var deadline = Deadline.after(scenario.timeout());
+    List<CompletableFuture<TransactionRun>> transactions = new ArrayList<>();
+    for (TransactionScript script : scenario.transactions()) {
+      transactions.add(CompletableFuture.supplyAsync(() -> deadline.call(() -> execute(script, isolation, idOffset,
+          (phase, steps) -> {
+            start.await();
+            steps.run();
+          })), executor));
+    }
+    start.countDown();
+    return result(scenario, idOffset, transactions.stream().map(CompletableFuture::join).toList(), false);
+  }
+
+  private TransactionRun execute(TransactionScript script, Isolation isolation, int idOffset, Scheduler scheduler) {
+    var transaction = new TransactionRun();
+    long startedAt = System.nanoTime();
+    try (Session session = sessionFactory.open(isolation, idOffset)) {
+      for (List<Step> steps : groupByPhase(script.steps())) {
+        scheduler.inPhase(steps.get(0).phase(), () -> transaction.execute(session, steps));
+      }
+      transaction.commitIfPending(session);
+    } catch (Exception e) {
+      transaction.fail(e);
+    }
+    transaction.latency = Duration.ofNanos(System.nanoTime() - startedAt);
+    return transaction;
+  }
+
+  private Run result(Scenario scenario, int idOffset, List<TransactionRun> transactions, boolean stalled) throws Exception {
+    Map<String, Integer> values = new HashMap<>();
+    int aborted = 0;
+    for (TransactionRun transaction : transactions) {
+      if (transaction.failure == null) {
+        values.putAll(transaction.values);
+      } else {
+        aborted++;
+      }
+    }
+    boolean anomaly;
+    try (Session finalState = sessionFactory.open(Isolation.READ_COMMITTED, idOffset)) {
+      anomaly = scenario.anomaly().happened(finalState, values);
+      finalState.commit();
+    }
+    return new Run(anomaly, aborted, transactions.size(), stalled,
+        transactions.stream().map(transaction -> transaction.latency).toList());
+  }
+
+  private static List<List<Step>> groupByPhase(List<Step> steps) {
+    List<List<Step>> groups = new ArrayList<>();
+    for (Step step : steps) {
+      if (groups.isEmpty() || groups.get(groups.size() - 1).get(0).phase() != step.phase()) {
+        groups.add(new ArrayList<>());
+      }
+      groups.get(groups.size() - 1).add(step);
+    }
+    return groups;
+  }
+
+  @FunctionalInterface
+  private interface Scheduler {
+    void inPhase(Phases phase, FallibleFunction steps) throws Exception;
+  }
+
+  /**
+   * @param aborted   transactions that failed, by the database or because of a lock timeout
+   * @param stalled   a phase timed out, the interleaving wasn't the one the scenario defines
+   * @param latencies of every transaction, from its start to its commit or rollback
+   */
+  public record Run(boolean anomaly, int aborted, int transactions, boolean stalled, List<Duration> latencies) {
+  }
+
+  private static class TransactionRun {
+
+    private final Map<String, Integer> values = new HashMap<>();
+    private boolean committed;
+    private Exception failure;
+    private Duration latency;
+
+    void execute(Session session, List<Step> steps) {
+      // the remaining steps of a failed transaction still take their phases, so the others don't wait for them
+      for (Step step : steps) {
+        if (failure != null) {
+          return;
+        }
+        try {
+          step.action().run(session, values);
+          committed |= step.commit();
+        } catch (Exception e) {
+          fail(e);
+        }
+      }
+    }
+
+    void commitIfPending(Session session) {
+      if (failure == null && !committed) {
+        try {
+          session.commit();
+          committed = true;
+        } catch (Exception e) {
+          fail(e);
+        }
+      }
+    }
+
+    void fail(Exception e) {
+      if (failure == null) {
+        failure = e;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,95 @@
+package me.konoplev.isolation.matrix;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.transaction.annotation.Isolation;
+
+import static me.konoplev.isolation.util.PhaseSync.Phases.*;
+
+/**
+ * The anomalies of the repository tests, written once for every database.
+ */
+public final class Scenarios {
+
+  private Scenarios() {
+  }
+
+  public static List<Scenario> all() {
+    return List.of(dirtyRead(), lostUpdate(), nonRepeatableRead(), phantomRead());
+  }
+
+  /**
+   * The reader sees the first half of a transfer that isn't committed yet, see {@code DirtyReadTest}.
+   */
+  public static Scenario dirtyRead() {
+    return new Scenario("dirty read", Map.of(1, 40, 2, 50),
+        List.of(
+            TransactionScript.of("transfer",
+                Step.at(FIRST, (session, values) -> session.write(1, 10)),
+                Step.at(THIRD, (session, values) -> session.write(2, 80))),
+            TransactionScript.of("reader",
+                Step.at(SECOND, (session, values) -> values.put("total", session.read(1) + session.read(2))))),
+        (finalState, values) -> values.containsKey("total") && values.get("total") != 90,
+        Isolation.READ_COMMITTED);
+  }
+
+  /**
+   * Two read-modify-write transfers to the same account, the first one is overwritten, see {@code LostUpdateTest}.
+   */
+  public static Scenario lostUpdate() {
+    return new Scenario("lost update", Map.of(1, 0),
+        List.of(
+            TransactionScript.of("first transfer",
+                Step.at(FIRST, (session, values) -> values.put("first", session.read(1))),
+                Step.at(THIRD, (session, values) -> session.write(1, values.get("first") + 50))),
+            TransactionScript.of("second transfer",
+                Step.at(SECOND, (session, values) -> values.put("second", session.read(1))),
+                Step.at(FOURTH, (session, values) -> session.write(1, values.get("second") + 30)))),
+        (finalState, values) -> values.size() == 2 && finalState.read(1) != 80,
+        Isolation.REPEATABLE_READ);
+  }
+
+  /**
+   * The reader sees one account before and the other after a committed transfer, see {@code NonRepeatableReadTest}.
+   */
+  public static Scenario nonRepeatableRead() {
+    return new Scenario("non-repeatable read", Map.of(1, 40, 2, 50),
+        List.of(
+            TransactionScript.of("reader",
+                Step.at(FIRST, (session, values) -> values.put("first", session.read(1))),
+                Step.at(THIRD, (session, values) -> values.put("second", session.read(2)))),
+            TransactionScript.of("transfer",
+                Step.at(SECOND, (session, values) -> session.write(1, 10)),
+                Step.at(SECOND, (session, values) -> session.write(2, 80)),
+                Step.commitAt(SECOND))),
+        (finalState, values) -> values.containsKey("first") && values.containsKey("second")
+            && values.get("first") + values.get("second") != 90,
+        Isolation.REPEATABLE_READ);
+  }
+
+  /**
+   * Both transactions check that the accounts have enough money together and withdraw from different ones,
+   * the total goes below the limit, see {@code PhantomReadTest}.
+   */
+  public static Scenario phantomRead() {
+    return new Scenario("phantom read", Map.of(1, 40, 2, 50),
+        List.of(
+            TransactionScript.of("first withdrawal",
+                Step.at(FIRST, (session, values) -> values.put("first total", session.sum(1, 2))),
+                Step.at(THIRD, (session, values) -> withdrawIfAllowed(session, values.get("first total"), 1))),
+            TransactionScript.of("second withdrawal",
+                Step.at(SECOND, (session, values) -> values.put("second total", session.sum(1, 2))),
+                Step.at(FOURTH, (session, values) -> withdrawIfAllowed(session, values.get("second total"), 2)))),
+        (finalState, values) -> finalState.sum(1, 2) < 60,
+        Isolation.SERIALIZABLE);
+  }
+
+  private static void withdrawIfAllowed(Session session, int total, int accountId) throws Exception {
+    int amountToWithdraw = 30;
+    if (total >= amountToWithdraw * 3) {
+      session.write(accountId, session.read(accountId) - amountToWithdraw);
+    }
+  }
+
+}
@@ -0,0 +1,31 @@
+package me.konoplev.isolation.matrix;
+
+/**
+ * One transaction of a {@link Scenario}. Account ids are logical, a session maps them to the rows of its run,
+ * so several runs of the same scenario can share the tables.
+ */
+public interface Session extends AutoCloseable {
+
+  int read(int accountId) throws Exception;
+
+  /**
+   * The sum of amounts of the accounts with ids from {@code fromAccountId} to {@code toAccountId} inclusive,
+   * a range predicate that also sees inserted accounts.
+   */
+  int sum(int fromAccountId, int toAccountId) throws Exception;
+
+  void write(int accountId, int amount) throws Exception;
+
+  void insert(int accountId, int amount) throws Exception;
+
+  void commit() throws Exception;
+
+  void rollback() throws Exception;
+
+  /**
+   * Rolls back the transaction if it isn't committed.
+   */
+  @Override
+  void close() throws Exception;
+
+}
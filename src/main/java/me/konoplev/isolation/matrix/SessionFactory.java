@@ -0,0 +1,27 @@
+package me.konoplev.isolation.matrix;
+
+import java.util.Map;
+
+import org.springframework.transaction.annotation.Isolation;
+
+/**
+ * A database (or a model of one) scenarios run against.
+ */
+public interface SessionFactory {
+
+  /**
+   * The name of the database in reports.
+   */
+  String name();
+
+  /**
+   * Replaces the accounts with logical ids from {@code 0} to {@link Scenario#MAX_ACCOUNTS} with the given ones.
+   *
+   * @param amounts  logical account id to amount
+   * @param idOffset added to logical ids, runs with offsets at least {@link Scenario#MAX_ACCOUNTS} apart don't share rows
+   */
+  void prepare(Map<Integer, Integer> amounts, int idOffset) throws Exception;
+
+  Session open(Isolation isolation, int idOffset) throws Exception;
+
+}
@@ -0,0 +1,33 @@
+package me.konoplev.isolation.matrix;
+
+import java.util.Map;
+
+import me.konoplev.isolation.util.PhaseSync.Phases;
+
+/**
+ * A step of a {@link TransactionScript}, executed in its phase. Consecutive steps of a transaction
+ * in the same phase are executed together.
+ *
+ * @param action what to do, nothing for a commit step
+ * @param commit the transaction is committed in this phase, otherwise right after its last step
+ */
+public record Step(Phases phase, Action action, boolean commit) {
+
+  public static Step at(Phases phase, Action action) {
+    return new Step(phase, action, false);
+  }
+
+  public static Step commitAt(Phases phase) {
+    return new Step(phase, (session, values) -> session.commit(), true);
+  }
+
+  /**
+   * @param values what the transaction has seen so far, handed over to the {@link Scenario.AnomalyCheck}
+   *               if the transaction commits
+   */
+  @FunctionalInterface
+  public interface Action {
+    void run(Session session, Map<String, Integer> values) throws Exception;
+  }
+
+}
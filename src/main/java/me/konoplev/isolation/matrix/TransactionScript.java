@@ -0,0 +1,15 @@
+package me.konoplev.isolation.matrix;
+
+import java.util.List;
+
+public record TransactionScript(String name, List<Step> steps) {
+
+  public static TransactionScript of(String name, Step... steps) {
+    return new TransactionScript(name, List.of(steps));
+  }
+
+  public boolean commitsExplicitly() {
+    return steps.stream().anyMatch(Step::commit);
+  }
+
+}
@@ -0,0 +1,65 @@
+package me.konoplev.isolation.reactive;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.r2dbc.config.AbstractR2dbcConfiguration;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+
+/**
+ * The reactive counterpart of the JPA setup, enabled by {@code isolation.r2dbc.url}
+ * (e.g. {@code r2dbc:postgresql://localhost:5432/test} or {@code r2dbc:mariadb://localhost:3306/test} for MySQL).
+ * Connections are pooled, at most {@code isolation.r2dbc.pool-size} of them.
+ * <p>
+ * The {@link R2dbcTransactionManager} is deliberately not a bean: {@code @Transactional} keeps resolving to the
+ * JPA transaction manager, reactive transactions are started by {@link ReactiveTransactionsWrapper} only.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("isolation.r2dbc.url")
+@EnableR2dbcRepositories
+public class ReactiveConfiguration extends AbstractR2dbcConfiguration {
+
+  private final String url;
+  private final String username;
+  private final String password;
+  private final int poolSize;
+
+  public ReactiveConfiguration(@Value("${isolation.r2dbc.url}") String url,
+                               @Value("${isolation.r2dbc.username:${spring.datasource.username:}}") String username,
+                               @Value("${isolation.r2dbc.password:${spring.datasource.password:}}") String password,
+                               @Value("${isolation.r2dbc.pool-size:10}") int poolSize) {
+    this.url = url;
+    this.username = username;
+    this.password = password;
+    this.poolSize = poolSize;
+  }
+
+  @Bean(destroyMethod = "dispose")
+  @Override
+  public ConnectionPool connectionFactory() {
+    var options = ConnectionFactoryOptions.parse(url).mutate();
+    if (!username.isEmpty()) {
+      options.option(ConnectionFactoryOptions.USER, username);
+    }
+    if (!password.isEmpty()) {
+      options.option(ConnectionFactoryOptions.PASSWORD, password);
+    }
+    return new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+        .initialSize(poolSize)
+        .maxSize(poolSize)
+        .build());
+  }
+
+  @Bean
+  public ReactiveTransactionsWrapper reactiveTransactionsWrapper(ConnectionFactory connectionFactory) {
+    return new ReactiveTransactionsWrapper(new R2dbcTransactionManager(connectionFactory));
+  }
+
+}
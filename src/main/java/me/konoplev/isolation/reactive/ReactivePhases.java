@@ -0,0 +1,33 @@
+package me.konoplev.isolation.reactive;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.konoplev.isolation.util.PhaseSync;
+import me.konoplev.isolation.util.PhaseSync.Phases;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Runs a step of a reactive scenario as a {@link PhaseSync} phase. The step is subscribed with the context
+ * of the caller, so it takes part in the caller's reactive transaction. {@link PhaseSync} blocks while waiting
+ * for the phase, so it's done on the bounded elastic scheduler and never on an event loop.
+ * <p>
+ * Like a blocking phase, a failed step is kept by the {@link PhaseSync} and the result is empty.
+ */
+public final class ReactivePhases {
+
+  private ReactivePhases() {
+  }
+
+  public static <T> Mono<T> phase(PhaseSync phaseSync, Phases phase, Mono<T> step) {
+    return Mono.deferContextual(context -> Mono.fromCallable(() -> {
+          AtomicReference<T> result = new AtomicReference<>();
+          phaseSync.phase(phase, () -> result.set(step.contextWrite(context).block()));
+          return Optional.ofNullable(result.get());
+        }))
+        .subscribeOn(Schedulers.boundedElastic())
+        .flatMap(Mono::justOrEmpty);
+  }
+
+}
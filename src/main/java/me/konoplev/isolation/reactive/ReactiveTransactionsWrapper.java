@@ -0,0 +1,49 @@
+package me.konoplev.isolation.reactive;
+
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link me.konoplev.isolation.util.TransactionsWrapper} for R2DBC: every method runs the given publisher
+ * in a new transaction with the isolation level of the method name. Nothing happens until the result is subscribed.
+ */
+public class ReactiveTransactionsWrapper {
+
+  private final TransactionalOperator serializable;
+  private final TransactionalOperator repeatableRead;
+  private final TransactionalOperator readCommitted;
+  private final TransactionalOperator readUncommitted;
+
+  ReactiveTransactionsWrapper(ReactiveTransactionManager transactionManager) {
+    this.serializable = operator(transactionManager, TransactionDefinition.ISOLATION_SERIALIZABLE);
+    this.repeatableRead = operator(transactionManager, TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    this.readCommitted = operator(transactionManager, TransactionDefinition.ISOLATION_READ_COMMITTED);
+    this.readUncommitted = operator(transactionManager, TransactionDefinition.ISOLATION_READ_UNCOMMITTED);
+  }
+
+  public <T> Mono<T> serializable(Mono<T> execute) {
+    return serializable.transactional(execute);
+  }
+
+  public <T> Mono<T> repeatableRead(Mono<T> execute) {
+    return repeatableRead.transactional(execute);
+  }
+
+  public <T> Mono<T> readCommitted(Mono<T> execute) {
+    return readCommitted.transactional(execute);
+  }
+
+  public <T> Mono<T> readUncommitted(Mono<T> execute) {
+    return readUncommitted.transactional(execute);
+  }
+
+  private static TransactionalOperator operator(ReactiveTransactionManager transactionManager, int isolation) {
+    var definition = new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    definition.setIsolationLevel(isolation);
+    return TransactionalOperator.create(transactionManager, definition);
+  }
+
+}
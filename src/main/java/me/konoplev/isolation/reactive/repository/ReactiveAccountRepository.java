@@ -0,0 +1,20 @@
+package me.konoplev.isolation.reactive.repository;
+
+import me.konoplev.isolation.reactive.repository.dto.Account;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveAccountRepository extends ReactiveCrudRepository<Account, Integer> {
+
+  // save() of an entity with an id is an update, accounts have ids assigned by the caller
+  @Modifying
+  @Query("insert into account (id, amount, user_id) values (:id, :amount, :userId)")
+  Mono<Integer> insert(Integer id, int amount, Integer userId);
+
+  @Modifying
+  @Query("update account set amount = :newAmount where id = :id")
+  Mono<Integer> updateAmount(Integer id, int newAmount);
+
+}
@@ -0,0 +1,15 @@
+package me.konoplev.isolation.reactive.repository;
+
+import me.konoplev.isolation.reactive.repository.dto.User;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveUserRepository extends ReactiveCrudRepository<User, Integer> {
+
+  @Modifying
+  @Query("insert into users (id, user_name) values (:id, :userName)")
+  Mono<Integer> insert(Integer id, String userName);
+
+}
@@ -0,0 +1,23 @@
+package me.konoplev.isolation.reactive.repository.dto;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * The {@code account} row as R2DBC sees it, there are no associations, only the id of the user.
+ */
+@Table("account")
+@Data
+public class Account {
+
+  @Id
+  private Integer id;
+
+  @Column("user_id")
+  private Integer userId;
+
+  private int amount;
+
+}
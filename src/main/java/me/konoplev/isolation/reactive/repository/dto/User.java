@@ -0,0 +1,18 @@
+package me.konoplev.isolation.reactive.repository.dto;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Table("users")
+@Data
+public class User {
+
+  @Id
+  private Integer id;
+
+  @Column("user_name")
+  private String userName;
+
+}
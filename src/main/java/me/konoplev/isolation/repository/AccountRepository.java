@@ -1,8 +1,13 @@
 package me.konoplev.isolation.repository;
 
+import java.util.List;
+import java.util.Optional;
+
 import me.konoplev.isolation.repository.dto.Account;
+import me.konoplev.isolation.repository.dto.AccountAmount;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface AccountRepository extends JpaRepository<Account, Integer> {
 
@@ -10,4 +15,19 @@ public interface AccountRepository extends JpaRepository<Account, Integer> {
   @Query("update Account a set a.amount = :newAmount where a.id = :id")
   void updateAmount(@Param("id") Integer id, @Param("newAmount") int newAmount);
 
+  // the projections below select columns only: no entity, no user join, nothing to dirty check at flush.
+  // They always go to the database, an account already loaded by the transaction doesn't answer them
+  @Transactional(readOnly = true)
+  @Query("select a.amount from Account a where a.id = :id")
+  Optional<Integer> findAmountById(@Param("id") Integer id);
+
+  @Transactional(readOnly = true)
+  @Query("select coalesce(sum(a.amount), 0) from Account a where a.user.id = :userId")
+  long sumAmountByUserId(@Param("userId") Integer userId);
+
+  @Transactional(readOnly = true)
+  @Query("select new me.konoplev.isolation.repository.dto.AccountAmount(a.id, a.amount) from Account a "
+      + "where a.user.id = :userId order by a.id")
+  List<AccountAmount> findAmountsByUserId(@Param("userId") Integer userId);
+
 }
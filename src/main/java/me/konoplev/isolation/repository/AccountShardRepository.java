@@ -0,0 +1,36 @@
+package me.konoplev.isolation.repository;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+
+import me.konoplev.isolation.repository.dto.AccountShard;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+public interface AccountShardRepository extends JpaRepository<AccountShard, AccountShard.Key> {
+
+  @Query("select coalesce(sum(s.amount), 0) from AccountShard s where s.accountId = :accountId")
+  long sumAmount(@Param("accountId") Integer accountId);
+
+  @Query("select count(s) from AccountShard s where s.accountId = :accountId")
+  int countShards(@Param("accountId") Integer accountId);
+
+  @Modifying(clearAutomatically = true)
+  @Query("update AccountShard s set s.amount = s.amount + :delta where s.accountId = :accountId and s.shard = :shard")
+  int addAmount(@Param("accountId") Integer accountId, @Param("shard") int shard, @Param("delta") int delta);
+
+  @Modifying(clearAutomatically = true)
+  @Query("update AccountShard s set s.amount = s.amount - :amount "
+      + "where s.accountId = :accountId and s.shard = :shard and s.amount >= :amount")
+  int withdrawIfEnough(@Param("accountId") Integer accountId, @Param("shard") int shard, @Param("amount") int amount);
+
+  @Modifying(clearAutomatically = true)
+  @Query("update AccountShard s set s.amount = :newAmount where s.accountId = :accountId and s.shard = :shard")
+  void updateAmount(@Param("accountId") Integer accountId, @Param("shard") int shard, @Param("newAmount") int newAmount);
+
+  // ordered, so that all transactions lock the shards of an account in the same order and can't deadlock
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select s from AccountShard s where s.accountId = :accountId order by s.shard")
+  List<AccountShard> lockShards(@Param("accountId") Integer accountId);
+
+}
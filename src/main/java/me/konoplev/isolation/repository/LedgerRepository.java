@@ -0,0 +1,16 @@
+package me.konoplev.isolation.repository;
+
+import java.util.Optional;
+
+import me.konoplev.isolation.repository.dto.LedgerEntry;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+public interface LedgerRepository extends JpaRepository<LedgerEntry, Long> {
+
+  // a single statement, so the materialized amount and the not yet folded entries come from the same snapshot
+  @Query(value = "select a.amount + coalesce((select sum(l.delta) from account_ledger l where l.account_id = a.id), 0) "
+      + "from account a where a.id = :accountId", nativeQuery = true)
+  Optional<Long> balance(@Param("accountId") Integer accountId);
+
+}
@@ -3,6 +3,7 @@ package me.konoplev.isolation.repository.dto;
 import javax.persistence.*;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
 @Entity
@@ -13,9 +14,11 @@ public class Account {
   @Id
   private Integer id;
 
-  @ManyToOne
+  // lazy, reading an account is a single-row select. Only the id of the user is known without a query
+  @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "user_id")
   @ToString.Exclude
+  @EqualsAndHashCode.Exclude
   private User user;
 
   private int amount;
@@ -0,0 +1,7 @@
+package me.konoplev.isolation.repository.dto;
+
+/**
+ * A read-only view of an {@link Account}, not managed by the persistence context.
+ */
+public record AccountAmount(Integer id, int amount) {
+}
@@ -0,0 +1,35 @@
+package me.konoplev.isolation.repository.dto;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "account_shard")
+@IdClass(AccountShard.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountShard {
+
+  @Id
+  @Column(name = "account_id")
+  private Integer accountId;
+
+  @Id
+  private Integer shard;
+
+  private int amount;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Key implements Serializable {
+    private Integer accountId;
+    private Integer shard;
+  }
+
+}
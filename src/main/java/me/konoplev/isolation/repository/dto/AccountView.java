@@ -0,0 +1,8 @@
+package me.konoplev.isolation.repository.dto;
+
+/**
+ * A read-only view of an {@link Account} with the id of its user, not managed by the persistence context.
+ * The user isn't loaded.
+ */
+public record AccountView(Integer id, Integer userId, int amount) {
+}
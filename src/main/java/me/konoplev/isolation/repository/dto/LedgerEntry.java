@@ -0,0 +1,21 @@
+package me.konoplev.isolation.repository.dto;
+
+import javax.persistence.*;
+
+import lombok.Data;
+
+@Entity
+@Table(name = "account_ledger", indexes = @Index(name = "account_ledger_account_id", columnList = "account_id"))
+@Data
+public class LedgerEntry {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "account_id", nullable = false)
+  private Integer accountId;
+
+  private int delta;
+
+}
@@ -0,0 +1,143 @@
+package me.konoplev.isolation.scan;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import me.konoplev.isolation.repository.dto.AccountView;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Reads all accounts in the order of ids at constant memory, unlike {@code accountRepository.findAll()}
+ * which loads every entity into the persistence context at once.
+ * <p>
+ * The accounts are read page by page, every page is a query for the ids after the last one read, so a page costs
+ * the same at the end of the table as at its start. Postgres reads a page through a cursor, {@link #FETCH_SIZE}
+ * rows at a time. MySQL ignores the fetch size without {@code useCursorFetch} and buffers a page, which is bounded
+ * by the page size. All pages are read in one transaction, repeatable read makes them see a single snapshot.
+ */
+@Service
+public class AccountScanner {
+
+  public static final int DEFAULT_PAGE_SIZE = 10_000;
+  private static final int FETCH_SIZE = 1_000;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public AccountScanner(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Transactional(isolation = Isolation.REPEATABLE_READ, readOnly = true, propagation = Propagation.REQUIRES_NEW)
+  public <T> T scan(Function<Stream<AccountView>, T> reader) {
+    return scan(DEFAULT_PAGE_SIZE, reader);
+  }
+
+  /**
+   * Passes the accounts to the reader in a new read-only repeatable read transaction.
+   * The stream is closed when the reader returns.
+   */
+  @Transactional(isolation = Isolation.REPEATABLE_READ, readOnly = true, propagation = Propagation.REQUIRES_NEW)
+  public <T> T scan(int pageSize, Function<Stream<AccountView>, T> reader) {
+    try (Stream<AccountView> accounts = stream(pageSize)) {
+      return reader.apply(accounts);
+    }
+  }
+
+  /**
+   * The accounts read in the current transaction, it's up to the caller to make it repeatable read if the pages
+   * have to see one snapshot. The stream has to be closed before the transaction ends.
+   */
+  public Stream<AccountView> stream(int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive, got " + pageSize);
+    }
+    if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException("Accounts are scanned in a transaction, pages read without one may see different data");
+    }
+    var pages = new Pages(pageSize);
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL),
+            false)
+        .onClose(pages::closePage);
+  }
+
+  private static AccountView toView(ResultSet resultSet, int rowNum) throws SQLException {
+    int userId = resultSet.getInt("user_id");
+    return new AccountView(resultSet.getInt("id"), resultSet.wasNull() ? null : userId, resultSet.getInt("amount"));
+  }
+
+  private class Pages implements Iterator<AccountView> {
+
+    private final int pageSize;
+    private Stream<AccountView> page;
+    private Iterator<AccountView> rows;
+    private int rowsOfPage;
+    private int lastId = Integer.MIN_VALUE;
+    private boolean lastPage;
+
+    Pages(int pageSize) {
+      this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (rows == null || !rows.hasNext()) {
+        if (rows != null) {
+          closePage();
+          lastPage = rowsOfPage < pageSize;
+          rows = null;
+        }
+        if (lastPage) {
+          return false;
+        }
+        openPage();
+      }
+      return true;
+    }
+
+    @Override
+    public AccountView next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      AccountView account = rows.next();
+      rowsOfPage++;
+      lastId = account.id();
+      return account;
+    }
+
+    private void openPage() {
+      page = jdbcTemplate.queryForStream(connection -> {
+        PreparedStatement statement = connection.prepareStatement(
+            "select id, user_id, amount from account where id > ? order by id limit ?");
+        statement.setFetchSize(FETCH_SIZE);
+        statement.setInt(1, lastId);
+        statement.setInt(2, pageSize);
+        return statement;
+      }, AccountScanner::toView);
+      rows = page.iterator();
+      rowsOfPage = 0;
+    }
+
+    private void closePage() {
+      if (page != null) {
+        page.close();
+        page = null;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,309 @@
+package me.konoplev.isolation.scan;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import me.konoplev.isolation.util.DatabaseVendor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Exports all accounts with several workers that scan disjoint id ranges concurrently, yet see one point in time.
+ * The coordinator opens a repeatable read transaction and exports its snapshot with {@code pg_export_snapshot()},
+ * the other workers import it with {@code set transaction snapshot}. The coordinator scans ranges as well,
+ * keeping its transaction, and so the exported snapshot, open until every worker is done.
+ * <p>
+ * MySQL can't share a snapshot between connections, there the coordinator exports everything by itself.
+ * <p>
+ * Every worker takes a connection of its own from the pool, outside of Spring transactions. The id range is
+ * split into more ranges than workers, so a worker that got a sparse range takes the next one. A range is read
+ * page by page like in {@link AccountScanner}, so the driver never holds more than a page, even on MySQL where
+ * the fetch size is ignored without {@code useCursorFetch}. Rows are written in blocks of {@link #BLOCK_ROWS},
+ * a block is in id order but blocks of different workers interleave.
+ */
+@Service
+public class ParallelAccountExport {
+
+  static final int BLOCK_ROWS = 1_000;
+  private static final int RANGES_PER_WORKER = 8;
+  private static final int PAGE_ROWS = AccountScanner.DEFAULT_PAGE_SIZE;
+  private static final String PAGE_QUERY =
+      "select id, user_id, amount from account where id > ? and id <= ? order by id limit " + PAGE_ROWS;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final AtomicInteger exports = new AtomicInteger();
+
+  public ParallelAccountExport(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /**
+   * Writes all accounts to the output, which isn't closed.
+   */
+  public ExportResult export(int workers, Format format, OutputStream output) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("There should be at least one worker: " + workers);
+    }
+    long start = System.nanoTime();
+    DataSource dataSource = jdbcTemplate.getDataSource();
+    try (Connection coordinator = dataSource.getConnection()) {
+      beginSnapshotTransaction(coordinator);
+      try {
+        String snapshot = null;
+        if (DatabaseVendor.of(coordinator) == DatabaseVendor.POSTGRES) {
+          // the first statement takes the snapshot of the transaction
+          snapshot = queryForString(coordinator, "select pg_export_snapshot()");
+        } else {
+          workers = 1;
+        }
+        var sink = new Sink(output, format);
+        sink.write(format.header());
+        Queue<IdRange> ranges = new ConcurrentLinkedQueue<>(ranges(coordinator, workers));
+        long rows = scanConcurrently(coordinator, dataSource, snapshot, workers, ranges, sink);
+        output.flush();
+        return new ExportResult(rows, workers, Duration.ofNanos(System.nanoTime() - start));
+      } finally {
+        coordinator.rollback();
+      }
+    } catch (SQLException e) {
+      throw jdbcTemplate.getExceptionTranslator().translate("Account export", null, e);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private long scanConcurrently(Connection coordinator, DataSource dataSource, String snapshot, int workers,
+                                Queue<IdRange> ranges, Sink sink) throws SQLException, IOException {
+    if (workers == 1) {
+      return scan(coordinator, ranges, sink, new AtomicBoolean());
+    }
+    int export = exports.incrementAndGet();
+    var threads = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(workers - 1,
+        runnable -> new Thread(runnable, "account-export-" + export + "-" + threads.incrementAndGet()));
+    var failed = new AtomicBoolean();
+    try {
+      List<Future<Long>> others = new ArrayList<>();
+      for (int worker = 1; worker < workers; worker++) {
+        others.add(executor.submit(() -> {
+          try (Connection connection = dataSource.getConnection()) {
+            beginSnapshotTransaction(connection);
+            try (Statement statement = connection.createStatement()) {
+              // has to come before any query of the transaction, the id comes from the database itself
+              statement.execute("set transaction snapshot '" + snapshot + "'");
+              return scan(connection, ranges, sink, failed);
+            } finally {
+              connection.rollback();
+            }
+          } catch (SQLException | IOException | RuntimeException e) {
+            failed.set(true);
+            throw e;
+          }
+        }));
+      }
+      long rows;
+      try {
+        rows = scan(coordinator, ranges, sink, failed);
+      } catch (SQLException | IOException | RuntimeException e) {
+        failed.set(true);
+        throw e;
+      }
+      for (Future<Long> other : others) {
+        rows += join(other);
+      }
+      return rows;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private long scan(Connection connection, Queue<IdRange> ranges, Sink sink, AtomicBoolean failed)
+      throws SQLException, IOException {
+    long rows = 0;
+    var block = new Block(sink);
+    try (PreparedStatement statement = connection.prepareStatement(PAGE_QUERY)) {
+      statement.setFetchSize(BLOCK_ROWS);
+      IdRange range;
+      while (!failed.get() && (range = ranges.poll()) != null) {
+        long after = (long) range.from() - 1;
+        int pageRows;
+        do {
+          statement.setLong(1, after);
+          statement.setInt(2, range.to());
+          pageRows = 0;
+          try (ResultSet accounts = statement.executeQuery()) {
+            while (accounts.next()) {
+              int id = accounts.getInt(1);
+              int userId = accounts.getInt(2);
+              block.add(id, accounts.wasNull() ? null : userId, accounts.getInt(3));
+              after = id;
+              pageRows++;
+            }
+          }
+          rows += pageRows;
+        } while (pageRows == PAGE_ROWS && !failed.get());
+      }
+    }
+    block.flush();
+    return rows;
+  }
+
+  private List<IdRange> ranges(Connection connection, int workers) throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet bounds = statement.executeQuery("select min(id), max(id) from account")) {
+      bounds.next();
+      int min = bounds.getInt(1);
+      if (bounds.wasNull()) {
+        return List.of();
+      }
+      int max = bounds.getInt(2);
+      long count = (long) workers * RANGES_PER_WORKER;
+      long width = Math.max(1, ((long) max - min + count) / count);
+      List<IdRange> ranges = new ArrayList<>();
+      for (long from = min; from <= max; from += width) {
+        ranges.add(new IdRange((int) from, (int) Math.min(max, from + width - 1)));
+      }
+      return ranges;
+    }
+  }
+
+  private static void beginSnapshotTransaction(Connection connection) throws SQLException {
+    connection.setAutoCommit(false);
+    connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+    connection.setReadOnly(true);
+  }
+
+  private static String queryForString(Connection connection, String sql) throws SQLException {
+    try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+      resultSet.next();
+      return resultSet.getString(1);
+    }
+  }
+
+  private long join(Future<Long> worker) throws SQLException, IOException {
+    try {
+      return worker.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the export workers", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SQLException sqlException) {
+        throw sqlException;
+      }
+      if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  public enum Format {
+    /**
+     * {@code id,user_id,amount} lines after a header line, an account without a user has an empty user_id.
+     */
+    CSV {
+      @Override
+      byte[] header() {
+        return "id,user_id,amount\n".getBytes(StandardCharsets.US_ASCII);
+      }
+
+      @Override
+      void write(DataOutputStream block, int id, Integer userId, int amount) throws IOException {
+        block.writeBytes(id + "," + (userId == null ? "" : userId) + "," + amount + "\n");
+      }
+    },
+    /**
+     * Three big-endian ints per account: id, user id and amount, no header. An account without a user has -1.
+     */
+    BINARY {
+      @Override
+      byte[] header() {
+        return new byte[0];
+      }
+
+      @Override
+      void write(DataOutputStream block, int id, Integer userId, int amount) throws IOException {
+        block.writeInt(id);
+        block.writeInt(userId == null ? -1 : userId);
+        block.writeInt(amount);
+      }
+    };
+
+    abstract byte[] header();
+
+    abstract void write(DataOutputStream block, int id, Integer userId, int amount) throws IOException;
+  }
+
+  public record ExportResult(long rows, int workers, Duration elapsed) {
+
+    public double rowsPerSecond() {
+      return rows / Math.max(elapsed.toNanos() / 1_000_000_000.0, Double.MIN_VALUE);
+    }
+  }
+
+  private record IdRange(int from, int to) {
+  }
+
+  /**
+   * The output shared by the workers, a block is written at once.
+   */
+  private record Sink(OutputStream output, Format format) {
+
+    synchronized void write(byte[] bytes) throws IOException {
+      output.write(bytes);
+    }
+  }
+
+  private static class Block {
+
+    private final Sink sink;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream data = new DataOutputStream(bytes);
+    private int rows;
+
+    Block(Sink sink) {
+      this.sink = sink;
+    }
+
+    void add(int id, Integer userId, int amount) throws IOException {
+      sink.format().write(data, id, userId, amount);
+      if (++rows == BLOCK_ROWS) {
+        flush();
+      }
+    }
+
+    void flush() throws IOException {
+      if (rows > 0) {
+        sink.write(bytes.toByteArray());
+        bytes.reset();
+        rows = 0;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,113 @@
+package me.konoplev.isolation.seed;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Iterator;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+import me.konoplev.isolation.seed.SeedRows.AccountRows;
+import me.konoplev.isolation.util.DatabaseVendor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Streams generated users and accounts through the bulk load protocol of the database:
+ * {@code COPY FROM STDIN} for Postgres and {@code LOAD DATA LOCAL INFILE} for MySQL.
+ * Rows are generated while the driver sends them, so memory usage doesn't depend on the data set size.
+ * <p>
+ * MySQL requires {@code local_infile=1} on the server and {@code allowLoadLocalInfile=true} in the JDBC url.
+ */
+@Service
+public class BulkSeeder {
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public BulkSeeder(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  public SeedResult seed(SeedDistribution distribution) {
+    return jdbcTemplate.execute((ConnectionCallback<SeedResult>) connection -> {
+      long start = System.nanoTime();
+      DatabaseVendor vendor = DatabaseVendor.of(connection);
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try {
+        int firstUserId = maxId(connection, "users") + 1;
+        int firstAccountId = maxId(connection, "account") + 1;
+        AccountRows accounts = SeedRows.accounts(firstUserId, firstAccountId, distribution);
+        switch (vendor) {
+          case POSTGRES -> {
+            copyIn(connection, "users (id, user_name)", SeedRows.users(firstUserId, distribution));
+            copyIn(connection, "account (id, amount, user_id)", accounts);
+          }
+          case MYSQL -> {
+            loadData(connection, "users (id, user_name)", SeedRows.users(firstUserId, distribution));
+            loadData(connection, "account (id, amount, user_id)", accounts);
+          }
+        }
+        moveUserIdSequence(connection, vendor, firstUserId + distribution.users());
+        connection.commit();
+        return new SeedResult(distribution.users(), accounts.generated(), Duration.ofNanos(System.nanoTime() - start));
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+    });
+  }
+
+  private void copyIn(Connection connection, String target, Iterator<String> lines) throws SQLException {
+    try (InputStream rows = new LinesInputStream(lines)) {
+      connection.unwrap(PGConnection.class).getCopyAPI()
+          .copyIn("copy " + target + " from stdin with (format csv)", rows);
+    } catch (IOException e) {
+      throw new SQLException("Can't stream rows into " + target, e);
+    }
+  }
+
+  private void loadData(Connection connection, String target, Iterator<String> lines) throws SQLException {
+    try (Statement statement = connection.createStatement(); InputStream rows = new LinesInputStream(lines)) {
+      statement.execute("set foreign_key_checks = 0, unique_checks = 0");
+      try {
+        // the file name is ignored, the driver sends the stream set below instead
+        statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(rows);
+        statement.execute("load data local infile 'rows.csv' into table " + target
+            + " fields terminated by ',' lines terminated by '\\n'");
+      } finally {
+        statement.execute("set foreign_key_checks = 1, unique_checks = 1");
+      }
+    } catch (IOException e) {
+      throw new SQLException("Can't stream rows into " + target, e);
+    }
+  }
+
+  private void moveUserIdSequence(Connection connection, DatabaseVendor vendor, int nextUserId) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      switch (vendor) {
+        case POSTGRES -> statement.execute("select setval('hibernate_sequence', " + nextUserId + ", false)");
+        case MYSQL -> statement.execute("update hibernate_sequence set next_val = " + nextUserId);
+      }
+    }
+  }
+
+  private int maxId(Connection connection, String table) throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery("select coalesce(max(id), 0) from " + table)) {
+      resultSet.next();
+      return resultSet.getInt(1);
+    }
+  }
+
+  public record SeedResult(int users, long accounts, Duration elapsed) {
+  }
+
+}
@@ -0,0 +1,54 @@
+package me.konoplev.isolation.seed;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Encodes lines on demand while the database driver reads the stream.
+ */
+class LinesInputStream extends InputStream {
+
+  private final Iterator<String> lines;
+  private byte[] current = new byte[0];
+  private int position;
+
+  LinesInputStream(Iterator<String> lines) {
+    this.lines = lines;
+  }
+
+  @Override
+  public int read() {
+    if (!ensureAvailable()) {
+      return -1;
+    }
+    return current[position++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    }
+    int read = 0;
+    while (read < length && ensureAvailable()) {
+      int chunk = Math.min(length - read, current.length - position);
+      System.arraycopy(current, position, buffer, offset + read, chunk);
+      position += chunk;
+      read += chunk;
+    }
+    return read == 0 ? -1 : read;
+  }
+
+  private boolean ensureAvailable() {
+    while (position == current.length) {
+      if (!lines.hasNext()) {
+        return false;
+      }
+      current = (lines.next() + "\n").getBytes(StandardCharsets.UTF_8);
+      position = 0;
+    }
+    return true;
+  }
+
+}
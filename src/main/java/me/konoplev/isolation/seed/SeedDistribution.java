@@ -0,0 +1,48 @@
+package me.konoplev.isolation.seed;
+
+/**
+ * Shape of the generated data set.
+ *
+ * @param users              number of users to generate
+ * @param minAccountsPerUser lower bound (inclusive) of accounts generated for every user
+ * @param maxAccountsPerUser upper bound (inclusive) of accounts generated for every user
+ * @param maxAmount          upper bound (exclusive) of an account amount
+ * @param amountSkew         1 spreads amounts uniformly, bigger values make most accounts poor and a few rich
+ * @param randomSeed         the same seed always produces the same rows
+ */
+public record SeedDistribution(int users, int minAccountsPerUser, int maxAccountsPerUser, int maxAmount,
+                               double amountSkew, long randomSeed) {
+
+  public SeedDistribution {
+    if (users < 0) {
+      throw new IllegalArgumentException("Number of users can't be negative: " + users);
+    }
+    if (minAccountsPerUser < 0 || maxAccountsPerUser < minAccountsPerUser) {
+      throw new IllegalArgumentException(
+          "Wrong accounts per user range [" + minAccountsPerUser + ", " + maxAccountsPerUser + "]");
+    }
+    if (maxAmount <= 0) {
+      throw new IllegalArgumentException("Max amount should be positive: " + maxAmount);
+    }
+    if (amountSkew <= 0) {
+      throw new IllegalArgumentException("Amount skew should be positive: " + amountSkew);
+    }
+  }
+
+  public static SeedDistribution uniform(int users, int accountsPerUser, int maxAmount) {
+    return new SeedDistribution(users, accountsPerUser, accountsPerUser, maxAmount, 1, 0);
+  }
+
+  public SeedDistribution withAccountsPerUser(int min, int max) {
+    return new SeedDistribution(users, min, max, maxAmount, amountSkew, randomSeed);
+  }
+
+  public SeedDistribution withAmountSkew(double skew) {
+    return new SeedDistribution(users, minAccountsPerUser, maxAccountsPerUser, maxAmount, skew, randomSeed);
+  }
+
+  public SeedDistribution withRandomSeed(long seed) {
+    return new SeedDistribution(users, minAccountsPerUser, maxAccountsPerUser, maxAmount, amountSkew, seed);
+  }
+
+}
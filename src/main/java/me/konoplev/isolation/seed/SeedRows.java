@@ -0,0 +1,95 @@
+package me.konoplev.isolation.seed;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Lazily generates CSV lines for the {@code users} and {@code account} tables, so a data set of any size
+ * can be streamed into the database without being materialized in memory.
+ */
+final class SeedRows {
+
+  private SeedRows() {
+  }
+
+  static String userName(int userId) {
+    return "user-" + userId;
+  }
+
+  /**
+   * Lines are "id,user_name".
+   */
+  static Iterator<String> users(int firstUserId, SeedDistribution distribution) {
+    return new Iterator<>() {
+      private int generated;
+
+      @Override
+      public boolean hasNext() {
+        return generated < distribution.users();
+      }
+
+      @Override
+      public String next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        int userId = firstUserId + generated++;
+        return userId + "," + userName(userId);
+      }
+    };
+  }
+
+  /**
+   * Lines are "id,amount,user_id".
+   */
+  static AccountRows accounts(int firstUserId, int firstAccountId, SeedDistribution distribution) {
+    return new AccountRows(firstUserId, firstAccountId, distribution);
+  }
+
+  static final class AccountRows implements Iterator<String> {
+    private final SeedDistribution distribution;
+    private final SplittableRandom random;
+    private final int lastUserId;
+    private int userId;
+    private int accountsLeftForUser;
+    private int nextAccountId;
+    private long generated;
+
+    private AccountRows(int firstUserId, int firstAccountId, SeedDistribution distribution) {
+      this.distribution = distribution;
+      this.random = new SplittableRandom(distribution.randomSeed());
+      this.lastUserId = firstUserId + distribution.users() - 1;
+      this.userId = firstUserId - 1;
+      this.nextAccountId = firstAccountId;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (accountsLeftForUser == 0 && userId < lastUserId) {
+        userId++;
+        accountsLeftForUser = random.nextInt(distribution.minAccountsPerUser(), distribution.maxAccountsPerUser() + 1);
+      }
+      return accountsLeftForUser > 0;
+    }
+
+    @Override
+    public String next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      accountsLeftForUser--;
+      generated++;
+      return nextAccountId++ + "," + amount() + "," + userId;
+    }
+
+    long generated() {
+      return generated;
+    }
+
+    private int amount() {
+      return (int) (distribution.maxAmount() * Math.pow(random.nextDouble(), distribution.amountSkew()));
+    }
+  }
+
+}
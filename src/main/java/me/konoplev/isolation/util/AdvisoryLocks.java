@@ -0,0 +1,105 @@
+package me.konoplev.isolation.util;
+
+import java.util.Collection;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Application-level locks of the current transaction, for invariants that span several rows, like "the accounts
+ * of a user never go below zero together". Transactions locking the same key run one after another even at
+ * {@code READ_COMMITTED}, transactions with different keys don't wait for each other, unless the keys share a stripe.
+ * <p>
+ * Keys are hashed into {@code isolation.advisory-locks.stripes} stripes, so the number of distinct locks the
+ * database keeps is bounded. On Postgres a stripe is a {@code pg_advisory_xact_lock}, released by the database
+ * at commit or rollback. On MySQL it's a {@code GET_LOCK}, which belongs to the session, so it's released
+ * explicitly after the transaction completes.
+ */
+@Service
+public class AdvisoryLocks {
+
+  // the first key of the two-key Postgres advisory locks, keeps the stripes apart from other advisory locks
+  static final int POSTGRES_NAMESPACE = 0x150;
+  static final String MYSQL_PREFIX = "isolation.stripe.";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final int stripes;
+  private final int mySqlTimeoutSeconds;
+  private volatile DatabaseVendor vendor;
+
+  public AdvisoryLocks(JdbcTemplate jdbcTemplate,
+                       @Value("${isolation.advisory-locks.stripes:1024}") int stripes,
+                       @Value("${isolation.advisory-locks.mysql-timeout-seconds:50}") int mySqlTimeoutSeconds) {
+    if (stripes < 1) {
+      throw new IllegalArgumentException("There should be at least one stripe: " + stripes);
+    }
+    this.jdbcTemplate = jdbcTemplate;
+    this.stripes = stripes;
+    this.mySqlTimeoutSeconds = mySqlTimeoutSeconds;
+  }
+
+  /**
+   * Waits until no other transaction holds the stripe of the key, and holds it until the current transaction ends.
+   */
+  public void lock(long key) {
+    lockStripe(stripe(key));
+  }
+
+  /**
+   * Locks the stripes of all keys in ascending order, so transactions locking overlapping keys can't deadlock.
+   */
+  public void lock(Collection<Long> keys) {
+    keys.stream().mapToInt(this::stripe).distinct().sorted().forEach(this::lockStripe);
+  }
+
+  int stripe(long key) {
+    // spreads sequential ids, e.g. of users, over all stripes
+    return Math.floorMod(Long.hashCode(key * 0x9E3779B97F4A7C15L), stripes);
+  }
+
+  private void lockStripe(int stripe) {
+    if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException("Advisory locks are held until the end of the transaction, there is none");
+    }
+    switch (vendor()) {
+      case POSTGRES -> jdbcTemplate.queryForObject("select pg_advisory_xact_lock(?, ?)::text", String.class,
+          POSTGRES_NAMESPACE, stripe);
+      case MYSQL -> lockMySqlStripe(MYSQL_PREFIX + stripe);
+    }
+  }
+
+  private void lockMySqlStripe(String name) {
+    Integer acquired = jdbcTemplate.queryForObject("select get_lock(?, ?)", Integer.class, name,
+        Deadline.current().map(deadline -> (int) Math.max(1, deadline.remaining().toSeconds())).orElse(mySqlTimeoutSeconds));
+    if (acquired == null || acquired != 1) {
+      throw new CannotAcquireLockException("Can't get lock " + name + ", get_lock returned " + acquired);
+    }
+    // the connection of the transaction is still bound when it has completed
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        try {
+          jdbcTemplate.queryForObject("select release_lock(?)", Integer.class, name);
+        } catch (RuntimeException e) {
+          // most likely the connection is broken, and its session with the lock is gone with it
+          System.out.println("Can't release lock " + name + ": " + e);
+        }
+      }
+    });
+  }
+
+  private DatabaseVendor vendor() {
+    DatabaseVendor detected = vendor;
+    if (detected == null) {
+      detected = jdbcTemplate.execute((ConnectionCallback<DatabaseVendor>) DatabaseVendor::of);
+      vendor = detected;
+    }
+    return detected;
+  }
+
+}
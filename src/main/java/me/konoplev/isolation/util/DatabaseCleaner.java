@@ -0,0 +1,90 @@
+package me.konoplev.isolation.util;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Table;
+import javax.persistence.metamodel.EntityType;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resets all entity tables and id generators in constant time, no matter how many rows were seeded.
+ * Unlike {@code repository.deleteAll()} it neither loads entities nor deletes them row by row.
+ */
+@Service
+public class DatabaseCleaner {
+
+  private final JdbcTemplate jdbcTemplate;
+  private final List<String> tables;
+
+  public DatabaseCleaner(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.tables = entityManagerFactory.getMetamodel().getEntities().stream()
+        .map(DatabaseCleaner::tableName)
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  public void cleanUp() {
+    // the whole reset has to run on one connection, MySQL foreign_key_checks is a session variable
+    jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+      try (Statement statement = connection.createStatement()) {
+        switch (DatabaseVendor.of(connection)) {
+          case POSTGRES -> cleanUpPostgres(connection, statement);
+          case MYSQL -> cleanUpMySql(connection, statement);
+        }
+      }
+      return null;
+    });
+  }
+
+  private void cleanUpPostgres(Connection connection, Statement statement) throws SQLException {
+    statement.execute("truncate table " + String.join(", ", tables) + " restart identity cascade");
+    // "restart identity" only covers sequences owned by the truncated columns, hibernate_sequence isn't one of them
+    for (String sequence : query(connection,
+        "select sequence_name from information_schema.sequences where sequence_schema = current_schema()")) {
+      statement.execute("alter sequence " + sequence + " restart");
+    }
+  }
+
+  private void cleanUpMySql(Connection connection, Statement statement) throws SQLException {
+    statement.execute("set foreign_key_checks = 0");
+    try {
+      for (String table : tables) {
+        // truncate resets auto_increment counters as well
+        statement.execute("truncate table " + table);
+      }
+    } finally {
+      statement.execute("set foreign_key_checks = 1");
+    }
+    // MySQL has no sequences, Hibernate emulates them with single row "next_val" tables
+    for (String sequenceTable : query(connection,
+        "select table_name from information_schema.columns where table_schema = database() and column_name = 'next_val'")) {
+      statement.execute("update " + sequenceTable + " set next_val = 1");
+    }
+  }
+
+  private List<String> query(Connection connection, String sql) throws SQLException {
+    try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+      List<String> result = new ArrayList<>();
+      while (resultSet.next()) {
+        result.add(resultSet.getString(1));
+      }
+      return result;
+    }
+  }
+
+  private static String tableName(EntityType<?> entity) {
+    Table table = entity.getJavaType().getAnnotation(Table.class);
+    return table != null && !table.name().isEmpty() ? table.name() : entity.getName();
+  }
+
+}
@@ -0,0 +1,30 @@
+package me.konoplev.isolation.util;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public enum DatabaseVendor {
+  POSTGRES,
+  MYSQL;
+
+  public static DatabaseVendor of(DataSource dataSource) {
+    try (Connection connection = dataSource.getConnection()) {
+      return of(connection);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Can't detect the database vendor", e);
+    }
+  }
+
+  public static DatabaseVendor of(Connection connection) throws SQLException {
+    String productName = connection.getMetaData().getDatabaseProductName();
+    if ("PostgreSQL".equalsIgnoreCase(productName)) {
+      return POSTGRES;
+    }
+    if ("MySQL".equalsIgnoreCase(productName)) {
+      return MYSQL;
+    }
+    throw new IllegalStateException("Unsupported database " + productName);
+  }
+
+}
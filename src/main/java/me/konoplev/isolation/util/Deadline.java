@@ -0,0 +1,83 @@
+package me.konoplev.isolation.util;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * A point in time a scenario has to be done by. Waits take the time that is left instead of a fixed timeout,
+ * so a scenario never runs longer than its deadline, however many times its threads wake up.
+ * <p>
+ * A deadline can be bound to the current thread, then transactions started by the thread take their statement
+ * and lock timeouts from it, see {@link DeadlineAwareTransactionManager}.
+ */
+public final class Deadline {
+
+  private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+  private final Duration timeout;
+  private final long expiresAt;
+
+  private Deadline(Duration timeout) {
+    this.timeout = timeout;
+    this.expiresAt = System.nanoTime() + timeout.toNanos();
+  }
+
+  public static Deadline after(Duration timeout) {
+    return new Deadline(timeout);
+  }
+
+  /**
+   * The deadline bound to the current thread by {@link #run(Runnable)} or {@link #call(Supplier)}.
+   */
+  public static Optional<Deadline> current() {
+    return Optional.ofNullable(CURRENT.get());
+  }
+
+  public Duration timeout() {
+    return timeout;
+  }
+
+  public long remainingNanos() {
+    return expiresAt - System.nanoTime();
+  }
+
+  public Duration remaining() {
+    return Duration.ofNanos(Math.max(0, remainingNanos()));
+  }
+
+  public boolean isExpired() {
+    return remainingNanos() <= 0;
+  }
+
+  /**
+   * Runs the code with the deadline bound to the current thread. If the thread already has an earlier deadline,
+   * the earlier one stays.
+   */
+  public void run(Runnable execution) {
+    call(() -> {
+      execution.run();
+      return null;
+    });
+  }
+
+  public <T> T call(Supplier<T> execution) {
+    Deadline previous = CURRENT.get();
+    CURRENT.set(previous != null && previous.expiresAt - expiresAt < 0 ? previous : this);
+    try {
+      return execution.get();
+    } finally {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "Deadline of " + timeout.toMillis() + " ms, " + remaining().toMillis() + " ms left";
+  }
+
+}
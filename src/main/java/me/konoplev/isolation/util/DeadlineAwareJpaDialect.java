@@ -0,0 +1,67 @@
+package me.konoplev.isolation.util;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Optional;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+
+/**
+ * Makes a statement of a transaction started under a {@link Deadline} fail once it waits for a lock longer
+ * than the deadline has left, instead of waiting for the lock as long as the database allows.
+ * {@code lock_timeout} on Postgres is set for the transaction only, {@code innodb_lock_wait_timeout} on MySQL is
+ * a session variable and is reset when the transaction is done.
+ */
+public class DeadlineAwareJpaDialect extends HibernateJpaDialect {
+
+  @Override
+  public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+      throws PersistenceException, SQLException, TransactionException {
+    Object transactionData = super.beginTransaction(entityManager, definition);
+    Optional<Deadline> deadline = Deadline.current();
+    if (deadline.isEmpty()) {
+      return transactionData;
+    }
+    // a failure here rolls back the transaction that has just begun, see JpaTransactionManager.doBegin
+    SessionImplementor session = getSession(entityManager);
+    DatabaseVendor vendor = session.doReturningWork(connection -> {
+      DatabaseVendor connectionVendor = DatabaseVendor.of(connection);
+      try (Statement statement = connection.createStatement()) {
+        statement.execute(switch (connectionVendor) {
+          case POSTGRES -> "set local lock_timeout = " + Math.max(1, deadline.get().remaining().toMillis());
+          // whole seconds only
+          case MYSQL -> "set session innodb_lock_wait_timeout = " + Math.max(1, deadline.get().remaining().toSeconds());
+        });
+      }
+      return connectionVendor;
+    });
+    return vendor == DatabaseVendor.MYSQL ? new SessionLockTimeout(transactionData, session) : transactionData;
+  }
+
+  @Override
+  public void cleanupTransaction(Object transactionData) {
+    if (transactionData instanceof SessionLockTimeout sessionLockTimeout) {
+      try {
+        sessionLockTimeout.session().doWork(connection -> {
+          try (Statement statement = connection.createStatement()) {
+            statement.execute("set session innodb_lock_wait_timeout = default");
+          }
+        });
+      } catch (RuntimeException e) {
+        System.out.println("Can't reset innodb_lock_wait_timeout: " + e);
+      }
+      super.cleanupTransaction(sessionLockTimeout.transactionData());
+      return;
+    }
+    super.cleanupTransaction(transactionData);
+  }
+
+  private record SessionLockTimeout(Object transactionData, SessionImplementor session) {
+  }
+
+}
@@ -0,0 +1,41 @@
+package me.konoplev.isolation.util;
+
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionTimedOutException;
+
+/**
+ * Limits transactions started under a {@link Deadline} by the time the deadline has left. The transaction timeout
+ * becomes the statement timeout of every JPA and JdbcTemplate query of the transaction, and
+ * {@link DeadlineAwareJpaDialect} sets the lock timeout. Transactions without a deadline are untouched.
+ * <p>
+ * Nested transactions are savepoints of {@link SavepointJpaDialect}.
+ */
+public class DeadlineAwareTransactionManager extends JpaTransactionManager {
+
+  public DeadlineAwareTransactionManager() {
+    setNestedTransactionAllowed(true);
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    super.afterPropertiesSet();
+    // the one of the entity manager factory is set by the super method
+    setJpaDialect(new SavepointJpaDialect(obtainEntityManagerFactory()));
+  }
+
+  @Override
+  protected int determineTimeout(TransactionDefinition definition) {
+    int timeout = super.determineTimeout(definition);
+    return Deadline.current()
+        .map(deadline -> {
+          if (deadline.isExpired()) {
+            throw new TransactionTimedOutException(deadline + ", no transaction can be started");
+          }
+          int remainingSeconds = (int) Math.max(1, (deadline.remaining().toMillis() + 999) / 1000);
+          return timeout == TransactionDefinition.TIMEOUT_DEFAULT ? remainingSeconds : Math.min(timeout, remainingSeconds);
+        })
+        .orElse(timeout);
+  }
+
+}
@@ -1,52 +1,122 @@
 package me.konoplev.isolation.util;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+/**
+ * Collects exceptions of concurrent executions without a lock. Every exception is counted per identifier and
+ * exception type, but only the first few of each kind are kept, and they are formatted only when the details
+ * are asked for. A run with thousands of failures costs a counter increment per failure.
+ */
 public class ExecutionExceptionsKeeper<Identifier> {
-  private final StringBuilder exceptions = new StringBuilder();
-  private Exception toRethrow;
+
+  static final int MAX_EXAMPLES_PER_KIND = 3;
+  static final int MAX_KINDS = 1000;
+  static final int MAX_SUPPRESSED = 16;
+
+  private final ConcurrentMap<Kind<Identifier>, Failures> failures = new ConcurrentHashMap<>();
+  private final AtomicLong kindsSequence = new AtomicLong();
+  // failures of kinds that didn't fit into MAX_KINDS
+  private final AtomicLong uncategorized = new AtomicLong();
+  private final AtomicReference<Pending> toRethrow = new AtomicReference<>();
+
   ExecutionExceptionsKeeper() {
   }
 
   public void handleExpectedException(Identifier identifier, Exception happenedException, Class<? extends Exception> expectedException) {
     if (happenedException.getClass() != expectedException) {
       handleUnexpectedException(identifier, happenedException);
+      return;
     }
     setExceptionToThrowLater(happenedException);
   }
 
   public void handleUnexpectedException(Identifier identifier, Exception e) {
-    exceptions.append("Unexpected exception ").append(e.getClass().getName()).append(" in ").append(identifier).append("\n")
-        .append("message: ").append(e.getMessage()).append("\n")
-        .append("stack trace: \n").append(convertStackTraceToString(e.getStackTrace())).append("\n");
+    var kind = new Kind<>(identifier, e.getClass());
+    Failures kindFailures = failures.get(kind);
+    if (kindFailures == null && failures.size() >= MAX_KINDS) {
+      uncategorized.incrementAndGet();
+    } else {
+      if (kindFailures == null) {
+        kindFailures = failures.computeIfAbsent(kind, newKind -> new Failures(kindsSequence.getAndIncrement()));
+      }
+      kindFailures.add(e);
+    }
     setExceptionToThrowLater(e);
   }
 
+  /**
+   * Throws the latest exception, the earlier ones that weren't rethrown yet are suppressed by it.
+   */
   public void ifAnyExceptionRethrow() throws Exception {
-    if (toRethrow != null) {
-      try {
-        throw toRethrow;
-      } finally {
-        // reset toRethrow to null to prevent double throwing
-        toRethrow = null;
-      }
+    // reset toRethrow to null to prevent double throwing
+    Pending pending = toRethrow.getAndSet(null);
+    if (pending != null) {
+      Exception latest = pending.latest();
+      pending.earlier().forEach(earlier -> {
+        if (earlier != latest) {
+          latest.addSuppressed(earlier);
+        }
+      });
+      throw latest;
     }
   }
 
   private void setExceptionToThrowLater(Exception happenedException) {
-    if (toRethrow == null) {
-      toRethrow = happenedException;
-    }
-    toRethrow = happenedException;
+    toRethrow.updateAndGet(pending -> pending == null
+        ? new Pending(happenedException, List.of())
+        : pending.then(happenedException));
   }
 
   public boolean noExceptions() {
-    return exceptions.length() == 0;
+    return failures.isEmpty() && uncategorized.get() == 0;
+  }
+
+  public long count(Identifier identifier, Class<? extends Exception> exceptionType) {
+    Failures kindFailures = failures.get(new Kind<>(identifier, exceptionType));
+    return kindFailures == null ? 0 : kindFailures.count.get();
   }
 
+  public long totalCount() {
+    return uncategorized.get() + failures.values().stream().mapToLong(kindFailures -> kindFailures.count.get()).sum();
+  }
+
+  /**
+   * Kinds of exceptions in the order they happened for the first time.
+   */
   public String exceptionDetails() {
-    return exceptions.toString();
+    StringBuilder result = new StringBuilder();
+    failures.entrySet().stream()
+        .sorted(Comparator.comparingLong(entry -> entry.getValue().sequence))
+        .forEach(entry -> format(result, entry.getKey(), entry.getValue()));
+    if (uncategorized.get() > 0) {
+      result.append(uncategorized.get()).append(" more exceptions of other kinds\n");
+    }
+    return result.toString();
+  }
+
+  private void format(StringBuilder result, Kind<Identifier> kind, Failures kindFailures) {
+    long count = kindFailures.count.get();
+    result.append("Unexpected exception ").append(kind.type().getName()).append(" in ").append(kind.identifier());
+    if (count > 1) {
+      result.append(" (").append(count).append(" times)");
+    }
+    result.append("\n");
+    for (Exception example : kindFailures.examples()) {
+      result.append("message: ").append(example.getMessage()).append("\n")
+          .append("stack trace: \n").append(convertStackTraceToString(example.getStackTrace())).append("\n");
+    }
+    if (count > MAX_EXAMPLES_PER_KIND) {
+      result.append("... ").append(count - MAX_EXAMPLES_PER_KIND).append(" more\n");
+    }
   }
 
   private String convertStackTraceToString(StackTraceElement[] stackTrace) {
@@ -54,4 +124,50 @@ public class ExecutionExceptionsKeeper<Identifier> {
     return tab + Stream.of(stackTrace).map(StackTraceElement::toString).collect(Collectors.joining("\n" + tab));
   }
 
+  private record Kind<Identifier>(Identifier identifier, Class<? extends Exception> type) {
+  }
+
+  private static class Failures {
+
+    private final long sequence;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicReferenceArray<Exception> examples = new AtomicReferenceArray<>(MAX_EXAMPLES_PER_KIND);
+
+    Failures(long sequence) {
+      this.sequence = sequence;
+    }
+
+    void add(Exception e) {
+      long number = count.getAndIncrement();
+      if (number < MAX_EXAMPLES_PER_KIND) {
+        examples.set((int) number, e);
+      }
+    }
+
+    List<Exception> examples() {
+      List<Exception> result = new ArrayList<>(MAX_EXAMPLES_PER_KIND);
+      for (int i = 0; i < MAX_EXAMPLES_PER_KIND; i++) {
+        Exception example = examples.get(i);
+        // a slot is empty for a moment between the count increment and the write
+        if (example != null) {
+          result.add(example);
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * @param earlier not rethrown yet, the most recent {@link #MAX_SUPPRESSED} only
+   */
+  private record Pending(Exception latest, List<Exception> earlier) {
+
+    Pending then(Exception next) {
+      List<Exception> nextEarlier = new ArrayList<>(earlier.size() + 1);
+      nextEarlier.addAll(earlier.size() < MAX_SUPPRESSED ? earlier : earlier.subList(1, earlier.size()));
+      nextEarlier.add(latest);
+      return new Pending(next, List.copyOf(nextEarlier));
+    }
+  }
+
 }
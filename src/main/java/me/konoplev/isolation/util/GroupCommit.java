@@ -0,0 +1,27 @@
+package me.konoplev.isolation.util;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+
+import org.springframework.stereotype.Service;
+
+@Service
+public class GroupCommit {
+
+  private final TransactionsWrapper transactionsWrapper;
+  private final EntityManagerFactory entityManagerFactory;
+
+  public GroupCommit(TransactionsWrapper transactionsWrapper, EntityManagerFactory entityManagerFactory) {
+    this.transactionsWrapper = transactionsWrapper;
+    this.entityManagerFactory = entityManagerFactory;
+  }
+
+  /**
+   * @param maxBatchSize  more requests in a batch mean fewer commits per second
+   * @param maxBatchDelay the longest time a request waits for its batch to fill up
+   */
+  public GroupCommitPipeline pipeline(int maxBatchSize, Duration maxBatchDelay) {
+    return new GroupCommitPipeline(transactionsWrapper, entityManagerFactory, maxBatchSize, maxBatchDelay);
+  }
+
+}
@@ -0,0 +1,147 @@
+package me.konoplev.isolation.util;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.konoplev.isolation.util.TransactionsWrapper.FallibleFunction;
+
+/**
+ * Coalesces small concurrent units of work into one {@code readCommitted} transaction, so they share
+ * a single commit (and a single fsync) instead of paying for one each.
+ * <p>
+ * The first queued unit opens a batch, the batch is executed as soon as it has {@code maxBatchSize} units or the
+ * first unit has waited for {@code maxBatchDelay}. Every unit runs under its own savepoint, see {@link JpaSavepoints}:
+ * a failed unit is rolled back to its savepoint and only its future fails. The futures of the other units complete
+ * after the commit.
+ * <p>
+ * Created by {@link GroupCommit#pipeline(int, Duration)}.
+ */
+public class GroupCommitPipeline implements AutoCloseable {
+
+  private final TransactionsWrapper transactionsWrapper;
+  private final EntityManagerFactory entityManagerFactory;
+  private final int maxBatchSize;
+  private final long maxBatchDelayNanos;
+  private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+  private final AtomicLong commits = new AtomicLong();
+  private final AtomicLong committedRequests = new AtomicLong();
+  private final Thread drainer;
+  private final Object lifecycle = new Object();
+  private volatile boolean running = true;
+
+  GroupCommitPipeline(TransactionsWrapper transactionsWrapper, EntityManagerFactory entityManagerFactory,
+                      int maxBatchSize, Duration maxBatchDelay) {
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("Batch should have at least one request: " + maxBatchSize);
+    }
+    this.transactionsWrapper = transactionsWrapper;
+    this.entityManagerFactory = entityManagerFactory;
+    this.maxBatchSize = maxBatchSize;
+    this.maxBatchDelayNanos = maxBatchDelay.toNanos();
+    this.drainer = new Thread(this::drain, "group-commit");
+    this.drainer.setDaemon(true);
+    this.drainer.start();
+  }
+
+  public CompletableFuture<Void> submit(FallibleFunction work) {
+    var request = new Request(work, new CompletableFuture<>(), System.nanoTime());
+    // a request added after close() has drained the queue would never complete
+    synchronized (lifecycle) {
+      if (running) {
+        queue.add(request);
+        return request.result();
+      }
+    }
+    request.result().completeExceptionally(new IllegalStateException("Pipeline is closed"));
+    return request.result();
+  }
+
+  public long commits() {
+    return commits.get();
+  }
+
+  public long committedRequests() {
+    return committedRequests.get();
+  }
+
+  /**
+   * Stops taking new batches. Requests that are still queued fail.
+   */
+  @Override
+  public void close() throws InterruptedException {
+    synchronized (lifecycle) {
+      running = false;
+    }
+    drainer.interrupt();
+    drainer.join();
+    List<Request> left = new ArrayList<>();
+    queue.drainTo(left);
+    left.forEach(request -> request.result().completeExceptionally(new IllegalStateException("Pipeline is closed")));
+  }
+
+  private void drain() {
+    List<Request> batch = new ArrayList<>(maxBatchSize);
+    try {
+      while (running) {
+        Request first = queue.take();
+        batch.add(first);
+        long deadline = first.queuedAt() + maxBatchDelayNanos;
+        while (batch.size() < maxBatchSize) {
+          Request next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+        execute(batch);
+        batch.clear();
+      }
+    } catch (InterruptedException e) {
+      batch.forEach(request -> request.result().completeExceptionally(new IllegalStateException("Pipeline is closed")));
+    }
+  }
+
+  private void execute(List<Request> batch) {
+    List<Request> succeeded = new ArrayList<>(batch.size());
+    try {
+      transactionsWrapper.readCommitted(() -> {
+        JpaSavepoints savepoints = JpaSavepoints.current(entityManagerFactory);
+        for (Request request : batch) {
+          runUnderSavepoint(savepoints, request, succeeded);
+        }
+      });
+    } catch (RuntimeException e) {
+      // the commit failed, or a rollback to a savepoint did. Futures of failed requests are completed already
+      batch.forEach(request -> request.result().completeExceptionally(e));
+      return;
+    }
+    commits.incrementAndGet();
+    committedRequests.addAndGet(succeeded.size());
+    succeeded.forEach(request -> request.result().complete(null));
+  }
+
+  // a savepoint that can't be created or rolled back to fails the batch, the transaction can't go on then
+  private void runUnderSavepoint(JpaSavepoints savepoints, Request request, List<Request> succeeded) {
+    Object savepoint = savepoints.createSavepoint();
+    try {
+      request.work().run();
+      // flushes the unit, a failing flush rolls back to the savepoint too
+      savepoints.releaseSavepoint(savepoint);
+      succeeded.add(request);
+    } catch (Exception e) {
+      savepoints.rollbackToSavepoint(savepoint);
+      request.result().completeExceptionally(e);
+    }
+  }
+
+  private record Request(FallibleFunction work, CompletableFuture<Void> result, long queuedAt) {
+  }
+
+}
@@ -0,0 +1,273 @@
+package me.konoplev.isolation.util;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.orm.jpa.EntityManagerFactoryInfo;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.SavepointManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.UnexpectedRollbackException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JDBC savepoints of the JPA transaction of the current thread, for work that may fail without failing the transaction.
+ * <p>
+ * Hibernate marks its transaction rollback-only on every exception it translates and has no API to undo that.
+ * So the work after a savepoint runs in a Hibernate session of its own, opened on the connection of the transaction
+ * and bound in place of the session before it until the savepoint is rolled back to or released. A rollback closes
+ * that session and leaves the ones before it as they were at the savepoint. A released session stays open and
+ * is flushed before the commit, the entities it loaded can still be changed and loaded lazily.
+ * <p>
+ * An entity belongs to the session that loaded it. A rollback can't undo changes the work made to entities loaded
+ * before the savepoint, it fails then and the transaction can only roll back. Entities the work deleted stay
+ * in the sessions that had loaded them before.
+ */
+final class JpaSavepoints implements SavepointManager, TransactionSynchronization {
+
+  private final EntityManagerFactory entityManagerFactory;
+  private final SessionImplementor transactionSession;
+  private final PersistenceExceptionTranslator exceptionTranslator;
+  // the sessions of the savepoints that weren't rolled back to, in the order they were created
+  private final List<SessionImplementor> sessions = new ArrayList<>();
+
+  private JpaSavepoints(EntityManagerFactory entityManagerFactory, SessionImplementor transactionSession) {
+    this.entityManagerFactory = entityManagerFactory;
+    this.transactionSession = transactionSession;
+    this.exceptionTranslator = entityManagerFactory instanceof EntityManagerFactoryInfo info && info.getJpaDialect() != null
+        ? info.getJpaDialect()
+        : EntityManagerFactoryUtils::convertJpaAccessExceptionIfPossible;
+  }
+
+  /**
+   * The savepoints of the transaction the current thread takes part in, the key the transaction manager binds
+   * its entity managers with.
+   */
+  static JpaSavepoints current(EntityManagerFactory entityManagerFactory) {
+    var holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(entityManagerFactory);
+    if (holder instanceof SavepointHolder savepointHolder) {
+      return savepointHolder.savepoints;
+    }
+    if (holder == null || !TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new NoTransactionException("There is no JPA transaction to create a savepoint in");
+    }
+    var session = holder.getEntityManager().unwrap(SessionImplementor.class);
+    var savepoints = (JpaSavepoints) TransactionSynchronizationManager.getResource(session);
+    if (savepoints == null) {
+      savepoints = new JpaSavepoints(entityManagerFactory, session);
+      TransactionSynchronizationManager.bindResource(session, savepoints);
+      TransactionSynchronizationManager.registerSynchronization(savepoints);
+    }
+    return savepoints;
+  }
+
+  @Override
+  public Object createSavepoint() throws TransactionException {
+    var parent = (EntityManagerHolder) TransactionSynchronizationManager.getResource(entityManagerFactory);
+    SessionImplementor session;
+    Savepoint savepoint;
+    try {
+      // the changes made so far belong to the work before the savepoint
+      transactionSession.flush();
+      sessions.forEach(SessionImplementor::flush);
+      Connection connection = transactionSession.doReturningWork(transactionConnection -> transactionConnection);
+      savepoint = connection.setSavepoint();
+      session = (SessionImplementor) transactionSession.getSessionFactory().withOptions().connection(connection).openSession();
+      session.setHibernateFlushMode(transactionSession.getHibernateFlushMode());
+      session.setDefaultReadOnly(transactionSession.isDefaultReadOnly());
+      // flushing needs an active transaction. It's never committed or rolled back, the savepoint is
+      session.getTransaction().begin();
+    } catch (SQLException | RuntimeException e) {
+      throw new CannotCreateTransactionException("Could not create JDBC savepoint", e);
+    }
+    var holder = new SavepointHolder(session, this);
+    if (parent.hasTimeout()) {
+      holder.setTimeoutInMillis(parent.getTimeToLiveInMillis());
+    }
+    TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+    TransactionSynchronizationManager.bindResource(entityManagerFactory, holder);
+    sessions.add(session);
+    return new Level(savepoint, parent, session, sessions.size() - 1);
+  }
+
+  /**
+   * Closes the session of the savepoint and of the savepoints released inside it. Once rolled back to,
+   * the savepoint is released, rolling back to it again does nothing.
+   */
+  @Override
+  public void rollbackToSavepoint(Object savepoint) throws TransactionException {
+    var level = (Level) savepoint;
+    if (level.state == State.ROLLED_BACK) {
+      return;
+    }
+    if (level.state != State.ACTIVE) {
+      throw new TransactionSystemException("Savepoint is " + level.state.name().toLowerCase() + ", can't roll back to it");
+    }
+    level.state = State.BROKEN;
+    bindParent(level);
+    closeSessions(level.index);
+    try {
+      transactionSession.doWork(connection -> connection.rollback(level.savepoint));
+    } catch (RuntimeException e) {
+      throw new TransactionSystemException("Could not roll back to JDBC savepoint", e);
+    }
+    releaseQuietly(level);
+    level.state = State.ROLLED_BACK;
+    // all of them were flushed at the savepoint, so the work has changed their entities
+    if (transactionSession.isDirty() || sessions.stream().anyMatch(SessionImplementor::isDirty)) {
+      transactionSession.getTransaction().setRollbackOnly();
+      throw new TransactionSystemException("Entities loaded before the savepoint were changed after it, "
+          + "their changes can't be rolled back to the savepoint, the transaction can only roll back");
+    }
+  }
+
+  /**
+   * Flushes the work and releases the savepoint. If the work can't be kept, because the flush fails or the work
+   * was marked rollback-only, rolls back to the savepoint before throwing.
+   */
+  @Override
+  public void releaseSavepoint(Object savepoint) throws TransactionException {
+    var level = (Level) savepoint;
+    if (level.state == State.ROLLED_BACK) {
+      return;
+    }
+    if (level.state != State.ACTIVE) {
+      throw new TransactionSystemException("Savepoint is " + level.state.name().toLowerCase() + ", can't release it");
+    }
+    if (level.session.getTransaction().getRollbackOnly()) {
+      rollbackToSavepoint(level);
+      throw new UnexpectedRollbackException("Rolled back to the savepoint because the work was marked as rollback-only");
+    }
+    try {
+      level.session.flush();
+    } catch (RuntimeException e) {
+      rollbackToSavepoint(level);
+      throw translate(e);
+    }
+    bindParent(level);
+    releaseQuietly(level);
+    level.state = State.RELEASED;
+    refreshEarlierCopies(level);
+  }
+
+  @Override
+  public void beforeCommit(boolean readOnly) {
+    if (readOnly) {
+      return;
+    }
+    try {
+      sessions.forEach(SessionImplementor::flush);
+    } catch (RuntimeException e) {
+      throw translate(e);
+    }
+  }
+
+  @Override
+  public void afterCompletion(int status) {
+    closeSessions(0);
+    TransactionSynchronizationManager.unbindResourceIfPossible(transactionSession);
+  }
+
+  private void bindParent(Level level) {
+    TransactionSynchronizationManager.unbindResourceIfPossible(entityManagerFactory);
+    TransactionSynchronizationManager.bindResource(entityManagerFactory, level.parent);
+  }
+
+  private void closeSessions(int from) {
+    while (sessions.size() > from) {
+      SessionImplementor session = sessions.remove(sessions.size() - 1);
+      try {
+        // marked, so that closing doesn't wait for the end of a transaction that is never completed
+        session.getTransaction().markRollbackOnly();
+        session.close();
+      } catch (RuntimeException e) {
+        System.out.println("Could not close the session of a savepoint: " + e);
+      }
+    }
+  }
+
+  private void releaseQuietly(Level level) {
+    try {
+      transactionSession.doWork(connection -> connection.releaseSavepoint(level.savepoint));
+    } catch (RuntimeException e) {
+      // the savepoint is released at the end of the transaction anyway
+      System.out.println("Could not explicitly release JDBC savepoint: " + e);
+    }
+  }
+
+  // the sessions before the savepoint may hold their own copies of the entities the work has changed
+  private void refreshEarlierCopies(Level level) {
+    List<EntityKey> keys = List.copyOf(level.session.getPersistenceContextInternal().getEntitiesByKey().keySet());
+    if (keys.isEmpty()) {
+      return;
+    }
+    List<SessionImplementor> earlier = new ArrayList<>(sessions.subList(0, level.index));
+    earlier.add(0, transactionSession);
+    for (SessionImplementor session : earlier) {
+      List<Object> copies = keys.stream()
+          .map(key -> session.getPersistenceContextInternal().getEntity(key))
+          .filter(Objects::nonNull)
+          .toList();
+      if (!copies.isEmpty()) {
+        // changes the work made to the copies themselves are kept
+        session.flush();
+        copies.forEach(session::refresh);
+      }
+    }
+  }
+
+  private RuntimeException translate(RuntimeException e) {
+    RuntimeException translated = exceptionTranslator.translateExceptionIfPossible(e);
+    return translated != null ? translated : e;
+  }
+
+  private enum State {
+    ACTIVE, RELEASED, ROLLED_BACK, BROKEN
+  }
+
+  private static final class Level {
+
+    private final Savepoint savepoint;
+    private final EntityManagerHolder parent;
+    private final SessionImplementor session;
+    // of the session in sessions
+    private final int index;
+    private State state = State.ACTIVE;
+
+    Level(Savepoint savepoint, EntityManagerHolder parent, SessionImplementor session, int index) {
+      this.savepoint = savepoint;
+      this.parent = parent;
+      this.session = session;
+      this.index = index;
+    }
+  }
+
+  // takes part in the transaction like the holder of the transaction's own entity manager
+  private static final class SavepointHolder extends EntityManagerHolder {
+
+    private final JpaSavepoints savepoints;
+
+    SavepointHolder(SessionImplementor session, JpaSavepoints savepoints) {
+      super(session);
+      this.savepoints = savepoints;
+      setTransactionActive(true);
+      setSynchronizedWithTransaction(true);
+      // savepoints inside the work nest into its session
+      setSavepointManager(savepoints);
+    }
+  }
+
+}
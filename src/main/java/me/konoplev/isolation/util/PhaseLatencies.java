@@ -0,0 +1,128 @@
+package me.konoplev.isolation.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import me.konoplev.isolation.util.PhaseSync.Phases;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency histograms of {@link PhaseSync}: how long every phase waited for its turn, how long it executed
+ * (including the time it was blocked in the database), and how long the transactions took.
+ * One instance can be shared by the {@code PhaseSync}s of many runs of a scenario.
+ * <p>
+ * Values are in microseconds up to an hour with three significant digits. A histogram is allocated at the first
+ * value of its phase or transaction, recording into it after that allocates nothing.
+ */
+public class PhaseLatencies {
+
+  static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+  static final int SIGNIFICANT_DIGITS = 3;
+
+  private final AtomicReferenceArray<Histogram> waits = new AtomicReferenceArray<>(Phases.values().length);
+  private final AtomicReferenceArray<Histogram> executions = new AtomicReferenceArray<>(Phases.values().length);
+  private final ConcurrentMap<String, Histogram> transactions = new ConcurrentHashMap<>();
+
+  public void recordWait(Phases phase, long nanos) {
+    record(histogram(waits, phase), nanos);
+  }
+
+  public void recordExecution(Phases phase, long nanos) {
+    record(histogram(executions, phase), nanos);
+  }
+
+  public void recordTransaction(String name, long nanos) {
+    Histogram histogram = transactions.get(name);
+    if (histogram == null) {
+      histogram = transactions.computeIfAbsent(name, newName -> newHistogram());
+    }
+    record(histogram, nanos);
+  }
+
+  /**
+   * Waits and executions in the order of phases, then transactions by name.
+   */
+  public List<Summary> summary() {
+    List<Summary> result = new ArrayList<>();
+    for (Phases phase : Phases.values()) {
+      addIfRecorded(result, "wait", phase.name(), waits.get(phase.ordinal()));
+      addIfRecorded(result, "execution", phase.name(), executions.get(phase.ordinal()));
+    }
+    transactions.entrySet().stream()
+        .sorted(Map.Entry.comparingByKey())
+        .forEach(transaction -> addIfRecorded(result, "transaction", transaction.getKey(), transaction.getValue()));
+    return result;
+  }
+
+  public String toCsv() {
+    StringBuilder result = new StringBuilder("kind,name,count,p50_us,p99_us,p999_us,max_us\n");
+    for (Summary summary : summary()) {
+      result.append(String.join(",", summary.kind(), summary.name(), String.valueOf(summary.count()),
+              String.valueOf(micros(summary.p50())), String.valueOf(micros(summary.p99())),
+              String.valueOf(micros(summary.p999())), String.valueOf(micros(summary.max()))))
+          .append("\n");
+    }
+    return result.toString();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder(String.format("%-12s %-20s %8s %10s %10s %10s %10s%n",
+        "kind", "name", "count", "p50 us", "p99 us", "p999 us", "max us"));
+    for (Summary summary : summary()) {
+      result.append(String.format("%-12s %-20s %8d %10d %10d %10d %10d%n", summary.kind(), summary.name(),
+          summary.count(), micros(summary.p50()), micros(summary.p99()), micros(summary.p999()), micros(summary.max())));
+    }
+    return result.toString();
+  }
+
+  private static Histogram histogram(AtomicReferenceArray<Histogram> histograms, Phases phase) {
+    Histogram histogram = histograms.get(phase.ordinal());
+    if (histogram == null) {
+      histograms.compareAndSet(phase.ordinal(), null, newHistogram());
+      histogram = histograms.get(phase.ordinal());
+    }
+    return histogram;
+  }
+
+  private static Histogram newHistogram() {
+    // fixed range, a histogram that resized itself would allocate while recording
+    return new ConcurrentHistogram(1, HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+  }
+
+  private static void record(Histogram histogram, long nanos) {
+    histogram.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos))));
+  }
+
+  private static void addIfRecorded(List<Summary> result, String kind, String name, Histogram histogram) {
+    if (histogram == null || histogram.getTotalCount() == 0) {
+      return;
+    }
+    // a consistent copy, the original may be recorded into meanwhile
+    Histogram copy = histogram.copy();
+    result.add(new Summary(kind, name, copy.getTotalCount(),
+        Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(copy.getValueAtPercentile(50))),
+        Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(copy.getValueAtPercentile(99))),
+        Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(copy.getValueAtPercentile(99.9))),
+        Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(copy.getMaxValue()))));
+  }
+
+  private static long micros(Duration duration) {
+    return TimeUnit.NANOSECONDS.toMicros(duration.toNanos());
+  }
+
+  /**
+   * @param kind {@code wait}, {@code execution} or {@code transaction}
+   * @param name the phase or the transaction
+   */
+  public record Summary(String kind, String name, long count, Duration p50, Duration p99, Duration p999, Duration max) {
+  }
+
+}
@@ -1,17 +1,58 @@
 package me.konoplev.isolation.util;
 
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.*;
 import java.util.function.Consumer;
-
+import java.util.function.Supplier;
+
+/**
+ * Executes phases of a scenario in their order, whatever threads they come from.
+ * <p>
+ * The whole scenario has one {@link Deadline}. Once it's over, a phase that is still waiting fails
+ * with a report of where the scenario got stuck, and so does every phase after it, without waiting again.
+ * Phases and transactions wrapped into {@link #transaction(String, Runnable)} run under the deadline,
+ * so the transactions they start get their statement and lock timeouts from it as well.
+ * <p>
+ * Every phase records how long it waited for its turn and how long it executed into {@link #latencies()},
+ * transactions wrapped into {@link #transaction(String, Runnable)} record their total time.
+ */
 public class PhaseSync {
 
+  public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
   private final Lock lock = new ReentrantLock();
   private final Condition phaseIsDone = lock.newCondition();
-  private Phases currentPhase = Phases.FIRST;
+  // volatile, so observers don't need the lock
+  private volatile Phases currentPhase = Phases.FIRST;
+  private volatile Thread executingThread;
+  private volatile long executingSince;
+  private volatile Supplier<String> stallDiagnostics = () -> "";
+  private final Deadline deadline;
+  private final PhaseLatencies latencies;
   private final ExecutionExceptionsKeeper<Phases> executionExceptionsKeeper = new ExecutionExceptionsKeeper<>();
 
+  public PhaseSync() {
+    this(DEFAULT_TIMEOUT);
+  }
+
+  /**
+   * @param timeout for the whole scenario, starting now
+   */
+  public PhaseSync(Duration timeout) {
+    this(timeout, new PhaseLatencies());
+  }
+
+  /**
+   * @param latencies shared by several runs of a scenario to collect the latencies of all of them
+   */
+  public PhaseSync(Duration timeout, PhaseLatencies latencies) {
+    this.deadline = Deadline.after(timeout);
+    this.latencies = latencies;
+  }
+
   public void phase(Phases phase, FallibleFunction execution) {
     System.out.println(phase + " is created");
     phase(phase, execution, (e) -> executionExceptionsKeeper.handleUnexpectedException(phase, e));
@@ -33,31 +74,50 @@ public class PhaseSync {
         });
   }
 
-  public boolean noExceptions() {
-    lock.lock();
+  public Phases currentPhase() {
+    return currentPhase;
+  }
+
+  public Deadline deadline() {
+    return deadline;
+  }
+
+  public PhaseLatencies latencies() {
+    return latencies;
+  }
+
+  /**
+   * Runs the transaction, e.g. a {@code TransactionsWrapper} call with phases inside, under the deadline
+   * and records its total time, whether it commits or fails.
+   */
+  public void transaction(String name, Runnable transaction) {
+    long startedAt = System.nanoTime();
     try {
-      return executionExceptionsKeeper.noExceptions();
+      deadline.run(transaction);
     } finally {
-      lock.unlock();
+      latencies.recordTransaction(name, System.nanoTime() - startedAt);
     }
   }
 
+  /**
+   * Adds more details to the report of a stalled scenario, e.g. a {@code LockWaitSampler} graph
+   * with the database sessions that were blocked.
+   */
+  public void setStallDiagnostics(Supplier<String> stallDiagnostics) {
+    this.stallDiagnostics = stallDiagnostics;
+  }
+
+  // the keeper is thread-safe, reading it doesn't wait for a phase that is executing
+  public boolean noExceptions() {
+    return executionExceptionsKeeper.noExceptions();
+  }
+
   public String exceptionDetails() {
-    lock.lock();
-    try {
-      return executionExceptionsKeeper.exceptionDetails();
-    } finally {
-      lock.unlock();
-    }
+    return executionExceptionsKeeper.exceptionDetails();
   }
 
   public void ifAnyExceptionRethrow() throws Exception {
-    lock.lock();
-    try {
-      executionExceptionsKeeper.ifAnyExceptionRethrow();
-    } finally {
-      lock.unlock();
-    }
+    executionExceptionsKeeper.ifAnyExceptionRethrow();
   }
 
   private void executeAndHandleExceptions(FallibleFunction execution, Consumer<Exception> exceptionHandler) {
@@ -69,32 +129,90 @@ public class PhaseSync {
   }
 
   private void phase(Phases phase, FallibleFunction execution, Consumer<Exception> exceptionHandler) {
-    lock.lock();
+    long calledAt = System.nanoTime();
     try {
-      while (currentPhase != phase) {
-        if (!phaseIsDone.await(10, TimeUnit.SECONDS)) {
-          exceptionHandler.accept(new Exception("Timeout waiting for " + phase));
-          return;
-        }
-        System.out.println(phase + " is awaken and going to check if it's next");
-      }
-      System.out.println(phase + " is executing");
-      executeAndHandleExceptions(execution, exceptionHandler);
-
-      if (currentPhase.hasNext()) {
-        currentPhase = currentPhase.next();
+      if (!awaitTurn(phase)) {
+        exceptionHandler.accept(stalled(phase));
+        return;
       }
-      System.out.println("We're about to switch to " + currentPhase);
-      phaseIsDone.signalAll();
     } catch (InterruptedException e) {
       throw new RuntimeException("Thread interrupted");
+    }
+    latencies.recordWait(phase, executingSince - calledAt);
+    System.out.println(phase + " is executing");
+    // without the lock: a phase blocked in the database must not keep the waiting phases from timing out
+    try {
+      deadline.run(() -> executeAndHandleExceptions(execution, exceptionHandler));
     } catch (Throwable e) {
       System.out.println(e);
+    } finally {
+      latencies.recordExecution(phase, System.nanoTime() - executingSince);
+      lock.lock();
+      try {
+        executingThread = null;
+        if (currentPhase.hasNext()) {
+          currentPhase = currentPhase.next();
+        }
+        System.out.println("We're about to switch to " + currentPhase);
+        phaseIsDone.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private boolean awaitTurn(Phases phase) throws InterruptedException {
+    lock.lock();
+    try {
+      while (currentPhase != phase || executingThread != null) {
+        long remaining = deadline.remainingNanos();
+        if (remaining <= 0) {
+          return false;
+        }
+        phaseIsDone.awaitNanos(remaining);
+        System.out.println(phase + " is awaken and going to check if it's next");
+      }
+      executingThread = Thread.currentThread();
+      executingSince = System.nanoTime();
+      return true;
     } finally {
       lock.unlock();
     }
   }
 
+  private TimeoutException stalled(Phases phase) {
+    StringBuilder report = new StringBuilder("Timeout waiting for ").append(phase)
+        .append(", the deadline of ").append(deadline.timeout().toMillis()).append(" ms is over. ");
+    Thread executing = executingThread;
+    if (executing != null) {
+      report.append(currentPhase).append(" is executing for ")
+          .append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - executingSince)).append(" ms in ")
+          .append(executing.getName()).append(", blocked in ").append(blockedIn(executing.getStackTrace()));
+    } else {
+      report.append("Nobody has executed ").append(currentPhase);
+    }
+    try {
+      String diagnostics = stallDiagnostics.get();
+      if (!diagnostics.isEmpty()) {
+        report.append("\n").append(diagnostics);
+      }
+    } catch (RuntimeException e) {
+      report.append("\nNo diagnostics: ").append(e);
+    }
+    return new TimeoutException(report.toString());
+  }
+
+  // the first frame that is not in the JDK, e.g. the JDBC driver waiting for the database
+  private static String blockedIn(StackTraceElement[] stackTrace) {
+    for (StackTraceElement frame : stackTrace) {
+      if (!frame.getClassName().startsWith("java.") && !frame.getClassName().startsWith("jdk.")
+          && !frame.getClassName().startsWith("sun.")) {
+        return frame.toString();
+      }
+    }
+    return stackTrace.length > 0 ? stackTrace[0].toString() : "unknown";
+  }
+
   public enum Phases {
     FIRST,
     SECOND,
@@ -0,0 +1,61 @@
+package me.konoplev.isolation.util;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+
+import org.springframework.transaction.SavepointManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+
+/**
+ * Adds the savepoints of {@link JpaSavepoints} to {@link DeadlineAwareJpaDialect}, so that {@code Propagation.NESTED}
+ * runs in the transaction and on the connection it's called from. {@code HibernateJpaDialect} itself doesn't support
+ * savepoints.
+ */
+public class SavepointJpaDialect extends DeadlineAwareJpaDialect {
+
+  private final EntityManagerFactory entityManagerFactory;
+
+  /**
+   * @param entityManagerFactory the one of the transaction manager, its entity managers are bound with it
+   */
+  public SavepointJpaDialect(EntityManagerFactory entityManagerFactory) {
+    this.entityManagerFactory = entityManagerFactory;
+  }
+
+  @Override
+  public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+      throws PersistenceException, SQLException, TransactionException {
+    return new SavepointTransactionData(super.beginTransaction(entityManager, definition), entityManagerFactory);
+  }
+
+  @Override
+  public void cleanupTransaction(Object transactionData) {
+    super.cleanupTransaction(transactionData instanceof SavepointTransactionData savepointTransactionData
+        ? savepointTransactionData.transactionData()
+        : transactionData);
+  }
+
+  // JpaTransactionManager uses the transaction data as the savepoint manager if it is one
+  private record SavepointTransactionData(Object transactionData, EntityManagerFactory entityManagerFactory)
+      implements SavepointManager {
+
+    @Override
+    public Object createSavepoint() throws TransactionException {
+      return JpaSavepoints.current(entityManagerFactory).createSavepoint();
+    }
+
+    @Override
+    public void rollbackToSavepoint(Object savepoint) throws TransactionException {
+      JpaSavepoints.current(entityManagerFactory).rollbackToSavepoint(savepoint);
+    }
+
+    @Override
+    public void releaseSavepoint(Object savepoint) throws TransactionException {
+      JpaSavepoints.current(entityManagerFactory).releaseSavepoint(savepoint);
+    }
+  }
+
+}
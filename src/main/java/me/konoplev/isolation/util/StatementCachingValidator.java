@@ -0,0 +1,89 @@
+package me.konoplev.isolation.util;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mysql.cj.conf.PropertyKey;
+import com.mysql.cj.jdbc.JdbcConnection;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fails the startup of the {@code performance} profile when a connection of the pool doesn't actually cache
+ * prepared statements, e.g. because a property name was misspelled and silently ignored by the driver.
+ */
+@Component
+@Profile("performance")
+public class StatementCachingValidator implements InitializingBean {
+
+  static final String PLAN_CACHE_MAX_SIZE = "hibernate.query.plan_cache_max_size";
+  static final String IN_CLAUSE_PARAMETER_PADDING = "hibernate.query.in_clause_parameter_padding";
+
+  private final DataSource dataSource;
+  private final EntityManagerFactory entityManagerFactory;
+
+  public StatementCachingValidator(DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+    this.dataSource = dataSource;
+    this.entityManagerFactory = entityManagerFactory;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    Map<String, Object> settings = settings();
+    List<String> problems = new ArrayList<>();
+    settings.forEach((name, value) -> {
+      if (Boolean.FALSE.equals(value) || Integer.valueOf(0).equals(value) || value == null) {
+        problems.add(name + " = " + value);
+      }
+    });
+    if (!problems.isEmpty()) {
+      throw new IllegalStateException("Prepared statements are not cached: " + String.join(", ", problems));
+    }
+    System.out.println("Statement caching: " + settings);
+  }
+
+  /**
+   * The settings in effect on a pooled connection and in Hibernate, by the name of the property that sets them.
+   */
+  public Map<String, Object> settings() {
+    Map<String, Object> settings = new LinkedHashMap<>();
+    try (Connection connection = dataSource.getConnection()) {
+      switch (DatabaseVendor.of(connection)) {
+        case POSTGRES -> settings.put("prepareThreshold", connection.unwrap(PGConnection.class).getPrepareThreshold());
+        case MYSQL -> {
+          var properties = connection.unwrap(JdbcConnection.class).getPropertySet();
+          for (PropertyKey key : List.of(PropertyKey.useServerPrepStmts, PropertyKey.cachePrepStmts,
+              PropertyKey.rewriteBatchedStatements)) {
+            settings.put(key.getKeyName(), properties.getBooleanProperty(key).getValue());
+          }
+          settings.put(PropertyKey.prepStmtCacheSize.getKeyName(),
+              properties.getIntegerProperty(PropertyKey.prepStmtCacheSize).getValue());
+        }
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Can't check the connection settings", e);
+    }
+    Map<String, Object> hibernateProperties = entityManagerFactory.getProperties();
+    settings.put(PLAN_CACHE_MAX_SIZE, integer(hibernateProperties.get(PLAN_CACHE_MAX_SIZE)));
+    settings.put(IN_CLAUSE_PARAMETER_PADDING, bool(hibernateProperties.get(IN_CLAUSE_PARAMETER_PADDING)));
+    return settings;
+  }
+
+  // Hibernate keeps the configured properties as they were given, mostly as strings
+  private static Integer integer(Object value) {
+    return value == null ? null : Integer.valueOf(value.toString());
+  }
+
+  private static Boolean bool(Object value) {
+    return value == null ? null : Boolean.valueOf(value.toString());
+  }
+
+}
@@ -0,0 +1,20 @@
+package me.konoplev.isolation.util;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.JpaTransactionManager;
+
+@Configuration(proxyBeanMethods = false)
+public class TransactionManagerConfiguration {
+
+  // replaces the JpaTransactionManager of Spring Boot, customized the same way
+  @Bean
+  public JpaTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> transactionManagerCustomizers) {
+    var transactionManager = new DeadlineAwareTransactionManager();
+    transactionManagerCustomizers.ifAvailable(customizers -> customizers.customize(transactionManager));
+    return transactionManager;
+  }
+
+}
@@ -1,11 +1,23 @@
 package me.konoplev.isolation.util;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.*;
 
 @Service
 public class TransactionsWrapper {
 
+  private final AdvisoryLocks advisoryLocks;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  public TransactionsWrapper(AdvisoryLocks advisoryLocks) {
+    this.advisoryLocks = advisoryLocks;
+  }
+
   @Transactional(isolation = Isolation.SERIALIZABLE, propagation = Propagation.REQUIRES_NEW)
   public void serializableFallible(FallibleFunction execute) throws Exception {
     execute.run();
@@ -31,6 +43,17 @@ public class TransactionsWrapper {
     execute.run();
   }
 
+  /**
+   * A read committed transaction that runs after all others locking the same key have ended, see {@link AdvisoryLocks}.
+   * Transactions that check an invariant over several rows of the key can't interleave, without the aborts
+   * of {@link #serializable(Runnable)}.
+   */
+  @Transactional(isolation = Isolation.READ_COMMITTED, propagation = Propagation.REQUIRES_NEW)
+  public void readCommittedLocked(long lockKey, Runnable execute) {
+    advisoryLocks.lock(lockKey);
+    execute.run();
+  }
+
   @Transactional(isolation = Isolation.READ_UNCOMMITTED, propagation = Propagation.REQUIRES_NEW)
   public void readUncommittedFallible(FallibleFunction execute) throws Exception {
     execute.run();
@@ -41,6 +64,25 @@ public class TransactionsWrapper {
     execute.run();
   }
 
+  /**
+   * Runs in a savepoint of the current transaction, on its connection, or in a new transaction if there is none.
+   * A failure rolls back to the savepoint only and the caller's transaction goes on. Unlike {@code REQUIRES_NEW}
+   * it doesn't suspend the caller's transaction and takes no second connection from the pool.
+   * The work runs in a session of its own, see {@link JpaSavepoints} for what that means for entities loaded before.
+   */
+  @Transactional(propagation = Propagation.NESTED, rollbackFor = Exception.class)
+  public void nestedFallible(FallibleFunction execute) throws Exception {
+    execute.run();
+    // a failing flush has to happen before the savepoint is released to be rolled back with it
+    entityManager.flush();
+  }
+
+  @Transactional(propagation = Propagation.NESTED)
+  public void nested(Runnable execute) {
+    execute.run();
+    entityManager.flush();
+  }
+
   @FunctionalInterface
   public interface FallibleFunction {
     void run() throws Exception;
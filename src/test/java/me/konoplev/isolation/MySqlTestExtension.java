@@ -1,6 +1,9 @@
 package me.konoplev.isolation;
 
+import javax.sql.DataSource;
+
 import org.junit.jupiter.api.extension.*;
+import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.boot.test.util.TestPropertyValues;
 import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.ConfigurableApplicationContext;
@@ -34,11 +37,25 @@ public class MySqlTestExtension implements BeforeAllCallback, AfterAllCallback {
         .withUsername(DB_USERNAME)
         .withPassword(DB_PASSWORD)
         .withExposedPorts(DB_PORT)
+        // BulkSeeder streams rows with "load data local infile"
+        .withCommand("--local-infile=1")
+        .withUrlParam("allowLoadLocalInfile", "true")
         .withReuse(false);
 
     container.start();
   }
 
+  /**
+   * For tests that use the database without a Spring context, e.g. next to another database.
+   */
+  public static DataSource dataSource() {
+    return DataSourceBuilder.create()
+        .url(container.getJdbcUrl())
+        .username(container.getUsername())
+        .password(container.getPassword())
+        .build();
+  }
+
   public static class Initializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
     @Override
     public void initialize(ConfigurableApplicationContext configurableApplicationContext) {
@@ -46,6 +63,8 @@ public class MySqlTestExtension implements BeforeAllCallback, AfterAllCallback {
           "spring.datasource.url=" + container.getJdbcUrl(),
           "spring.datasource.username=" + container.getUsername(),
           "spring.datasource.password=" + container.getPassword(),
+          // the MariaDB driver is the R2DBC driver for MySQL managed by Spring Boot
+          "isolation.r2dbc.url=r2dbc:mariadb://" + container.getHost() + ":" + container.getMappedPort(DB_PORT) + "/" + DB_NAME,
           "spring.jpa.database-platform=" + "org.hibernate.dialect.MySQL5InnoDBDialect"
                            ).applyTo(configurableApplicationContext.getEnvironment());
     }
@@ -1,6 +1,9 @@
 package me.konoplev.isolation;
 
+import javax.sql.DataSource;
+
 import org.junit.jupiter.api.extension.*;
+import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.boot.test.util.TestPropertyValues;
 import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.ConfigurableApplicationContext;
@@ -28,11 +31,24 @@ public class PostgresTestExtension implements BeforeAllCallback, AfterAllCallbac
         .withUsername(DB_USERNAME)
         .withPassword(DB_PASSWORD)
         .withExposedPorts(DB_PORT)
+        // ChangeStream reads the changes by logical replication
+        .withCommand("postgres", "-c", "fsync=off", "-c", "wal_level=logical")
         .withReuse(false);
 
     container.start();
   }
 
+  /**
+   * For tests that use the database without a Spring context, e.g. next to another database.
+   */
+  public static DataSource dataSource() {
+    return DataSourceBuilder.create()
+        .url(container.getJdbcUrl())
+        .username(container.getUsername())
+        .password(container.getPassword())
+        .build();
+  }
+
   public static class Initializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
     @Override
     public void initialize(ConfigurableApplicationContext configurableApplicationContext) {
@@ -40,6 +56,7 @@ public class PostgresTestExtension implements BeforeAllCallback, AfterAllCallbac
           "spring.datasource.url=" + container.getJdbcUrl(),
           "spring.datasource.username=" + container.getUsername(),
           "spring.datasource.password=" + container.getPassword(),
+          "isolation.r2dbc.url=r2dbc:postgresql://" + container.getHost() + ":" + container.getMappedPort(DB_PORT) + "/" + DB_NAME,
           "spring.jpa.properties.hibernate.dialect=" + "org.hibernate.dialect.PostgreSQLDialect"
                            ).applyTo(configurableApplicationContext.getEnvironment());
     }
@@ -0,0 +1,68 @@
+package me.konoplev.isolation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the same operation from several threads at once and measures how many operations per second were done.
+ */
+public final class Throughput {
+
+  private Throughput() {
+  }
+
+  public static Result measure(int threads, int operationsPerThread, Operation operation) {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicLong failures = new AtomicLong();
+    List<Future<?>> workers = new ArrayList<>();
+    try {
+      for (int thread = 0; thread < threads; thread++) {
+        int threadNumber = thread;
+        workers.add(executor.submit(() -> {
+          start.await();
+          for (int i = 0; i < operationsPerThread; i++) {
+            try {
+              operation.run(threadNumber, i);
+            } catch (Exception e) {
+              failures.incrementAndGet();
+            }
+          }
+          return null;
+        }));
+      }
+      long startedAt = System.nanoTime();
+      start.countDown();
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+      return new Result((long) threads * operationsPerThread, failures.get(), Duration.ofNanos(System.nanoTime() - startedAt));
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @FunctionalInterface
+  public interface Operation {
+    void run(int thread, int iteration) throws Exception;
+  }
+
+  public record Result(long operations, long failures, Duration elapsed) {
+
+    public double operationsPerSecond() {
+      return (operations - failures) * 1_000_000_000.0 / elapsed.toNanos();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d operations, %d failed, %d ms, %.0f ops/s",
+          operations, failures, elapsed.toMillis(), operationsPerSecond());
+    }
+  }
+
+}
@@ -0,0 +1,172 @@
+package me.konoplev.isolation.adaptive;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.Throughput;
+import me.konoplev.isolation.repository.AccountRepository;
+import me.konoplev.isolation.repository.dto.Account;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@PostgresTest
+@TestPropertySource(properties = {
+    "isolation.adaptive.exploration-period=3",
+    "isolation.adaptive.max-attempts=100"
+})
+class AdaptiveTransactionsTest {
+
+  private static final TransactionClass WITHDRAWAL = new TransactionClass("withdrawal", Anomaly.WRITE_SKEW);
+  private static final int THREADS = 8;
+  private static final int WITHDRAWALS_PER_THREAD = 50;
+
+  @Autowired
+  private AdaptiveTransactions adaptiveTransactions;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @Test
+  public void everyStrategyKeepsTheInvariantOfWithdrawals() {
+    //given
+    createAccount(1, 100);
+    createAccount(2, 100);
+
+    //when
+    var withdrawn = new AtomicLong();
+    var result = Throughput.measure(THREADS, WITHDRAWALS_PER_THREAD, (thread, iteration) -> {
+      if (adaptiveTransactions.execute(WITHDRAWAL, accounts -> withdrawIfAllowed(accounts, 1 + thread % 2, 1))) {
+        withdrawn.incrementAndGet();
+      }
+    });
+
+    //then
+    System.out.println("Adaptive withdrawals: " + result + ", " + adaptiveTransactions.currentStrategy(WITHDRAWAL)
+        + " is in use");
+    assertThat(result.failures(), is(0L));
+    assertThat(withdrawn.get(), is(200L));
+    assertThat(amount(1) + amount(2), is(0));
+    for (Strategy strategy : Strategy.values()) {
+      assertThat(meterRegistry.get("isolation.adaptive.transactions")
+          .tags("class", "withdrawal", "strategy", strategy.name(), "outcome", "committed").timer().count(), greaterThan(0L));
+    }
+    assertThat(meterRegistry.get("isolation.adaptive.selected").tags("class", "withdrawal").gauges().stream()
+        .mapToDouble(gauge -> gauge.value()).sum(), is(1.0));
+  }
+
+  @Test
+  public void writeSkewFailingAtTheCommitIsRetried() throws Exception {
+    //given
+    var transactionClass = new TransactionClass("commit-failure", Anomaly.WRITE_SKEW);
+    createAccount(1, 50);
+    createAccount(2, 50);
+    var bothRead = new CyclicBarrier(2);
+    var secondWritten = new CountDownLatch(1);
+    var firstCommitted = new CountDownLatch(1);
+    var secondAttempts = new AtomicInteger();
+
+    //when
+    // the first two transactions of a class are serializable. Both read both accounts and write before either
+    // commits, so Postgres finds the write skew only when the second one commits
+    var first = supplyAsync(() -> adaptiveTransactions.execute(transactionClass, accounts -> {
+      accounts.amount(1);
+      await(bothRead);
+      boolean withdrawn = withdrawIfAllowed(accounts, 1, 100);
+      await(secondWritten);
+      return withdrawn;
+    }));
+    var second = supplyAsync(() -> adaptiveTransactions.execute(transactionClass, accounts -> {
+      if (secondAttempts.incrementAndGet() > 1) {
+        return withdrawIfAllowed(accounts, 2, 100);
+      }
+      accounts.amount(1);
+      await(bothRead);
+      boolean withdrawn = withdrawIfAllowed(accounts, 2, 100);
+      secondWritten.countDown();
+      await(firstCommitted);
+      return withdrawn;
+    }));
+    boolean firstWithdrawn = first.get();
+    firstCommitted.countDown();
+    boolean secondWithdrawn = second.get();
+
+    //then
+    assertThat(firstWithdrawn, is(true));
+    assertThat(secondWithdrawn, is(false));
+    assertThat(secondAttempts.get(), is(2));
+    assertThat(amount(1) + amount(2), is(0));
+    assertThat(meterRegistry.get("isolation.adaptive.aborts")
+        .tags("class", "commit-failure", "strategy", Strategy.SERIALIZABLE.name()).counter().count(), is(1.0));
+  }
+
+  private static void await(CyclicBarrier barrier) {
+    try {
+      barrier.await();
+    } catch (InterruptedException | BrokenBarrierException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static boolean withdrawIfAllowed(Accounts accounts, int accountId, int amount) {
+    if (accounts.amount(1) + accounts.amount(2) < amount) {
+      return false;
+    }
+    accounts.setAmount(accountId, accounts.amount(accountId) - amount);
+    return true;
+  }
+
+  private void createAccount(int id, int amount) {
+    var account = new Account();
+    account.setId(id);
+    account.setAmount(amount);
+    accountRepository.saveAndFlush(account);
+  }
+
+  private int amount(int id) {
+    return accountRepository.findById(id).map(Account::getAmount).orElseThrow();
+  }
+
+  @TestConfiguration
+  static class MeterRegistryConfiguration {
+
+    @Bean
+    public MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+  }
+
+}
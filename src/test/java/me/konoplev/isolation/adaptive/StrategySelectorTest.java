@@ -0,0 +1,95 @@
+package me.konoplev.isolation.adaptive;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class StrategySelectorTest {
+
+  @Test
+  public void otherStrategiesAreTriedPeriodically() {
+    //given
+    var selector = new StrategySelector(5, 0.5);
+
+    //when
+    List<Strategy> selected = new ArrayList<>();
+    for (int i = 0; i < 15; i++) {
+      Strategy strategy = selector.next();
+      selected.add(strategy);
+      selector.observe(strategy, Duration.ofMillis(strategy == Strategy.SERIALIZABLE ? 1 : 10), 0, true);
+    }
+
+    //then
+    assertThat(selected.get(4), is(Strategy.SELECT_FOR_UPDATE));
+    assertThat(selected.get(9), is(Strategy.OPTIMISTIC));
+    assertThat(selected.get(14), is(Strategy.SELECT_FOR_UPDATE));
+    assertThat(selected.stream().filter(strategy -> strategy == Strategy.SERIALIZABLE).count(), is(12L));
+    assertThat(selector.current(), is(Strategy.SERIALIZABLE));
+  }
+
+  @Test
+  public void cheapestStrategyIsChosen() {
+    //given
+    var selector = new StrategySelector(2, 0.5);
+
+    //when
+    run(selector, 100, Map.of(
+        Strategy.SERIALIZABLE, new Observation(Duration.ofMillis(10), 2),
+        Strategy.SELECT_FOR_UPDATE, new Observation(Duration.ofMillis(2), 0),
+        Strategy.OPTIMISTIC, new Observation(Duration.ofMillis(5), 1)));
+
+    //then
+    assertThat(selector.current(), is(Strategy.SELECT_FOR_UPDATE));
+    assertThat(selector.costSeconds(Strategy.SELECT_FOR_UPDATE), closeTo(0.002, 0.0001));
+    assertThat(selector.abortRate(Strategy.SERIALIZABLE), closeTo(2.0 / 3, 0.01));
+  }
+
+  @Test
+  public void strategyAbortingTooOftenIsNotChosenEvenIfCheaper() {
+    //given
+    var selector = new StrategySelector(2, 0.5);
+
+    //when
+    run(selector, 100, Map.of(
+        Strategy.SERIALIZABLE, new Observation(Duration.ofMillis(10), 0),
+        Strategy.SELECT_FOR_UPDATE, new Observation(Duration.ofMillis(20), 0),
+        Strategy.OPTIMISTIC, new Observation(Duration.ofMillis(5), 4)));
+
+    //then
+    assertThat(selector.current(), is(Strategy.SERIALIZABLE));
+    assertThat(selector.abortRate(Strategy.OPTIMISTIC), greaterThan(0.5));
+  }
+
+  @Test
+  public void slightlyCheaperStrategyDoesNotReplaceTheCurrentOne() {
+    //given
+    var selector = new StrategySelector(2, 0.5);
+
+    //when
+    run(selector, 100, Map.of(
+        Strategy.SERIALIZABLE, new Observation(Duration.ofMillis(10), 0),
+        Strategy.SELECT_FOR_UPDATE, new Observation(Duration.ofMillis(9), 0),
+        Strategy.OPTIMISTIC, new Observation(Duration.ofMillis(11), 0)));
+
+    //then
+    assertThat(selector.current(), is(Strategy.SERIALIZABLE));
+  }
+
+  private static void run(StrategySelector selector, int transactions, Map<Strategy, Observation> observations) {
+    for (int i = 0; i < transactions; i++) {
+      Strategy strategy = selector.next();
+      Observation observation = observations.get(strategy);
+      selector.observe(strategy, observation.elapsed(), observation.aborts(), true);
+    }
+  }
+
+  private record Observation(Duration elapsed, int aborts) {
+  }
+
+}
@@ -0,0 +1,152 @@
+package me.konoplev.isolation.balance;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.Throughput;
+import me.konoplev.isolation.repository.AccountRepository;
+import me.konoplev.isolation.repository.dto.Account;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import me.konoplev.isolation.util.TransactionsWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@PostgresTest
+@TestPropertySource(properties = "isolation.balance-cache.max-staleness=1m")
+class BalanceCacheTest {
+
+  private static final int HOT_ACCOUNT_ID = 1;
+  private static final int READERS = 1_000;
+  private static final int READS_PER_READER = 20;
+
+  @Autowired
+  private BalanceCache balanceCache;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Autowired
+  private TransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+    balanceCache.invalidateAll();
+  }
+
+  @Test
+  public void concurrentReadersOfAHotAccountShareQueries() {
+    //given
+    createAccount(HOT_ACCOUNT_ID, 100);
+
+    //when
+    var uncached = Throughput.measure(READERS, READS_PER_READER,
+        (thread, iteration) -> accountRepository.findAmountById(HOT_ACCOUNT_ID).orElseThrow());
+    long loadsBefore = balanceCache.loads();
+    var cached = Throughput.measure(READERS, READS_PER_READER,
+        (thread, iteration) -> balanceCache.balance(HOT_ACCOUNT_ID).orElseThrow());
+    long loads = balanceCache.loads() - loadsBefore;
+
+    //then
+    System.out.println("Uncached: " + uncached + ", " + READERS * READS_PER_READER + " queries");
+    System.out.println("Cached: " + cached + ", " + loads + " queries");
+    assertThat(uncached.failures(), is(0L));
+    assertThat(cached.failures(), is(0L));
+    assertThat(loads, lessThanOrEqualTo(10L));
+  }
+
+  @Test
+  public void uncommittedWriteIsNotSeenAndCommittedOneIsSeenAtOnce() throws InterruptedException {
+    //given
+    createAccount(HOT_ACCOUNT_ID, 100);
+    assertThat(balanceCache.balance(HOT_ACCOUNT_ID), is(Optional.of(100)));
+    var written = new CountDownLatch(1);
+    var commit = new CountDownLatch(1);
+
+    //when
+    var writer = runAsync(() -> transactionsWrapper.readCommitted(() -> {
+      accountRepository.updateAmount(HOT_ACCOUNT_ID, 50);
+      written.countDown();
+      try {
+        commit.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }));
+    written.await();
+    var beforeCommit = balanceCache.balance(HOT_ACCOUNT_ID);
+    balanceCache.invalidate(HOT_ACCOUNT_ID);
+    var reloadedBeforeCommit = balanceCache.balance(HOT_ACCOUNT_ID);
+    commit.countDown();
+    writer.join();
+
+    //then
+    assertThat(beforeCommit, is(Optional.of(100)));
+    assertThat(reloadedBeforeCommit, is(Optional.of(100)));
+    assertThat(balanceCache.balance(HOT_ACCOUNT_ID), is(Optional.of(50)));
+  }
+
+  @Test
+  public void readerInATransactionSeesItsOwnWriteWithoutPublishingIt() {
+    //given
+    createAccount(HOT_ACCOUNT_ID, 100);
+    balanceCache.balance(HOT_ACCOUNT_ID);
+
+    //when
+    var seenInTransaction = new AtomicReference<Optional<Integer>>();
+    var seenOutside = new AtomicReference<Optional<Integer>>();
+    transactionsWrapper.readCommitted(() -> {
+      accountRepository.updateAmount(HOT_ACCOUNT_ID, 70);
+      seenInTransaction.set(balanceCache.balance(HOT_ACCOUNT_ID));
+      seenOutside.set(supplyAsync(() -> balanceCache.balance(HOT_ACCOUNT_ID)).join());
+    });
+
+    //then
+    assertThat(seenInTransaction.get(), is(Optional.of(70)));
+    assertThat(seenOutside.get(), is(Optional.of(100)));
+    assertThat(balanceCache.balance(HOT_ACCOUNT_ID), is(Optional.of(70)));
+  }
+
+  @Test
+  public void accountThatBecomesHotAfterTheCacheFilledUpIsCached() throws InterruptedException {
+    //given
+    int maxSize = 3;
+    var smallCache = new BalanceCache(accountRepository, Duration.ofMillis(100), maxSize);
+    for (int id = 1; id <= maxSize + 2; id++) {
+      createAccount(id, 100);
+      smallCache.balance(id);
+    }
+    Thread.sleep(150);
+    int newHotAccountId = maxSize + 3;
+    createAccount(newHotAccountId, 100);
+
+    //when
+    smallCache.balance(newHotAccountId);
+    long loadsBefore = smallCache.loads();
+    smallCache.balance(newHotAccountId);
+
+    //then
+    assertThat(smallCache.loads(), is(loadsBefore));
+  }
+
+  private void createAccount(int id, int amount) {
+    var account = new Account();
+    account.setId(id);
+    account.setAmount(amount);
+    accountRepository.saveAndFlush(account);
+  }
+
+}
@@ -0,0 +1,149 @@
+package me.konoplev.isolation.balance;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.Throughput;
+import me.konoplev.isolation.repository.AccountRepository;
+import me.konoplev.isolation.repository.dto.Account;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import me.konoplev.isolation.util.TransactionsWrapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@PostgresTest
+class LedgerBalancesTest {
+
+  @Autowired
+  private LedgerBalances ledgerBalances;
+
+  @Autowired
+  private LedgerAggregator ledgerAggregator;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Autowired
+  private TransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @AfterEach
+  public void stopAggregation() {
+    ledgerAggregator.stop();
+  }
+
+  @Test
+  public void notFoldedEntriesAreVisibleInTheBalance() {
+    //given
+    createAccount(1, 100);
+    createAccount(2, 0);
+
+    //when
+    transactionsWrapper.readCommitted(() -> ledgerBalances.transfer(1, 2, 30));
+
+    //then
+    assertThat(amount(1), is(100));
+    assertThat(ledgerBalances.balance(1), is(Optional.of(70L)));
+    assertThat(ledgerBalances.balance(2), is(Optional.of(30L)));
+  }
+
+  @Test
+  public void foldMovesEntriesIntoTheAmount() {
+    //given
+    createAccount(1, 100);
+    createAccount(2, 0);
+    transactionsWrapper.readCommitted(() -> ledgerBalances.transfer(1, 2, 30));
+    transactionsWrapper.readCommitted(() -> ledgerBalances.transfer(2, 1, 10));
+
+    //when
+    long folded = ledgerAggregator.foldAll(3);
+
+    //then
+    assertThat(folded, is(4L));
+    assertThat(amount(1), is(80));
+    assertThat(amount(2), is(20));
+    assertThat(ledgerBalances.balance(1), is(Optional.of(80L)));
+    assertThat(jdbcTemplate.queryForObject("select count(*) from account_ledger", Long.class), is(0L));
+  }
+
+  @Test
+  public void entriesOfUnknownAccountsDoNotBlockFolding() {
+    //given
+    createAccount(1, 0);
+    transactionsWrapper.readCommitted(() -> ledgerBalances.append(42, 5));
+    transactionsWrapper.readCommitted(() -> ledgerBalances.append(1, 5));
+
+    //when
+    ledgerAggregator.foldAll(1);
+
+    //then
+    assertThat(amount(1), is(5));
+    assertThat(jdbcTemplate.queryForObject("select count(*) from account_ledger", Long.class), is(1L));
+    assertThat(ledgerBalances.orphanedEntries(), is(1L));
+  }
+
+  @Test
+  public void balanceIsConsistentWhileAggregatorIsRunning() {
+    //given
+    createAccount(1, 0);
+    ledgerAggregator.start(Duration.ofMillis(5), 100);
+
+    //when
+    var result = Throughput.measure(16, 100,
+        (thread, iteration) -> transactionsWrapper.readCommitted(() -> ledgerBalances.append(1, 1)));
+    ledgerAggregator.foldAll(100);
+
+    //then
+    System.out.println("Ledger appends: " + result);
+    assertThat(result.failures(), is(0L));
+    assertThat(amount(1), is(1600));
+  }
+
+  @Test
+  public void appendThroughputComparedToInPlaceUpdates() {
+    //given
+    createAccount(1, 0);
+
+    //when
+    var inPlace = Throughput.measure(16, 100, (thread, iteration) -> transactionsWrapper.readCommitted(() ->
+        jdbcTemplate.update("update account set amount = amount + 1 where id = 1")));
+    var ledger = Throughput.measure(16, 100, (thread, iteration) -> transactionsWrapper.readCommitted(() ->
+        ledgerBalances.append(1, 1)));
+
+    //then
+    System.out.println("In place updates: " + inPlace);
+    System.out.println("Ledger appends: " + ledger);
+    assertThat(ledgerBalances.balance(1), is(Optional.of(3200L)));
+  }
+
+  private void createAccount(int id, int amount) {
+    transactionsWrapper.readCommitted(() -> {
+      var account = new Account();
+      account.setId(id);
+      account.setAmount(amount);
+      accountRepository.saveAndFlush(account);
+    });
+  }
+
+  private int amount(int id) {
+    return accountRepository.findById(id).map(Account::getAmount).orElseThrow();
+  }
+
+}
@@ -0,0 +1,163 @@
+package me.konoplev.isolation.balance;
+
+import java.lang.management.ManagementFactory;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.repository.AccountRepository;
+import me.konoplev.isolation.repository.dto.Account;
+import me.konoplev.isolation.seed.BulkSeeder;
+import me.konoplev.isolation.seed.SeedDistribution;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import me.konoplev.isolation.util.TransactionsWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@PostgresTest
+@TestPropertySource(properties = "isolation.local-balances.enabled=true")
+class LocalBalancesTest {
+
+  private static final int READS = 10_000_000;
+
+  @Autowired
+  private LocalBalances localBalances;
+
+  @Autowired
+  private BulkSeeder bulkSeeder;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Autowired
+  private TransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+    localBalances.reload();
+  }
+
+  @Test
+  public void millionsOfBalancesAreReadWithoutAllocating() {
+    //given
+    var seeded = bulkSeeder.seed(SeedDistribution.uniform(2_000_000, 1, 1000));
+    localBalances.reload();
+    int accounts = (int) seeded.accounts();
+
+    //when
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long allocatedBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    long startedAt = System.nanoTime();
+    long sum = 0;
+    var random = ThreadLocalRandom.current();
+    for (int i = 0; i < READS; i++) {
+      sum += localBalances.amountOrDefault(1 + random.nextInt(accounts), -1);
+    }
+    long elapsed = System.nanoTime() - startedAt;
+    long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+
+    //then
+    System.out.println(accounts + " balances, " + localBalances.offHeapBytes() / (1024 * 1024) + " MiB off heap, "
+        + elapsed / READS + " ns per read, " + allocated + " bytes allocated for " + READS + " reads");
+    assertThat(localBalances.size(), is(accounts));
+    assertThat(sum, greaterThanOrEqualTo(0L));
+    assertThat(allocated, lessThan(1024L * 1024));
+  }
+
+  @Test
+  public void committedWritesAreAppliedAndUncommittedAreNot() {
+    //given
+    createAccount(1, 100);
+    createAccount(2, 100);
+
+    //when
+    var duringTransaction = new AtomicReference<OptionalInt>();
+    transactionsWrapper.readCommitted(() -> {
+      accountRepository.updateAmount(1, 50);
+      duringTransaction.set(localBalances.amount(1));
+    });
+    var afterCommit = localBalances.amount(1);
+    assertThrows(IllegalStateException.class, () -> transactionsWrapper.readCommitted(() -> {
+      accountRepository.updateAmount(2, 0);
+      throw new IllegalStateException("rolled back");
+    }));
+    accountRepository.deleteById(1);
+
+    //then
+    assertThat(duringTransaction.get(), is(OptionalInt.of(100)));
+    assertThat(afterCommit, is(OptionalInt.of(50)));
+    assertThat(localBalances.amount(1), is(OptionalInt.empty()));
+    assertThat(localBalances.amount(2), is(OptionalInt.of(100)));
+  }
+
+  @Test
+  public void concurrentSavesOfAnAccountEndWithTheLastCommitted() throws Exception {
+    //given
+    createAccount(1, 100);
+    var firstFlushed = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+
+    //when
+    // the first save is flushed and holds the row lock until released
+    var first = runAsync(() -> transactionsWrapper.readCommitted(() -> {
+      saveAmount(1, 300);
+      accountRepository.flush();
+      firstFlushed.countDown();
+      await(release);
+    }));
+    firstFlushed.await();
+    // the second one is flushed by its commit, which waits for the lock
+    var second = runAsync(() -> transactionsWrapper.readCommitted(() -> saveAmount(1, 200)));
+    while (jdbcTemplate.queryForObject("select count(*) from pg_locks where not granted", Integer.class) == 0) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    release.countDown();
+    first.get();
+    second.get();
+
+    //then
+    assertThat(accountRepository.findAmountById(1), is(Optional.of(200)));
+    assertThat(localBalances.amount(1), is(OptionalInt.of(200)));
+  }
+
+  private void saveAmount(int id, int amount) {
+    var account = accountRepository.findById(id).orElseThrow();
+    account.setAmount(amount);
+    accountRepository.save(account);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void createAccount(int id, int amount) {
+    var account = new Account();
+    account.setId(id);
+    account.setAmount(amount);
+    accountRepository.saveAndFlush(account);
+  }
+
+}
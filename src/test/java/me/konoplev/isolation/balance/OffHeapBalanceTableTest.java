@@ -0,0 +1,95 @@
+package me.konoplev.isolation.balance;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class OffHeapBalanceTableTest {
+
+  @Test
+  public void laterWriteWinsWhateverOrderItArrivesIn() {
+    //given
+    var table = new OffHeapBalanceTable(16);
+
+    //when
+    table.put(1, 100, 1);
+    table.put(1, 300, 3);
+    table.put(1, 200, 2);
+    table.put(-5, -7, 1);
+
+    //then
+    assertThat(table.amount(1), is(300L));
+    assertThat(table.amount(-5), is(-7L));
+    assertThat(table.amount(2), is(OffHeapBalanceTable.ABSENT));
+  }
+
+  @Test
+  public void removedAccountIsNotBroughtBackByAnOlderWrite() {
+    //given
+    var table = new OffHeapBalanceTable(16);
+    table.put(1, 100, 1);
+
+    //when
+    table.remove(1, 3);
+    table.put(1, 200, 2);
+
+    //then
+    assertThat(table.amount(1), is(OffHeapBalanceTable.ABSENT));
+    assertThat(table.size(), is(0));
+  }
+
+  @Test
+  public void tableGrowsKeepingTheAmounts() {
+    //given
+    var table = new OffHeapBalanceTable(16);
+
+    //when
+    for (int id = 0; id < 100_000; id++) {
+      table.put(id, id * 2, 1);
+    }
+
+    //then
+    assertThat(table.size(), is(100_000));
+    for (int id = 0; id < 100_000; id++) {
+      assertThat(table.amount(id), is(id * 2L));
+    }
+  }
+
+  @Test
+  public void readersSeeAmountsOfTheIdsTheyAskedFor() {
+    //given
+    var table = new OffHeapBalanceTable(16);
+    var stop = new AtomicBoolean();
+    var wrongReads = new AtomicLong();
+    // amount = id * 1000 + version, a torn read would return an amount of another id
+    var reader = runAsync(() -> {
+      while (!stop.get()) {
+        for (int id = 0; id < 1_000; id++) {
+          long amount = table.amount(id);
+          if (amount != OffHeapBalanceTable.ABSENT && amount / 1000 != id) {
+            wrongReads.incrementAndGet();
+          }
+        }
+      }
+    });
+
+    //when
+    for (int version = 1; version < 100; version++) {
+      for (int id = 0; id < 1_000; id++) {
+        table.put(id, id * 1000 + version, version);
+      }
+    }
+    stop.set(true);
+    reader.join();
+
+    //then
+    assertThat(wrongReads.get(), is(0L));
+    assertThat(table.amount(999), is(999_099L));
+  }
+
+}
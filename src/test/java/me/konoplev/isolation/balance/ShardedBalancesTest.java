@@ -0,0 +1,141 @@
+package me.konoplev.isolation.balance;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.Throughput;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import me.konoplev.isolation.util.TransactionsWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@PostgresTest
+class ShardedBalancesTest {
+
+  private static final int HOT_ACCOUNT_ID = 1;
+
+  @Autowired
+  private ShardedBalances shardedBalances;
+
+  @Autowired
+  private TransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+    shardedBalances.setShardSelection(ShardSelection.RANDOM);
+  }
+
+  @Test
+  public void balanceIsTheSumOfShards() {
+    //given
+    shardedBalances.createAccount(HOT_ACCOUNT_ID, 8, 100);
+
+    //when
+    for (int i = 0; i < 20; i++) {
+      transactionsWrapper.readCommitted(() -> shardedBalances.deposit(HOT_ACCOUNT_ID, 10));
+    }
+
+    //then
+    assertThat(shardedBalances.balance(HOT_ACCOUNT_ID), is(300L));
+  }
+
+  @Test
+  public void withdrawBorrowsAcrossShards() {
+    //given
+    shardedBalances.createAccount(HOT_ACCOUNT_ID, 4, 0);
+    for (int i = 0; i < 10; i++) {
+      // deposits are spread randomly, so no shard is likely to have 90 on its own
+      transactionsWrapper.readCommitted(() -> shardedBalances.deposit(HOT_ACCOUNT_ID, 10));
+    }
+
+    //when
+    boolean[] withdrawn = new boolean[1];
+    transactionsWrapper.readCommitted(() -> withdrawn[0] = shardedBalances.withdraw(HOT_ACCOUNT_ID, 90));
+
+    //then
+    assertThat(withdrawn[0], is(true));
+    assertThat(shardedBalances.balance(HOT_ACCOUNT_ID), is(10L));
+  }
+
+  @Test
+  public void withdrawIsRejectedIfThereIsNotEnoughMoney() {
+    //given
+    shardedBalances.createAccount(HOT_ACCOUNT_ID, 4, 50);
+
+    //when
+    boolean[] withdrawn = new boolean[1];
+    transactionsWrapper.readCommitted(() -> withdrawn[0] = shardedBalances.withdraw(HOT_ACCOUNT_ID, 51));
+
+    //then
+    assertThat(withdrawn[0], is(false));
+    assertThat(shardedBalances.balance(HOT_ACCOUNT_ID), is(50L));
+  }
+
+  @Test
+  public void concurrentWithdrawalsBorrowingAcrossShardsDontDeadlock() {
+    //given
+    shardedBalances.createAccount(HOT_ACCOUNT_ID, 8, 0);
+    jdbcTemplate.update("update account_shard set amount = 100 where account_id = ?", HOT_ACCOUNT_ID);
+
+    //when
+    // no shard has 150 on its own, every withdrawal falls back to locking all shards
+    var result = Throughput.measure(8, 2,
+        (thread, iteration) -> transactionsWrapper.readCommitted(() -> shardedBalances.withdraw(HOT_ACCOUNT_ID, 150)));
+
+    //then
+    assertThat(result.failures(), is(0L));
+    assertThat(shardedBalances.balance(HOT_ACCOUNT_ID), is(50L));
+  }
+
+  @Test
+  public void shardCountIsReadAgainWhenAShardIsMissing() {
+    //given
+    shardedBalances.createAccount(HOT_ACCOUNT_ID, 8, 0);
+    transactionsWrapper.readCommitted(() -> shardedBalances.deposit(HOT_ACCOUNT_ID, 10));
+    // the account is left with a single shard behind the back of the cached count
+    jdbcTemplate.update("delete from account_shard where account_id = ? and shard > 0", HOT_ACCOUNT_ID);
+    jdbcTemplate.update("update account_shard set amount = 0 where account_id = ?", HOT_ACCOUNT_ID);
+
+    //when
+    for (int i = 0; i < 20; i++) {
+      transactionsWrapper.readCommitted(() -> shardedBalances.deposit(HOT_ACCOUNT_ID, 10));
+    }
+    boolean[] withdrawn = new boolean[1];
+    transactionsWrapper.readCommitted(() -> withdrawn[0] = shardedBalances.withdraw(HOT_ACCOUNT_ID, 50));
+
+    //then
+    assertThat(withdrawn[0], is(true));
+    assertThat(shardedBalances.balance(HOT_ACCOUNT_ID), is(150L));
+  }
+
+  @Test
+  public void writeThroughputPerNumberOfShards() {
+    final int threads = 16;
+    final int depositsPerThread = 100;
+    for (int shards = 1; shards <= 64; shards *= 2) {
+      //given
+      databaseCleaner.cleanUp();
+      shardedBalances.createAccount(HOT_ACCOUNT_ID, shards, 0);
+
+      //when
+      var result = Throughput.measure(threads, depositsPerThread,
+          (thread, iteration) -> transactionsWrapper.readCommitted(() -> shardedBalances.deposit(HOT_ACCOUNT_ID, 1)));
+
+      //then
+      System.out.println("K=" + shards + ": " + result);
+      assertThat(result.failures(), is(0L));
+      assertThat(shardedBalances.balance(HOT_ACCOUNT_ID), is((long) threads * depositsPerThread));
+    }
+  }
+
+}
@@ -0,0 +1,171 @@
+package me.konoplev.isolation.cdc;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import me.konoplev.isolation.MySqlTest;
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.balance.BalanceCache;
+import me.konoplev.isolation.cdc.ChangeEvent.Operation;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import me.konoplev.isolation.util.TransactionsWrapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Changes made by plain SQL, as another application node would make them, every nested class gets its own
+ * application context.
+ */
+class ChangeStreamTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  @Nested
+  @PostgresTest
+  @TestPropertySource(properties = {"isolation.cdc.enabled=true", "isolation.balance-cache.max-staleness=1m"})
+  class Postgres extends CommittedChanges {
+
+    @Test
+    public void changesMissedWhileReconnectingAreNotServedFromTheCache() throws InterruptedException {
+      //given
+      jdbcTemplate.update("insert into account (id, amount) values (1, 100)");
+      next();
+      assertThat(balanceCache.balance(1).orElseThrow(), is(100));
+
+      //when
+      jdbcTemplate.queryForList(
+          "select pg_terminate_backend(active_pid) from pg_replication_slots where slot_name like 'isolation_%'");
+      waitFor(() -> !changeStream.isConnected());
+      jdbcTemplate.update("update account set amount = 200 where id = 1");
+      waitFor(changeStream::isConnected);
+
+      //then
+      assertThat(balanceCache.balance(1).orElseThrow(), is(200));
+    }
+  }
+
+  @Nested
+  @MySqlTest
+  // reading the binlog needs replication privileges
+  @TestPropertySource(properties = {"isolation.cdc.enabled=true", "isolation.balance-cache.max-staleness=1m",
+      "isolation.cdc.username=root", "isolation.cdc.password=mysql"})
+  class MySql extends CommittedChanges {
+  }
+
+  abstract static class CommittedChanges {
+
+    private final BlockingQueue<List<ChangeEvent>> transactions = new LinkedBlockingQueue<>();
+    private final ChangeSubscriber subscriber = transactions::add;
+
+    @Autowired
+    protected ChangeStream changeStream;
+
+    @Autowired
+    protected BalanceCache balanceCache;
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionsWrapper transactionsWrapper;
+
+    @Autowired
+    private DatabaseCleaner databaseCleaner;
+
+    @BeforeEach
+    public void subscribe() throws InterruptedException {
+      waitFor(changeStream::isConnected);
+      changeStream.subscribe(subscriber);
+      databaseCleaner.cleanUp();
+      balanceCache.invalidateAll();
+      // the truncates of the clean up
+      while (transactions.poll(500, TimeUnit.MILLISECONDS) != null) {
+        transactions.clear();
+      }
+    }
+
+    @AfterEach
+    public void unsubscribe() {
+      changeStream.unsubscribe(subscriber);
+    }
+
+    @Test
+    public void transactionsArePassedOnInCommitOrder() throws InterruptedException {
+      //when
+      transactionsWrapper.readCommitted(() -> {
+        jdbcTemplate.update("insert into account (id, amount) values (1, 100)");
+        jdbcTemplate.update("update account set amount = 50 where id = 1");
+      });
+      jdbcTemplate.update("delete from account where id = 1");
+
+      //then
+      List<ChangeEvent> first = next();
+      List<ChangeEvent> second = next();
+      assertThat(first.stream().map(ChangeEvent::operation).toList(), contains(Operation.INSERT, Operation.UPDATE));
+      assertThat(first.get(0).table(), is("account"));
+      assertThat(first.get(0).id(), is(1));
+      assertThat(first.get(1).row(), hasEntry("amount", "50"));
+      assertThat(first.get(0).position(), is(first.get(1).position()));
+      assertThat(second.stream().map(ChangeEvent::operation).toList(), contains(Operation.DELETE));
+      assertThat(second.get(0).id(), is(1));
+      assertThat(second.get(0).position(), is(not(first.get(0).position())));
+      assertThat(changeStream.lastPosition(), is(second.get(0).position()));
+    }
+
+    @Test
+    public void cachedBalancesFollowChangesMadeElsewhere() throws InterruptedException {
+      //given
+      jdbcTemplate.update("insert into account (id, amount) values (1, 100)");
+      next();
+      assertThat(balanceCache.balance(1).orElseThrow(), is(100));
+
+      //when
+      jdbcTemplate.update("update account set amount = 200 where id = 1");
+      next();
+
+      //then
+      // subscriber beans are called before the ones subscribed later
+      assertThat(balanceCache.balance(1).orElseThrow(), is(200));
+    }
+
+    @Test
+    public void lagDropsToZeroOnceCaughtUp() throws InterruptedException {
+      //given
+      jdbcTemplate.update("insert into account (id, amount) values (1, 100)");
+
+      //when
+      next();
+
+      //then
+      assertThat(changeStream.lag(), is(lessThan(TIMEOUT)));
+      waitFor(() -> changeStream.lag().isZero());
+    }
+
+    protected List<ChangeEvent> next() throws InterruptedException {
+      List<ChangeEvent> changes = transactions.poll(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+      assertThat("no transaction within " + TIMEOUT, changes, is(notNullValue()));
+      return changes;
+    }
+
+    protected static void waitFor(BooleanSupplier condition) throws InterruptedException {
+      long deadline = System.nanoTime() + TIMEOUT.toNanos();
+      while (!condition.getAsBoolean()) {
+        assertThat("not reached within " + TIMEOUT, System.nanoTime(), is(lessThan(deadline)));
+        TimeUnit.MILLISECONDS.sleep(10);
+      }
+    }
+  }
+
+}
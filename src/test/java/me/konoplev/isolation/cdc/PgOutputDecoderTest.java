@@ -0,0 +1,196 @@
+package me.konoplev.isolation.cdc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import me.konoplev.isolation.cdc.ChangeEvent.Operation;
+import org.junit.jupiter.api.Test;
+import org.postgresql.replication.LogSequenceNumber;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class PgOutputDecoderTest {
+
+  private static final int ACCOUNT_OID = 16384;
+  private static final long COMMIT_LSN = 0x16B3748L;
+  private static final long END_LSN = 0x16B3778L;
+  // 2022-06-01T00:00:00Z in microseconds since 2000-01-01
+  private static final long COMMITTED_AT = 707_356_800_000_000L;
+
+  private final PgOutputDecoder decoder = new PgOutputDecoder();
+
+  @Test
+  public void changesArePassedOnAtTheCommit() throws IOException {
+    //given
+    decoder.decode(relation());
+
+    //when
+    var begin = decoder.decode(begin());
+    var insert = decoder.decode(insert(1, "100", "7"));
+    var update = decoder.decode(update(1, "50", null));
+    var committed = decoder.decode(commit());
+
+    //then
+    assertThat(begin, is(nullValue()));
+    assertThat(insert, is(nullValue()));
+    assertThat(update, is(nullValue()));
+    String position = LogSequenceNumber.valueOf(COMMIT_LSN).asString();
+    Instant committedAt = Instant.parse("2022-06-01T00:00:00Z");
+    assertThat(committed, contains(
+        new ChangeEvent("account", Operation.INSERT, Map.of("id", "1", "amount", "100", "user_id", "7"), position,
+            committedAt),
+        new ChangeEvent("account", Operation.UPDATE, Map.of("id", "1", "amount", "50"), position, committedAt)));
+    assertThat(committed.get(0).id(), is(1));
+    assertThat(decoder.endOfLastCommit(), is(LogSequenceNumber.valueOf(END_LSN)));
+  }
+
+  @Test
+  public void deletesAndTruncatesAreDecoded() throws IOException {
+    //given
+    decoder.decode(relation());
+    decoder.decode(begin());
+
+    //when
+    decoder.decode(delete(2));
+    decoder.decode(truncate());
+    List<ChangeEvent> committed = decoder.decode(commit());
+
+    //then
+    assertThat(committed.stream().map(ChangeEvent::operation).toList(),
+        contains(Operation.DELETE, Operation.TRUNCATE));
+    assertThat(committed.get(0).id(), is(2));
+    assertThat(committed.get(1).id(), is(nullValue()));
+  }
+
+  @Test
+  public void transactionsWithoutChangesArePassedOver() throws IOException {
+    //given
+    decoder.decode(relation());
+
+    //when
+    var begin = decoder.decode(begin());
+    var committed = decoder.decode(commit());
+
+    //then
+    assertThat(begin, is(nullValue()));
+    assertThat(committed, is(nullValue()));
+    assertThat(decoder.endOfLastCommit(), is(LogSequenceNumber.valueOf(END_LSN)));
+  }
+
+  private static ByteBuffer relation() throws IOException {
+    return message(out -> {
+      out.writeByte('R');
+      out.writeInt(ACCOUNT_OID);
+      writeString(out, "public");
+      writeString(out, "account");
+      // replica identity
+      out.writeByte('d');
+      out.writeShort(3);
+      for (String column : List.of("id", "amount", "user_id")) {
+        out.writeByte(column.equals("id") ? 1 : 0);
+        writeString(out, column);
+        // type oid and modifier
+        out.writeInt(23);
+        out.writeInt(-1);
+      }
+    });
+  }
+
+  private static ByteBuffer begin() throws IOException {
+    return message(out -> {
+      out.writeByte('B');
+      out.writeLong(COMMIT_LSN);
+      out.writeLong(COMMITTED_AT);
+      // xid
+      out.writeInt(735);
+    });
+  }
+
+  private static ByteBuffer commit() throws IOException {
+    return message(out -> {
+      out.writeByte('C');
+      // flags
+      out.writeByte(0);
+      out.writeLong(COMMIT_LSN);
+      out.writeLong(END_LSN);
+      out.writeLong(COMMITTED_AT);
+    });
+  }
+
+  private static ByteBuffer insert(int id, String amount, String userId) throws IOException {
+    return message(out -> {
+      out.writeByte('I');
+      out.writeInt(ACCOUNT_OID);
+      out.writeByte('N');
+      writeTuple(out, String.valueOf(id), amount, userId);
+    });
+  }
+
+  private static ByteBuffer update(int id, String amount, String userId) throws IOException {
+    return message(out -> {
+      out.writeByte('U');
+      out.writeInt(ACCOUNT_OID);
+      // the old key, sent as the key changed
+      out.writeByte('K');
+      writeTuple(out, String.valueOf(id), null, null);
+      out.writeByte('N');
+      writeTuple(out, String.valueOf(id), amount, userId);
+    });
+  }
+
+  private static ByteBuffer delete(int id) throws IOException {
+    return message(out -> {
+      out.writeByte('D');
+      out.writeInt(ACCOUNT_OID);
+      out.writeByte('K');
+      writeTuple(out, String.valueOf(id), null, null);
+    });
+  }
+
+  private static ByteBuffer truncate() throws IOException {
+    return message(out -> {
+      out.writeByte('T');
+      out.writeInt(1);
+      // options
+      out.writeByte(0);
+      out.writeInt(ACCOUNT_OID);
+    });
+  }
+
+  private static void writeTuple(DataOutputStream out, String... values) throws IOException {
+    out.writeShort(values.length);
+    for (String value : values) {
+      if (value == null) {
+        out.writeByte('n');
+      } else {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeByte('t');
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    out.write(value.getBytes(StandardCharsets.UTF_8));
+    out.writeByte(0);
+  }
+
+  private static ByteBuffer message(MessageWriter writer) throws IOException {
+    var bytes = new ByteArrayOutputStream();
+    writer.write(new DataOutputStream(bytes));
+    return ByteBuffer.wrap(bytes.toByteArray());
+  }
+
+  private interface MessageWriter {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+}
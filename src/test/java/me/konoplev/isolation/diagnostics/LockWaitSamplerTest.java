@@ -0,0 +1,84 @@
+package me.konoplev.isolation.diagnostics;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.repository.AccountRepository;
+import me.konoplev.isolation.repository.dto.Account;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import me.konoplev.isolation.util.PhaseSync;
+import me.konoplev.isolation.util.PhaseSync.Phases;
+import me.konoplev.isolation.util.TransactionsWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@PostgresTest
+class LockWaitSamplerTest {
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Autowired
+  private TransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @Autowired
+  private DataSource dataSource;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @Test
+  public void waitIsLinkedToThePhase() throws Exception {
+    //given
+    final int userAccountId = 1;
+    transactionsWrapper.readCommitted(() -> {
+      var account = new Account();
+      account.setAmount(0);
+      account.setId(userAccountId);
+      accountRepository.saveAndFlush(account);
+    });
+
+    //when
+    var phaseSync = new PhaseSync();
+    try (var sampler = LockWaitSampler.start(dataSource, Duration.ofMillis(5), phaseSync)) {
+      runAsync(() -> transactionsWrapper.readCommitted(() -> {
+        phaseSync.phase(Phases.FIRST, () -> accountRepository.updateAmount(userAccountId, 50));
+        // keep the row locked while the second transaction is waiting for it
+        sleep(300);
+      }));
+      runAsync(() -> transactionsWrapper.readCommitted(() ->
+          phaseSync.phase(Phases.SECOND, () -> accountRepository.updateAmount(userAccountId, 30))));
+      phaseSync.phase(Phases.THIRD, () -> {/* both transactions are done */});
+      sampler.stop();
+
+      //then
+      System.out.println(sampler.graph());
+      assertThat(phaseSync.exceptionDetails(), phaseSync.noExceptions(), is(true));
+      assertThat(sampler.lastError(), is(nullValue()));
+      var waits = sampler.graph().timeline().stream().filter(snapshot -> !snapshot.edges().isEmpty()).toList();
+      assertThat(waits, is(not(empty())));
+      assertThat(waits.get(0).phase(), is(Phases.SECOND));
+      assertThat(waits.get(0).edges().get(0).query(), containsString("update account"));
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
@@ -0,0 +1,103 @@
+package me.konoplev.isolation.diagnostics;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.repository.AccountRepository;
+import me.konoplev.isolation.repository.UserRepository;
+import me.konoplev.isolation.repository.dto.Account;
+import me.konoplev.isolation.repository.dto.User;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import me.konoplev.isolation.util.PhaseSync;
+import me.konoplev.isolation.util.PhaseSync.Phases;
+import me.konoplev.isolation.util.TransactionsWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@PostgresTest
+class PredicateLockSamplerTest {
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Autowired
+  private TransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @Autowired
+  private DataSource dataSource;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @Test
+  public void footprintOfWriteSkewIsCaptured() throws Exception {
+    //given
+    var user = new User();
+    user.setUserName("someName");
+    var account1 = new Account();
+    account1.setId(1);
+    account1.setUser(user);
+    account1.setAmount(40);
+    var account2 = new Account();
+    account2.setId(2);
+    account2.setUser(user);
+    account2.setAmount(50);
+    user.setAccounts(List.of(account1, account2));
+    userRepository.saveAndFlush(user);
+
+    //when
+    PhaseSync phaseSync = new PhaseSync();
+    try (var sampler = PredicateLockSampler.start(dataSource, Duration.ofMillis(5))) {
+      runAsync(() -> transactionsWrapper.serializable(() -> {
+        AtomicBoolean isWithdrawAllowed = new AtomicBoolean(false);
+        phaseSync.phase(Phases.FIRST, () -> isWithdrawAllowed.set(allowedToWithdraw(30)));
+        phaseSync.phase(Phases.THIRD, () -> withdraw(30, 1));
+      }));
+      runAsync(() -> transactionsWrapper.serializable(() -> {
+        AtomicBoolean isWithdrawAllowed = new AtomicBoolean(false);
+        phaseSync.phase(Phases.SECOND, () -> isWithdrawAllowed.set(allowedToWithdraw(30)));
+        // both transactions hold their SIRead locks now
+        phaseSync.phase(Phases.FOURTH, () -> Thread.sleep(50));
+      }));
+      phaseSync.phase(Phases.FIFTH, () -> {/*done with all phases*/});
+      sampler.stop();
+
+      //then
+      System.out.println(sampler.report());
+      assertThat(sampler.lastError(), is(nullValue()));
+      var account = sampler.report().relation("account").orElseThrow();
+      assertThat(account.transactions(), greaterThanOrEqualTo(2));
+      assertThat(account.sharedTargets(), is(not(anEmptyMap())));
+    }
+  }
+
+  private void withdraw(int moneyToWithdraw, int accountIdToWithdrawFrom) {
+    Integer newAmount = accountRepository.findById(accountIdToWithdrawFrom)
+        .map(Account::getAmount)
+        .map(amount -> amount - moneyToWithdraw)
+        .orElseThrow();
+    accountRepository.updateAmount(accountIdToWithdrawFrom, newAmount);
+  }
+
+  private boolean allowedToWithdraw(int amount) {
+    return accountRepository.findAllById(List.of(1, 2)).stream()
+        .mapToInt(Account::getAmount).sum() >= amount * 3;
+  }
+
+}
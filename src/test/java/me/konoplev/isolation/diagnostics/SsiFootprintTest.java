@@ -0,0 +1,103 @@
+package me.konoplev.isolation.diagnostics;
+
+import java.util.List;
+import java.util.Map;
+
+import me.konoplev.isolation.diagnostics.SsiFootprint.Escalation;
+import me.konoplev.isolation.diagnostics.SsiFootprint.Granularity;
+import me.konoplev.isolation.diagnostics.SsiFootprint.PredicateLock;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class SsiFootprintTest {
+
+  @Test
+  public void maxLocksArePerGranularity() {
+    // given
+    SsiFootprint footprint = new SsiFootprint();
+
+    // when
+    footprint.add(List.of(tuple("1/1", 0, 1), tuple("1/1", 0, 2)));
+    footprint.add(List.of(tuple("1/1", 0, 1), page("2/1", 3)));
+
+    // then
+    var account = footprint.report().relation("account").orElseThrow();
+    assertThat(account.transactions(), is(2));
+    assertThat(account.maxTupleLocks(), is(2));
+    assertThat(account.maxPageLocks(), is(1));
+    assertThat(account.maxRelationLocks(), is(0));
+    assertThat(account.pages(), contains(0, 3));
+  }
+
+  @Test
+  public void targetsLockedBySeveralTransactionsAreReported() {
+    // given
+    SsiFootprint footprint = new SsiFootprint();
+
+    // when
+    footprint.add(List.of(tuple("1/1", 0, 1), tuple("2/1", 0, 1), tuple("2/1", 0, 2)));
+
+    // then
+    var account = footprint.report().relation("account").orElseThrow();
+    assertThat(account.sharedTargets(), is(Map.of("tuple (0,1)", 2)));
+  }
+
+  @Test
+  public void tupleToPageEscalationIsDetected() {
+    // given
+    SsiFootprint footprint = new SsiFootprint();
+
+    // when
+    footprint.add(List.of(tuple("1/1", 5, 1), tuple("1/1", 5, 2)));
+    footprint.add(List.of(page("1/1", 5)));
+
+    // then
+    var account = footprint.report().relation("account").orElseThrow();
+    assertThat(account.escalations(), contains(new Escalation("1/1", Granularity.TUPLE, Granularity.PAGE, 5)));
+  }
+
+  @Test
+  public void pageToRelationEscalationIsDetected() {
+    // given
+    SsiFootprint footprint = new SsiFootprint();
+
+    // when
+    footprint.add(List.of(page("1/1", 1), page("1/1", 2)));
+    footprint.add(List.of(relation("1/1")));
+
+    // then
+    var account = footprint.report().relation("account").orElseThrow();
+    assertThat(account.escalations(), contains(new Escalation("1/1", Granularity.PAGE, Granularity.RELATION, null)));
+    assertThat(account.relationScans(), is(0));
+  }
+
+  @Test
+  public void relationLockWithoutFinerLocksIsAScan() {
+    // given
+    SsiFootprint footprint = new SsiFootprint();
+
+    // when
+    footprint.add(List.of(relation("1/1")));
+    footprint.add(List.of(relation("1/1")));
+
+    // then
+    var account = footprint.report().relation("account").orElseThrow();
+    assertThat(account.relationScans(), is(1));
+    assertThat(account.escalations(), is(empty()));
+  }
+
+  private PredicateLock tuple(String owner, int page, int tuple) {
+    return new PredicateLock(owner, "account", Granularity.TUPLE, page, tuple);
+  }
+
+  private PredicateLock page(String owner, int page) {
+    return new PredicateLock(owner, "account", Granularity.PAGE, page, null);
+  }
+
+  private PredicateLock relation(String owner) {
+    return new PredicateLock(owner, "account", Granularity.RELATION, null, null);
+  }
+
+}
@@ -0,0 +1,62 @@
+package me.konoplev.isolation.diagnostics;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import me.konoplev.isolation.diagnostics.WaitForGraph.WaitEdge;
+import me.konoplev.isolation.util.PhaseSync.Phases;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class WaitForGraphTest {
+
+  @Test
+  public void onlyChangesAreKeptInTheTimeline() {
+    // given
+    WaitForGraph graph = new WaitForGraph();
+    var wait = new WaitEdge(2, 1, "account", "update account");
+
+    // when
+    graph.add(Duration.ofMillis(1), Phases.FIRST, List.of());
+    graph.add(Duration.ofMillis(2), Phases.SECOND, List.of(wait));
+    graph.add(Duration.ofMillis(3), Phases.SECOND, List.of(wait));
+    graph.add(Duration.ofMillis(4), Phases.THIRD, List.of());
+
+    // then
+    assertThat(graph.timeline().stream().map(WaitForGraph.Snapshot::phase).toList(),
+        contains(Phases.SECOND, Phases.THIRD));
+    assertThat(graph.timeline().get(0).edges(), contains(wait));
+  }
+
+  @Test
+  public void convoyIsVisibleAsSeveralWaitersPerBlocker() {
+    // given
+    WaitForGraph graph = new WaitForGraph();
+
+    // when
+    graph.add(Duration.ZERO, Phases.FIRST, List.of(new WaitEdge(2, 1, "account", "")));
+    graph.add(Duration.ZERO, Phases.FIRST, List.of(
+        new WaitEdge(2, 1, "account", ""), new WaitEdge(3, 1, "account", ""), new WaitEdge(4, 1, "account", "")));
+
+    // then
+    assertThat(graph.maxWaitersPerBlocker(), is(Map.of("1 on account", 3)));
+  }
+
+  @Test
+  public void deadlockIsReportedOnce() {
+    // given
+    WaitForGraph graph = new WaitForGraph();
+
+    // when
+    graph.add(Duration.ZERO, Phases.THIRD, List.of(
+        new WaitEdge(7, 5, "account", ""), new WaitEdge(5, 7, "account", ""), new WaitEdge(9, 5, "account", "")));
+
+    // then
+    assertThat(graph.deadlocks(), is(Set.of(List.of(5L, 7L))));
+  }
+
+}
@@ -0,0 +1,82 @@
+package me.konoplev.isolation.matrix;
+
+import java.util.List;
+
+import me.konoplev.isolation.MySqlTestExtension;
+import me.konoplev.isolation.PostgresTestExtension;
+import me.konoplev.isolation.matrix.MatrixReport.Cell;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static me.konoplev.isolation.matrix.Outcome.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.transaction.annotation.Isolation.*;
+
+@ExtendWith({PostgresTestExtension.class, MySqlTestExtension.class})
+class IsolationMatrixTest {
+
+  // there's no application context to create the schema
+  @BeforeAll
+  public static void createAccountTable() {
+    for (var dataSource : List.of(PostgresTestExtension.dataSource(), MySqlTestExtension.dataSource())) {
+      new JdbcTemplate(dataSource)
+          .execute("create table if not exists account (id int not null primary key, amount int not null, user_id int)");
+    }
+  }
+
+  @Test
+  public void everyScenarioRunsAgainstEveryDatabase() {
+    //given
+    var matrix = new IsolationMatrix(List.of(
+        new JdbcSessionFactory(PostgresTestExtension.dataSource()),
+        new JdbcSessionFactory(MySqlTestExtension.dataSource())));
+
+    //when
+    var report = matrix.run(Scenarios.all(), IsolationMatrix.ISOLATION_LEVELS, 3);
+
+    //then
+    System.out.println(report);
+    assertThat(report.cells(), hasSize(2 * Scenarios.all().size() * IsolationMatrix.ISOLATION_LEVELS.size()));
+    assertThat(report.cells().stream().mapToInt(Cell::stalledRuns).sum(), is(0));
+
+    // Postgres reads committed data even at READ_UNCOMMITTED, MySQL doesn't
+    assertThat(report.cell("POSTGRES", "dirty read", READ_UNCOMMITTED).outcome(), is(PREVENTED));
+    assertThat(report.cell("MYSQL", "dirty read", READ_UNCOMMITTED).outcome(), is(ANOMALY));
+
+    // Postgres aborts the second writer at REPEATABLE_READ, MySQL lets it overwrite the first one
+    assertThat(report.cell("POSTGRES", "lost update", READ_COMMITTED).outcome(), is(ANOMALY));
+    assertThat(report.cell("POSTGRES", "lost update", REPEATABLE_READ).outcome(), is(ABORTED));
+    assertThat(report.cell("MYSQL", "lost update", REPEATABLE_READ).outcome(), is(ANOMALY));
+    assertThat(report.cell("MYSQL", "lost update", REPEATABLE_READ).violatesStandard(), is(true));
+
+    assertThat(report.cell("POSTGRES", "phantom read", REPEATABLE_READ).outcome(), is(ANOMALY));
+    assertThat(report.cell("POSTGRES", "phantom read", SERIALIZABLE).outcome(), is(ABORTED));
+    assertThat(report.cells().stream().filter(cell -> cell.isolation() == SERIALIZABLE).noneMatch(Cell::violatesStandard),
+        is(true));
+  }
+
+  @Test
+  public void modelAgreesWithPostgres() {
+    //given
+    var isolations = List.of(READ_COMMITTED, REPEATABLE_READ, SERIALIZABLE);
+    var matrix = new IsolationMatrix(List.of(
+        new JdbcSessionFactory(PostgresTestExtension.dataSource()),
+        new MvccSessionFactory()));
+
+    //when
+    var report = matrix.run(Scenarios.all(), isolations, 3);
+
+    //then
+    System.out.println(report);
+    for (Scenario scenario : Scenarios.all()) {
+      for (var isolation : isolations) {
+        assertThat(scenario.name() + " at " + isolation, report.cell("MVCC", scenario.name(), isolation).outcome(),
+            is(report.cell("POSTGRES", scenario.name(), isolation).outcome()));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,120 @@
+package me.konoplev.isolation.matrix;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import me.konoplev.isolation.matrix.MatrixReport.Cell;
+import org.junit.jupiter.api.Test;
+
+import static me.konoplev.isolation.matrix.Outcome.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.transaction.annotation.Isolation.*;
+
+class MvccSessionFactoryTest {
+
+  @Test
+  public void everyIsolationLevelPreventsWhatItShould() {
+    //given
+    var matrix = new IsolationMatrix(List.of(new MvccSessionFactory()));
+
+    //when
+    var report = matrix.run(Scenarios.all(), IsolationMatrix.ISOLATION_LEVELS, 3);
+
+    //then
+    System.out.println(report);
+    assertThat(report.cells().stream().mapToInt(Cell::stalledRuns).sum(), is(0));
+    assertThat(report.cell("MVCC", "dirty read", READ_UNCOMMITTED).outcome(), is(ANOMALY));
+    assertThat(report.cell("MVCC", "dirty read", READ_COMMITTED).outcome(), is(PREVENTED));
+    assertThat(report.cell("MVCC", "lost update", READ_COMMITTED).outcome(), is(ANOMALY));
+    assertThat(report.cell("MVCC", "lost update", REPEATABLE_READ).outcome(), is(ABORTED));
+    assertThat(report.cell("MVCC", "non-repeatable read", READ_COMMITTED).outcome(), is(ANOMALY));
+    assertThat(report.cell("MVCC", "non-repeatable read", REPEATABLE_READ).outcome(), is(PREVENTED));
+    assertThat(report.cell("MVCC", "phantom read", REPEATABLE_READ).outcome(), is(ANOMALY));
+    assertThat(report.cell("MVCC", "phantom read", SERIALIZABLE).outcome(), is(ABORTED));
+    assertThat(report.cells().stream().filter(cell -> cell.isolation() == SERIALIZABLE).noneMatch(Cell::violatesStandard),
+        is(true));
+  }
+
+  @Test
+  public void insertIntoTheRangeOfASerializableReaderConflicts() throws Exception {
+    //given
+    var database = new MvccSessionFactory();
+    database.prepare(Map.of(1, 40), 0);
+    var first = database.open(SERIALIZABLE, 0);
+    var second = database.open(SERIALIZABLE, 0);
+
+    //when
+    int firstTotal = first.sum(1, 10);
+    int secondTotal = second.sum(1, 10);
+    first.insert(2, firstTotal);
+    var failure = assertThrows(SQLException.class, () -> second.insert(3, secondTotal));
+    first.commit();
+
+    //then
+    assertThat(failure.getSQLState(), is(MvccSessionFactory.SERIALIZATION_FAILURE));
+    try (var finalState = database.open(READ_COMMITTED, 0)) {
+      assertThat(finalState.sum(1, 10), is(80));
+    }
+  }
+
+  @Test
+  public void waitCycleFailsWithoutWaitingForTheLockTimeout() throws Exception {
+    //given
+    var database = new MvccSessionFactory("MVCC", Duration.ofMinutes(1));
+    database.prepare(Map.of(1, 0, 2, 0), 0);
+    var first = database.open(READ_COMMITTED, 0);
+    var second = database.open(READ_COMMITTED, 0);
+    first.write(1, 10);
+    second.write(2, 20);
+
+    //when
+    var blocked = CompletableFuture.runAsync(() -> {
+      try {
+        first.write(2, 10);
+        first.commit();
+      } catch (Exception e) {
+        throw new CompletionException(e);
+      }
+    });
+    // until the first one waits for the row of the second one
+    while (((MvccSession) first).waitingFor == null && !blocked.isDone()) {
+      Thread.onSpinWait();
+    }
+    var failure = assertThrows(SQLException.class, () -> second.write(1, 20));
+
+    //then
+    blocked.join();
+    assertThat(failure.getSQLState(), is(MvccSessionFactory.DEADLOCK_DETECTED));
+    try (var finalState = database.open(READ_COMMITTED, 0)) {
+      assertThat(finalState.read(1), is(10));
+      assertThat(finalState.read(2), is(10));
+    }
+  }
+
+  @Test
+  public void runsWithoutADatabaseAreCheap() throws Exception {
+    //given
+    var load = new ScenarioLoad(new MvccSessionFactory());
+
+    for (var scenario : Scenarios.all()) {
+      //when
+      long startedAt = System.nanoTime();
+      var readCommitted = load.run(scenario, READ_COMMITTED, 4, 250);
+      var serializable = load.run(scenario, SERIALIZABLE, 4, 250);
+
+      //then
+      System.out.println(readCommitted);
+      System.out.println(serializable);
+      System.out.println(scenario.name() + ": " + Duration.ofNanos(System.nanoTime() - startedAt).toMillis()
+          + " ms for 2000 runs");
+      assertThat(serializable.anomalies(), is(0));
+    }
+  }
+
+}
@@ -0,0 +1,48 @@
+package me.konoplev.isolation.matrix;
+
+import javax.sql.DataSource;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.transaction.annotation.Isolation.*;
+
+@PostgresTest
+class ScenarioLoadTest {
+
+  @Autowired
+  private DataSource dataSource;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @Test
+  public void anomalyProbabilityPerIsolationLevel() {
+    //given
+    var load = new ScenarioLoad(new JdbcSessionFactory(dataSource));
+
+    for (var scenario : Scenarios.all()) {
+      //when
+      var readCommitted = load.run(scenario, READ_COMMITTED, 4, 100);
+      var serializable = load.run(scenario, SERIALIZABLE, 4, 100);
+
+      //then
+      System.out.println(readCommitted);
+      System.out.println(serializable);
+      assertThat(readCommitted.runs(), is(400));
+      assertThat(readCommitted.transactions(), is(400 * scenario.transactions().size()));
+      assertThat(serializable.anomalies(), is(0));
+    }
+  }
+
+}
@@ -0,0 +1,112 @@
+package me.konoplev.isolation.reactive;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.konoplev.isolation.MySqlTest;
+import me.konoplev.isolation.reactive.repository.ReactiveAccountRepository;
+import me.konoplev.isolation.reactive.repository.ReactiveUserRepository;
+import me.konoplev.isolation.reactive.repository.dto.Account;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import me.konoplev.isolation.util.PhaseSync;
+import me.konoplev.isolation.util.PhaseSync.Phases;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import reactor.core.publisher.Mono;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.core.IsNot.not;
+
+@MySqlTest
+class ReactiveDirtyReadTest {
+
+  @Autowired
+  private ReactiveUserRepository userRepository;
+
+  @Autowired
+  private ReactiveAccountRepository accountRepository;
+
+  @Autowired
+  private ReactiveTransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @Test
+  public void dirtyRead() {
+    //given
+    final var amountToTransfer = 30;
+    final var firstAccountInitialAmount = 40;
+    final var secondAccountInitialAmount = 50;
+    transactionsWrapper.readCommitted(userRepository.insert(1, "someName")
+        .then(accountRepository.insert(1, firstAccountInitialAmount, 1))
+        .then(accountRepository.insert(2, secondAccountInitialAmount, 1))).block();
+
+    // expect
+    PhaseSync phaseSync = new PhaseSync();
+    runAsync(() -> transactionsWrapper.readUncommitted(
+            ReactivePhases.phase(phaseSync, Phases.FIRST,
+                    accountRepository.updateAmount(1, firstAccountInitialAmount - amountToTransfer))
+                .then(ReactivePhases.phase(phaseSync, Phases.THIRD,
+                    accountRepository.updateAmount(2, secondAccountInitialAmount + amountToTransfer))))
+        .block());
+
+    final AtomicInteger amountsSum = new AtomicInteger(0);
+    runAsync(() -> transactionsWrapper.readUncommitted(
+            ReactivePhases.phase(phaseSync, Phases.SECOND, sumOfAmounts()))
+        .doOnNext(amountsSum::set)
+        .block());
+
+    phaseSync.phase(Phases.FOURTH, () -> {/* all phases are done*/});
+    assertThat(phaseSync.exceptionDetails(), phaseSync.noExceptions(), is(true));
+    assertThat(amountsSum.get(), not(firstAccountInitialAmount + secondAccountInitialAmount));
+    assertThat(amountsSum.get(), is(firstAccountInitialAmount + secondAccountInitialAmount - amountToTransfer));
+  }
+
+  @Test
+  public void dirtyReadFix() {
+    //given
+    final var amountToTransfer = 30;
+    final var firstAccountInitialAmount = 40;
+    final var secondAccountInitialAmount = 50;
+    transactionsWrapper.readCommitted(userRepository.insert(1, "someName")
+        .then(accountRepository.insert(1, firstAccountInitialAmount, 1))
+        .then(accountRepository.insert(2, secondAccountInitialAmount, 1))).block();
+
+    // expect
+    PhaseSync phaseSync = new PhaseSync();
+    runAsync(() -> transactionsWrapper.readUncommitted(
+            ReactivePhases.phase(phaseSync, Phases.FIRST,
+                    accountRepository.updateAmount(1, firstAccountInitialAmount - amountToTransfer))
+                .then(ReactivePhases.phase(phaseSync, Phases.THIRD,
+                    accountRepository.updateAmount(2, secondAccountInitialAmount + amountToTransfer))))
+        .block());
+
+    final AtomicInteger amountsSum = new AtomicInteger(0);
+    runAsync(() -> transactionsWrapper.readCommitted(
+            ReactivePhases.phase(phaseSync, Phases.SECOND, sumOfAmounts()))
+        .doOnNext(amountsSum::set)
+        .block());
+
+    phaseSync.phase(Phases.FOURTH, () -> {/* all phases are done*/});
+    assertThat(phaseSync.exceptionDetails(), phaseSync.noExceptions(), is(true));
+    assertThat(amountsSum.get(), is(firstAccountInitialAmount + secondAccountInitialAmount));
+  }
+
+  private Mono<Integer> amount(int accountId) {
+    return accountRepository.findById(accountId).map(Account::getAmount);
+  }
+
+  // one query after another, the reads share the connection of the transaction
+  private Mono<Integer> sumOfAmounts() {
+    return amount(1).flatMap(firstAmount -> amount(2).map(secondAmount -> firstAmount + secondAmount));
+  }
+
+}
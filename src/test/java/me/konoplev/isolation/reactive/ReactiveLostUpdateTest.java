@@ -0,0 +1,97 @@
+package me.konoplev.isolation.reactive;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.reactive.repository.ReactiveAccountRepository;
+import me.konoplev.isolation.reactive.repository.dto.Account;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import me.konoplev.isolation.util.PhaseSync;
+import me.konoplev.isolation.util.PhaseSync.Phases;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import reactor.core.publisher.Mono;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@PostgresTest
+class ReactiveLostUpdateTest {
+
+  @Autowired
+  private ReactiveAccountRepository accountRepository;
+
+  @Autowired
+  private ReactiveTransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @Test
+  public void lostUpdateTest() {
+    //given
+    final int userAccountId = 1;
+    transactionsWrapper.readCommitted(accountRepository.insert(userAccountId, 0, null)).block();
+
+    //expected
+    var phaseSync = new PhaseSync();
+    var firstUserTransfer = 50;
+    runAsync(() -> transactionsWrapper.readCommitted(
+        amount(userAccountId).flatMap(currentAmount -> ReactivePhases.phase(phaseSync, Phases.FIRST,
+            accountRepository.updateAmount(userAccountId, firstUserTransfer + currentAmount))))
+        .block());
+
+    var secondUserTransfer = 30;
+    runAsync(() -> transactionsWrapper.readCommitted(
+        amount(userAccountId).flatMap(currentAmount -> ReactivePhases.phase(phaseSync, Phases.SECOND,
+            accountRepository.updateAmount(userAccountId, secondUserTransfer + currentAmount))))
+        .block());
+
+    phaseSync.phase(Phases.THIRD, () -> {/* both transactions are done */});
+    assertThat(phaseSync.exceptionDetails(), phaseSync.noExceptions(), is(true));
+
+    Integer finalAmount = amount(userAccountId).block();
+    assertThat(finalAmount, not(firstUserTransfer + secondUserTransfer));
+    assertThat(finalAmount, is(secondUserTransfer));
+  }
+
+  @Test
+  public void lostUpdateFix() {
+    //given
+    final int userAccountId = 1;
+    transactionsWrapper.readCommitted(accountRepository.insert(userAccountId, 0, null)).block();
+
+    //expected
+    var phaseSync = new PhaseSync();
+    var firstUserTransfer = 50;
+    runAsync(() -> transactionsWrapper.repeatableRead(
+        amount(userAccountId).flatMap(currentAmount -> ReactivePhases.phase(phaseSync, Phases.FIRST,
+            accountRepository.updateAmount(userAccountId, firstUserTransfer + currentAmount))))
+        .block());
+
+    var secondUserTransfer = 30;
+    runAsync(() -> transactionsWrapper.repeatableRead(
+        amount(userAccountId).flatMap(currentAmount -> ReactivePhases.phase(phaseSync, Phases.SECOND,
+            accountRepository.updateAmount(userAccountId, secondUserTransfer + currentAmount))))
+        .block());
+
+    phaseSync.phase(Phases.THIRD, () -> {/* both transactions are done */});
+
+    assertThat(phaseSync.noExceptions(), is(false));
+    // R2DBC translates the serialization failure to the parent of the CannotAcquireLockException JPA throws
+    assertThat(phaseSync.exceptionDetails(),
+        startsWith("Unexpected exception org.springframework.dao.ConcurrencyFailureException"));
+
+    assertThat(amount(userAccountId).block(), is(firstUserTransfer));
+  }
+
+  private Mono<Integer> amount(int accountId) {
+    return accountRepository.findById(accountId).map(Account::getAmount);
+  }
+
+}
@@ -0,0 +1,130 @@
+package me.konoplev.isolation.reactive;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.reactive.repository.ReactiveAccountRepository;
+import me.konoplev.isolation.reactive.repository.ReactiveUserRepository;
+import me.konoplev.isolation.reactive.repository.dto.Account;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import me.konoplev.isolation.util.PhaseSync;
+import me.konoplev.isolation.util.PhaseSync.Phases;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import reactor.core.publisher.Mono;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+@PostgresTest
+class ReactivePhantomReadTest {
+
+  @Autowired
+  private ReactiveUserRepository userRepository;
+
+  @Autowired
+  private ReactiveAccountRepository accountRepository;
+
+  @Autowired
+  private ReactiveTransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @Test
+  public void phantomRead() {
+    //given
+    final var amountToTransfer = 30;
+    transactionsWrapper.readCommitted(userRepository.insert(1, "someName")
+        .then(accountRepository.insert(1, 40, 1))
+        .then(accountRepository.insert(2, 50, 1))).block();
+
+    //expect
+    PhaseSync phaseSync = new PhaseSync();
+
+    runAsync(() -> {
+      transactionsWrapper.repeatableRead(
+          ReactivePhases.phase(phaseSync, Phases.FIRST, allowedToWithdraw(amountToTransfer))
+              .filter(isWithdrawAllowed -> isWithdrawAllowed)
+              .flatMap(allowed -> ReactivePhases.phase(phaseSync, Phases.THIRD, withdraw(amountToTransfer, 1))))
+          .block();
+      phaseSync.phase(Phases.FOURTH, () -> {/* transaction is commited */});
+    });
+
+    runAsync(() -> transactionsWrapper.repeatableRead(
+            ReactivePhases.phase(phaseSync, Phases.SECOND, allowedToWithdraw(amountToTransfer))
+                .filter(isWithdrawAllowed -> isWithdrawAllowed)
+                .flatMap(allowed -> ReactivePhases.phase(phaseSync, Phases.FIFTH, withdraw(amountToTransfer, 2))))
+        .block());
+
+    phaseSync.phase(Phases.SIXTH, () -> {/*done with all phases*/});
+    assertThat(phaseSync.exceptionDetails(), phaseSync.noExceptions(), is(true));
+    // the constraint is violated
+    assertThat(amountsSum().block(), is(30));
+  }
+
+  @Test
+  public void phantomReadFix() {
+    //given
+    final var amountToTransfer = 30;
+    transactionsWrapper.readCommitted(userRepository.insert(1, "someName")
+        .then(accountRepository.insert(1, 40, 1))
+        .then(accountRepository.insert(2, 50, 1))).block();
+
+    //expect
+    PhaseSync phaseSync = new PhaseSync();
+
+    runAsync(() -> {
+      transactionsWrapper.serializable(
+          ReactivePhases.phase(phaseSync, Phases.FIRST, allowedToWithdraw(amountToTransfer))
+              .filter(isWithdrawAllowed -> isWithdrawAllowed)
+              .flatMap(allowed -> ReactivePhases.phase(phaseSync, Phases.THIRD, withdraw(amountToTransfer, 1))))
+          .block();
+      phaseSync.phase(Phases.FOURTH, () -> {/* transaction is commited */});
+    });
+
+    runAsync(() -> transactionsWrapper.serializable(
+            ReactivePhases.phase(phaseSync, Phases.SECOND, allowedToWithdraw(amountToTransfer))
+                .filter(isWithdrawAllowed -> isWithdrawAllowed)
+                .flatMap(allowed -> ReactivePhases.phase(phaseSync, Phases.FIFTH, withdraw(amountToTransfer, 2))))
+        .block());
+
+    phaseSync.phase(Phases.SIXTH, () -> {/*done with all phases*/});
+    // we can't update the second account. the first transaction is committed and the data we used to check the constraint is stale now
+    assertThat(phaseSync.noExceptions(), is(false));
+    assertThat(phaseSync.exceptionDetails(),
+        startsWith("Unexpected exception org.springframework.dao.ConcurrencyFailureException"));
+
+    assertThat(amountsSum().block(), is(60));
+  }
+
+  private Mono<Integer> withdraw(int moneyToWithdraw, int accountIdToWithdrawFrom) {
+    return accountRepository.findById(accountIdToWithdrawFrom)
+        .map(Account::getAmount)
+        .map(amount -> amount - moneyToWithdraw)
+        .filter(amount -> amount > 0)
+        .switchIfEmpty(Mono.error(NoSuchElementException::new))
+        .flatMap(newAmount -> accountRepository.updateAmount(accountIdToWithdrawFrom, newAmount));
+  }
+
+  private Mono<Boolean> allowedToWithdraw(int amount) {
+    return accountRepository.findAllById(List.of(1, 2))
+        .map(Account::getAmount)
+        .reduce(0, Integer::sum)
+        .map(sum -> sum >= amount * 3);
+  }
+
+  private Mono<Integer> amountsSum() {
+    return accountRepository.findAll().map(Account::getAmount).reduce(0, Integer::sum);
+  }
+
+}
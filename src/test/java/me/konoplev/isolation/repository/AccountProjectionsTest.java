@@ -0,0 +1,94 @@
+package me.konoplev.isolation.repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.repository.dto.Account;
+import me.konoplev.isolation.repository.dto.AccountAmount;
+import me.konoplev.isolation.repository.dto.User;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import me.konoplev.isolation.util.TransactionsWrapper;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@PostgresTest
+class AccountProjectionsTest {
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Autowired
+  private TransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @Test
+  public void projectionsReadColumnsOnly() {
+    //given
+    int userId = createUserWithAccounts(40, 50);
+
+    //when
+    var managedEntities = new AtomicInteger(-1);
+    var amounts = new AtomicReference<List<AccountAmount>>();
+    transactionsWrapper.readCommitted(() -> {
+      amounts.set(accountRepository.findAmountsByUserId(userId));
+      accountRepository.findAmountById(1);
+      accountRepository.sumAmountByUserId(userId);
+      managedEntities.set(entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+    });
+
+    //then
+    assertThat(amounts.get(), is(List.of(new AccountAmount(1, 40), new AccountAmount(2, 50))));
+    assertThat(managedEntities.get(), is(0));
+  }
+
+  @Test
+  public void amountAndSum() {
+    //given
+    int userId = createUserWithAccounts(40, 50);
+
+    //expect
+    assertThat(accountRepository.findAmountById(2), is(Optional.of(50)));
+    assertThat(accountRepository.findAmountById(3), is(Optional.empty()));
+    assertThat(accountRepository.sumAmountByUserId(userId), is(90L));
+    assertThat(accountRepository.sumAmountByUserId(userId + 1), is(0L));
+  }
+
+  private int createUserWithAccounts(int firstAmount, int secondAmount) {
+    var user = new User();
+    user.setUserName("someName");
+    var account1 = new Account();
+    account1.setId(1);
+    account1.setUser(user);
+    account1.setAmount(firstAmount);
+    var account2 = new Account();
+    account2.setId(2);
+    account2.setUser(user);
+    account2.setAmount(secondAmount);
+    user.setAccounts(List.of(account1, account2));
+    return userRepository.saveAndFlush(user).getId();
+  }
+
+}
@@ -0,0 +1,95 @@
+package me.konoplev.isolation.repository;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.repository.dto.Account;
+import me.konoplev.isolation.repository.dto.User;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import me.konoplev.isolation.util.TransactionsWrapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@PostgresTest
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class AccountStatementCountTest {
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Autowired
+  private TransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  private Statistics statistics;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+  }
+
+  @Test
+  public void accountIsReadWithOneStatement() {
+    //given
+    var user = new User();
+    user.setUserName("someName");
+    for (int id = 1; id <= 3; id++) {
+      var account = new Account();
+      account.setId(id);
+      account.setUser(user);
+      user.getAccounts().add(account);
+    }
+    userRepository.saveAndFlush(user);
+    statistics.clear();
+
+    //when
+    var account = accountRepository.findById(2).orElseThrow();
+
+    //then
+    assertThat(statistics.getPrepareStatementCount(), is(1L));
+    assertThat(statistics.getEntityLoadCount(), is(1L));
+    assertThat(account.getAmount(), is(0));
+  }
+
+  @Test
+  public void userIsLoadedOnlyWhenUsed() {
+    //given
+    var user = new User();
+    user.setUserName("someName");
+    var account = new Account();
+    account.setId(1);
+    account.setUser(user);
+    user.setAccounts(List.of(account));
+    userRepository.saveAndFlush(user);
+    statistics.clear();
+
+    //when
+    transactionsWrapper.readCommitted(() -> {
+      var loaded = accountRepository.findById(1).orElseThrow();
+      loaded.getUser().getId();
+      assertThat(statistics.getPrepareStatementCount(), is(1L));
+      loaded.getUser().getUserName();
+    });
+
+    //then
+    assertThat(statistics.getPrepareStatementCount(), is(2L));
+  }
+
+}
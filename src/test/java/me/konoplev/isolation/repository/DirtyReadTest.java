@@ -6,6 +6,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import me.konoplev.isolation.MySqlTest;
 import me.konoplev.isolation.repository.dto.Account;
 import me.konoplev.isolation.repository.dto.User;
+import me.konoplev.isolation.util.DatabaseCleaner;
 import me.konoplev.isolation.util.PhaseSync;
 import me.konoplev.isolation.util.PhaseSync.Phases;
 import me.konoplev.isolation.util.TransactionsWrapper;
@@ -31,10 +32,12 @@ class DirtyReadTest {
   @Autowired
   private TransactionsWrapper transactionsWrapper;
 
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
   @BeforeEach
   public void cleanUp() {
-    userRepository.deleteAll();
-    accountRepository.deleteAll();
+    databaseCleaner.cleanUp();
   }
 
   @Test
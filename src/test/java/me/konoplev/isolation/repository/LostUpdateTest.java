@@ -2,6 +2,7 @@ package me.konoplev.isolation.repository;
 
 import me.konoplev.isolation.PostgresTest;
 import me.konoplev.isolation.repository.dto.Account;
+import me.konoplev.isolation.util.DatabaseCleaner;
 import me.konoplev.isolation.util.PhaseSync;
 import me.konoplev.isolation.util.PhaseSync.Phases;
 import me.konoplev.isolation.util.TransactionsWrapper;
@@ -24,9 +25,12 @@ public class LostUpdateTest {
   @Autowired
   private TransactionsWrapper transactionsWrapper;
 
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
   @BeforeEach
   public void cleanUp() {
-    accountRepository.deleteAll();
+    databaseCleaner.cleanUp();
   }
 
   @Test
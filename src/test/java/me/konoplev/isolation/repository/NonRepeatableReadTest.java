@@ -8,6 +8,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import me.konoplev.isolation.PostgresTest;
 import me.konoplev.isolation.repository.dto.Account;
 import me.konoplev.isolation.repository.dto.User;
+import me.konoplev.isolation.util.DatabaseCleaner;
 import me.konoplev.isolation.util.PhaseSync;
 import me.konoplev.isolation.util.PhaseSync.Phases;
 import me.konoplev.isolation.util.TransactionsWrapper;
@@ -32,12 +33,15 @@ public class NonRepeatableReadTest {
   @Autowired
   private TransactionsWrapper transactionsWrapper;
 
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
   @PersistenceContext
   private EntityManager entityManager;
 
   @BeforeEach
   public void cleanUp() {
-    accountRepository.deleteAll();
+    databaseCleaner.cleanUp();
   }
 
   @Test
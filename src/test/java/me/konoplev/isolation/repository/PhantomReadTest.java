@@ -6,6 +6,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import me.konoplev.isolation.PostgresTest;
 import me.konoplev.isolation.repository.dto.Account;
 import me.konoplev.isolation.repository.dto.User;
+import me.konoplev.isolation.util.DatabaseCleaner;
 import me.konoplev.isolation.util.PhaseSync;
 import me.konoplev.isolation.util.PhaseSync.Phases;
 import me.konoplev.isolation.util.TransactionsWrapper;
@@ -32,10 +33,12 @@ public class PhantomReadTest {
   @Autowired
   private TransactionsWrapper transactionsWrapper;
 
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
   @BeforeEach
   public void cleanUp() {
-    userRepository.deleteAll();
-    accountRepository.deleteAll();
+    databaseCleaner.cleanUp();
   }
 
   @Test
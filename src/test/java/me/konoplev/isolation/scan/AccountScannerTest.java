@@ -0,0 +1,107 @@
+package me.konoplev.isolation.scan;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.repository.dto.AccountView;
+import me.konoplev.isolation.seed.BulkSeeder;
+import me.konoplev.isolation.seed.SeedDistribution;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import me.konoplev.isolation.util.TransactionsWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@PostgresTest
+class AccountScannerTest {
+
+  private static final int PAGE_SIZE = 1_000;
+
+  @Autowired
+  private AccountScanner accountScanner;
+
+  @Autowired
+  private BulkSeeder bulkSeeder;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private TransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @Test
+  public void allAccountsAreReadInIdOrder() {
+    //given
+    long accounts = bulkSeeder.seed(SeedDistribution.uniform(2_500, 1, 1000).withAccountsPerUser(0, 3)).accounts();
+    long total = jdbcTemplate.queryForObject("select sum(amount) from account", Long.class);
+
+    //when
+    var ids = accountScanner.scan(PAGE_SIZE, stream -> stream.map(AccountView::id).toList());
+    long scannedTotal = accountScanner.scan(PAGE_SIZE, stream -> stream.mapToLong(AccountView::amount).sum());
+
+    //then
+    assertThat((long) ids.size(), is(accounts));
+    assertThat(ids, is(ids.stream().sorted().distinct().toList()));
+    assertThat(scannedTotal, is(total));
+  }
+
+  @Test
+  public void aPageOfExactlyThePageSizeIsFollowedByAnEmptyOne() {
+    //given
+    bulkSeeder.seed(SeedDistribution.uniform(2 * PAGE_SIZE, 1, 1000));
+
+    //when
+    long scanned = accountScanner.scan(PAGE_SIZE, Stream::count);
+
+    //then
+    assertThat(scanned, is(2L * PAGE_SIZE));
+  }
+
+  @Test
+  public void pagesSeeTheSnapshotOfTheFirstOne() {
+    //given
+    bulkSeeder.seed(SeedDistribution.uniform(3 * PAGE_SIZE, 1, 1000));
+    long total = jdbcTemplate.queryForObject("select sum(amount) from account", Long.class);
+    int lastId = jdbcTemplate.queryForObject("select max(id) from account", Integer.class);
+
+    //when
+    long scannedTotal = accountScanner.scan(PAGE_SIZE, stream -> {
+      Iterator<AccountView> accounts = stream.iterator();
+      long sum = accounts.next().amount();
+      // commits after the first page was read, the later pages must not see it
+      transactionsWrapper.readCommitted(() -> {
+        jdbcTemplate.update("update account set amount = amount + 1000 where id = ?", lastId);
+        jdbcTemplate.update("insert into account (id, amount) values (?, 1000)", lastId + 1);
+      });
+      while (accounts.hasNext()) {
+        sum += accounts.next().amount();
+      }
+      return sum;
+    });
+
+    //then
+    assertThat(scannedTotal, is(total));
+  }
+
+  @Test
+  public void streamingOutsideOfATransactionIsRejected() {
+    //when
+    //then
+    assertThrows(IllegalStateException.class, () -> accountScanner.stream(PAGE_SIZE));
+  }
+
+}
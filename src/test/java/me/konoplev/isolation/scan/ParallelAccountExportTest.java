@@ -0,0 +1,148 @@
+package me.konoplev.isolation.scan;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.scan.ParallelAccountExport.Format;
+import me.konoplev.isolation.seed.BulkSeeder;
+import me.konoplev.isolation.seed.SeedDistribution;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import me.konoplev.isolation.util.TransactionsWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@PostgresTest
+class ParallelAccountExportTest {
+
+  private static final int WORKERS = 4;
+
+  @Autowired
+  private ParallelAccountExport parallelAccountExport;
+
+  @Autowired
+  private BulkSeeder bulkSeeder;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private TransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @Test
+  public void everyAccountIsExportedOnce() {
+    //given
+    long accounts = bulkSeeder.seed(SeedDistribution.uniform(10_000, 1, 1000).withAccountsPerUser(0, 3)).accounts();
+    long total = total();
+    var output = new ByteArrayOutputStream();
+
+    //when
+    var result = parallelAccountExport.export(WORKERS, Format.CSV, output);
+
+    //then
+    List<String> lines = output.toString(StandardCharsets.US_ASCII).lines().toList();
+    assertThat(lines.get(0), is("id,user_id,amount"));
+    var ids = new HashSet<Integer>();
+    long exportedTotal = 0;
+    for (String line : lines.subList(1, lines.size())) {
+      String[] columns = line.split(",");
+      ids.add(Integer.parseInt(columns[0]));
+      exportedTotal += Integer.parseInt(columns[2]);
+    }
+    assertThat(result.rows(), is(accounts));
+    assertThat(result.workers(), is(WORKERS));
+    assertThat((long) ids.size(), is(accounts));
+    assertThat(exportedTotal, is(total));
+  }
+
+  @Test
+  public void workersSeeOnePointInTime() throws IOException {
+    //given
+    bulkSeeder.seed(SeedDistribution.uniform(50_000, 1, 1000));
+    long total = total();
+    int maxId = jdbcTemplate.queryForObject("select max(id) from account", Integer.class);
+    var exported = new AtomicBoolean();
+    var transfers = new AtomicLong();
+    // transfers keep the total, but a worker that saw a later state than another one would count one twice or never
+    var transferring = runAsync(() -> {
+      while (!exported.get()) {
+        int from = ThreadLocalRandom.current().nextInt(1, maxId + 1);
+        int to = ThreadLocalRandom.current().nextInt(1, maxId + 1);
+        transactionsWrapper.readCommitted(() -> {
+          jdbcTemplate.update("update account set amount = amount - 1 where id = ?", from);
+          jdbcTemplate.update("update account set amount = amount + 1 where id = ?", to);
+        });
+        transfers.incrementAndGet();
+      }
+    });
+    var output = new ByteArrayOutputStream();
+
+    //when
+    ParallelAccountExport.ExportResult result;
+    try {
+      result = parallelAccountExport.export(WORKERS, Format.BINARY, output);
+    } finally {
+      exported.set(true);
+    }
+    transferring.join();
+
+    //then
+    long exportedTotal = 0;
+    var accounts = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+    for (long row = 0; row < result.rows(); row++) {
+      accounts.readInt();
+      accounts.readInt();
+      exportedTotal += accounts.readInt();
+    }
+    System.out.println(transfers.get() + " transfers during the export");
+    assertThat(accounts.available(), is(0));
+    assertThat(exportedTotal, is(total));
+  }
+
+  @Test
+  public void throughputByWorkerCount() {
+    //given
+    long accounts = bulkSeeder.seed(SeedDistribution.uniform(500_000, 1, 1000)).accounts();
+    // the first export warms up the buffer cache for the others
+    parallelAccountExport.export(1, Format.BINARY, OutputStream.nullOutputStream());
+
+    //when
+    var results = List.of(parallelAccountExport.export(1, Format.BINARY, OutputStream.nullOutputStream()),
+        parallelAccountExport.export(2, Format.BINARY, OutputStream.nullOutputStream()),
+        parallelAccountExport.export(4, Format.BINARY, OutputStream.nullOutputStream()),
+        parallelAccountExport.export(8, Format.BINARY, OutputStream.nullOutputStream()));
+
+    //then
+    results.forEach(result -> System.out.printf("%d workers: %.0f rows/s%n", result.workers(), result.rowsPerSecond()));
+    // the speedup depends on the cores and disks of the database, only the rows are checked
+    results.forEach(result -> assertThat(result.rows(), is(accounts)));
+  }
+
+  private long total() {
+    return jdbcTemplate.queryForObject("select sum(amount) from account", Long.class);
+  }
+
+}
@@ -0,0 +1,73 @@
+package me.konoplev.isolation.seed;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.repository.AccountRepository;
+import me.konoplev.isolation.repository.UserRepository;
+import me.konoplev.isolation.repository.dto.User;
+import me.konoplev.isolation.util.DatabaseCleaner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@PostgresTest
+class BulkSeederTest {
+
+  @Autowired
+  private BulkSeeder bulkSeeder;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @Test
+  public void usersAndAccountsAreLoaded() {
+    // when
+    var result = bulkSeeder.seed(SeedDistribution.uniform(10_000, 1, 1000).withAccountsPerUser(0, 3));
+
+    // then
+    System.out.println("Seeded " + result);
+    assertThat(userRepository.count(), is(10_000L));
+    assertThat(accountRepository.count(), is(result.accounts()));
+  }
+
+  @Test
+  public void entitiesCanBeSavedAfterSeeding() {
+    // given
+    bulkSeeder.seed(SeedDistribution.uniform(100, 1, 1000));
+
+    // when
+    var user = new User();
+    user.setUserName("someName");
+    userRepository.saveAndFlush(user);
+
+    // then
+    assertThat(user.getId(), is(101));
+  }
+
+  @Test
+  public void seedingAppendsToExistingRows() {
+    // given
+    bulkSeeder.seed(SeedDistribution.uniform(100, 2, 1000));
+
+    // when
+    bulkSeeder.seed(SeedDistribution.uniform(100, 2, 1000));
+
+    // then
+    assertThat(userRepository.count(), is(200L));
+    assertThat(accountRepository.count(), is(400L));
+  }
+
+}
@@ -0,0 +1,97 @@
+package me.konoplev.isolation.seed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SeedRowsTest {
+
+  @Test
+  public void usersAreNumberedFromTheFirstId() {
+    // when
+    List<String> users = collect(SeedRows.users(10, SeedDistribution.uniform(3, 1, 100)));
+
+    // then
+    assertThat(users, contains("10,user-10", "11,user-11", "12,user-12"));
+  }
+
+  @Test
+  public void accountsFollowTheDistribution() {
+    // given
+    var distribution = SeedDistribution.uniform(1000, 1, 100).withAccountsPerUser(2, 4);
+
+    // when
+    var accounts = SeedRows.accounts(1, 1, distribution);
+    List<String> rows = collect(accounts);
+
+    // then
+    assertThat(accounts.generated(), is((long) rows.size()));
+    assertThat(rows.size(), both(greaterThanOrEqualTo(2000)).and(lessThanOrEqualTo(4000)));
+    for (int i = 0; i < rows.size(); i++) {
+      String[] columns = rows.get(i).split(",");
+      assertThat(Integer.parseInt(columns[0]), is(i + 1));
+      assertThat(Integer.parseInt(columns[1]), both(greaterThanOrEqualTo(0)).and(lessThan(100)));
+      assertThat(Integer.parseInt(columns[2]), both(greaterThanOrEqualTo(1)).and(lessThanOrEqualTo(1000)));
+    }
+  }
+
+  @Test
+  public void sameSeedGeneratesSameRows() {
+    // given
+    var distribution = SeedDistribution.uniform(100, 1, 1000).withAccountsPerUser(0, 5).withRandomSeed(42);
+
+    // expect
+    assertThat(collect(SeedRows.accounts(1, 1, distribution)), is(collect(SeedRows.accounts(1, 1, distribution))));
+  }
+
+  @Test
+  public void skewMakesMostAccountsPoor() {
+    // given
+    var distribution = SeedDistribution.uniform(10_000, 1, 1000).withAmountSkew(4);
+
+    // when
+    long poorAccounts = collect(SeedRows.accounts(1, 1, distribution)).stream()
+        .mapToInt(row -> Integer.parseInt(row.split(",")[1]))
+        .filter(amount -> amount < 100)
+        .count();
+
+    // then
+    // with skew 4 an amount is below 10% of max with probability 0.1^(1/4) ~ 56%
+    assertThat(poorAccounts, greaterThan(5_000L));
+  }
+
+  @Test
+  public void rowsAreStreamedAsLines() throws IOException {
+    // given
+    var output = new ByteArrayOutputStream();
+
+    // when
+    try (var input = new LinesInputStream(SeedRows.users(1, SeedDistribution.uniform(2, 1, 100)))) {
+      input.transferTo(output);
+    }
+
+    // then
+    assertThat(output.toString(StandardCharsets.UTF_8), is("1,user-1\n2,user-2\n"));
+  }
+
+  @Test
+  public void wrongDistributionIsRejected() {
+    assertThrows(IllegalArgumentException.class, () -> SeedDistribution.uniform(1, 1, 100).withAccountsPerUser(3, 2));
+  }
+
+  private List<String> collect(Iterator<String> rows) {
+    List<String> result = new ArrayList<>();
+    rows.forEachRemaining(result::add);
+    return result;
+  }
+
+}
@@ -0,0 +1,140 @@
+package me.konoplev.isolation.util;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.Throughput;
+import me.konoplev.isolation.repository.AccountRepository;
+import me.konoplev.isolation.repository.UserRepository;
+import me.konoplev.isolation.repository.dto.Account;
+import me.konoplev.isolation.repository.dto.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@PostgresTest
+class AdvisoryLocksTest {
+
+  private static final int THREADS = 8;
+  private static final int WITHDRAWALS_PER_THREAD = 50;
+
+  @Autowired
+  private AdvisoryLocks advisoryLocks;
+
+  @Autowired
+  private TransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @Test
+  public void stripesOfSequentialKeysAreSpread() {
+    //when
+    long distinct = LongStream.range(0, 1024).map(advisoryLocks::stripe).distinct().count();
+
+    //then
+    assertThat(distinct, greaterThan(512L));
+  }
+
+  @Test
+  public void readCommittedWithLockKeepsTheInvariant() {
+    //given
+    int userId = createUserWithAccounts(100, 100);
+
+    //when
+    var withdrawn = new AtomicLong();
+    var result = Throughput.measure(THREADS, WITHDRAWALS_PER_THREAD, (thread, iteration) ->
+        transactionsWrapper.readCommittedLocked(userId, () -> {
+          if (withdrawIfAllowed(userId, 1 + thread % 2, 1)) {
+            withdrawn.incrementAndGet();
+          }
+        }));
+
+    //then
+    System.out.println("READ_COMMITTED with advisory lock: " + result);
+    assertThat(result.failures(), is(0L));
+    assertThat(withdrawn.get(), is(200L));
+    assertThat(accountRepository.sumAmountByUserId(userId), is(0L));
+  }
+
+  @Test
+  public void throughputComparedToSerializableWithRetries() {
+    //given
+    int lockedUser = createUserWithAccounts(1_000, 1_000, "locked");
+    int serializableUser = createUserWithAccounts(1_000, 1_000, "serializable");
+
+    //when
+    var locked = Throughput.measure(THREADS, WITHDRAWALS_PER_THREAD, (thread, iteration) ->
+        transactionsWrapper.readCommittedLocked(lockedUser, () -> withdrawIfAllowed(lockedUser, 1 + thread % 2, 1)));
+    var retries = new AtomicLong();
+    var serializable = Throughput.measure(THREADS, WITHDRAWALS_PER_THREAD, (thread, iteration) -> {
+      while (true) {
+        try {
+          transactionsWrapper.serializable(() -> withdrawIfAllowed(serializableUser, 3 + thread % 2, 1));
+          return;
+        } catch (ConcurrencyFailureException e) {
+          retries.incrementAndGet();
+        }
+      }
+    });
+
+    //then
+    System.out.println("READ_COMMITTED with advisory lock: " + locked);
+    System.out.println("SERIALIZABLE: " + serializable + ", " + retries.get() + " retries");
+    assertThat(locked.failures(), is(0L));
+    assertThat(serializable.failures(), is(0L));
+    assertThat(accountRepository.sumAmountByUserId(lockedUser), is(2_000L - THREADS * WITHDRAWALS_PER_THREAD));
+    assertThat(accountRepository.sumAmountByUserId(serializableUser), is(2_000L - THREADS * WITHDRAWALS_PER_THREAD));
+  }
+
+  private boolean withdrawIfAllowed(int userId, int accountId, int amount) {
+    if (accountRepository.sumAmountByUserId(userId) < amount) {
+      return false;
+    }
+    jdbcTemplate.update("update account set amount = amount - ? where id = ?", amount, accountId);
+    return true;
+  }
+
+  private int createUserWithAccounts(int firstAmount, int secondAmount) {
+    return createUserWithAccounts(firstAmount, secondAmount, "someName");
+  }
+
+  // accounts get the ids following the ones of the users created before
+  private int createUserWithAccounts(int firstAmount, int secondAmount, String userName) {
+    int firstId = (int) accountRepository.count() + 1;
+    var user = new User();
+    user.setUserName(userName);
+    var account1 = new Account();
+    account1.setId(firstId);
+    account1.setUser(user);
+    account1.setAmount(firstAmount);
+    var account2 = new Account();
+    account2.setId(firstId + 1);
+    account2.setUser(user);
+    account2.setAmount(secondAmount);
+    user.setAccounts(List.of(account1, account2));
+    return userRepository.saveAndFlush(user).getId();
+  }
+
+}
@@ -0,0 +1,67 @@
+package me.konoplev.isolation.util;
+
+import java.util.List;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.repository.AccountRepository;
+import me.konoplev.isolation.repository.UserRepository;
+import me.konoplev.isolation.repository.dto.Account;
+import me.konoplev.isolation.repository.dto.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@PostgresTest
+class DatabaseCleanerTest {
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @Test
+  public void allTablesAreEmptyAfterCleanUp() {
+    // given
+    userRepository.saveAndFlush(userWithAccounts("someName", 1, 2));
+
+    // when
+    databaseCleaner.cleanUp();
+
+    // then
+    assertThat(userRepository.count(), is(0L));
+    assertThat(accountRepository.count(), is(0L));
+  }
+
+  @Test
+  public void sequencesAreResetAfterCleanUp() {
+    // given
+    databaseCleaner.cleanUp();
+    var firstUserId = userRepository.saveAndFlush(userWithAccounts("someName", 1)).getId();
+    userRepository.saveAndFlush(userWithAccounts("anotherName", 2));
+
+    // when
+    databaseCleaner.cleanUp();
+
+    // then
+    assertThat(userRepository.saveAndFlush(userWithAccounts("someName", 1)).getId(), is(firstUserId));
+  }
+
+  private User userWithAccounts(String name, Integer... accountIds) {
+    var user = new User();
+    user.setUserName(name);
+    user.setAccounts(List.of(accountIds).stream().map(id -> {
+      var account = new Account();
+      account.setId(id);
+      account.setUser(user);
+      return account;
+    }).toList());
+    return user;
+  }
+
+}
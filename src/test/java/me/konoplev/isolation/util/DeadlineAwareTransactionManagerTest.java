@@ -0,0 +1,98 @@
+package me.konoplev.isolation.util;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.diagnostics.LockWaitSampler;
+import me.konoplev.isolation.util.PhaseSync.Phases;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static java.util.concurrent.CompletableFuture.runAsync;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@PostgresTest
+class DeadlineAwareTransactionManagerTest {
+
+  @Autowired
+  private TransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private DataSource dataSource;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+    jdbcTemplate.update("insert into account (id, amount) values (1, 0)");
+  }
+
+  @Test
+  public void blockedStatementFailsWhenTheDeadlineIsOver() throws Exception {
+    //given
+    var lockIsTaken = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    CompletableFuture<Void> lockHolder = runAsync(() -> transactionsWrapper.readCommitted(() -> {
+      jdbcTemplate.update("update account set amount = 1 where id = 1");
+      lockIsTaken.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }));
+    lockIsTaken.await();
+
+    //when
+    long startedAt = System.nanoTime();
+    try {
+      assertThrows(PessimisticLockingFailureException.class, () -> Deadline.after(Duration.ofSeconds(1)).run(() ->
+          transactionsWrapper.readCommitted(() -> jdbcTemplate.update("update account set amount = 2 where id = 1"))));
+    } finally {
+      release.countDown();
+      lockHolder.join();
+    }
+
+    //then
+    assertThat(Duration.ofNanos(System.nanoTime() - startedAt), lessThan(Duration.ofSeconds(3)));
+    assertThat(jdbcTemplate.queryForObject("select amount from account where id = 1", Integer.class), is(1));
+  }
+
+  @Test
+  public void stalledScenarioReportsTheBlockedSession() throws Exception {
+    //given
+    var phaseSync = new PhaseSync(Duration.ofSeconds(2));
+    try (var sampler = LockWaitSampler.start(dataSource, Duration.ofMillis(50), phaseSync)) {
+      var first = runAsync(() -> transactionsWrapper.readCommitted(() -> {
+        phaseSync.phase(Phases.FIRST, () -> jdbcTemplate.update("update account set amount = 1 where id = 1"));
+        // holds the lock until the scenario is over
+        phaseSync.phase(Phases.THIRD, () -> {});
+      }));
+      // no deadline, the update waits for the lock as long as the first transaction holds it
+      var second = runAsync(() -> transactionsWrapper.readCommitted(() ->
+          phaseSync.phase(Phases.SECOND, () -> jdbcTemplate.update("update account set amount = 2 where id = 1"))));
+
+      //when
+      CompletableFuture.allOf(first, second).join();
+    }
+
+    //then
+    assertThat(phaseSync.noExceptions(), is(false));
+    assertThat(phaseSync.exceptionDetails(), stringContainsInOrder(
+        "Timeout waiting for THIRD", "SECOND is executing for", "Lock waits timeline", "update account set amount = 2"));
+  }
+
+}
@@ -0,0 +1,53 @@
+package me.konoplev.isolation.util;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class DeadlineTest {
+
+  @Test
+  public void deadlineIsBoundToTheThreadWhileCodeRuns() {
+    // given
+    var deadline = Deadline.after(Duration.ofSeconds(5));
+
+    // when
+    Optional<Deadline> bound = deadline.call(Deadline::current);
+
+    // then
+    assertThat(bound, is(Optional.of(deadline)));
+    assertThat(Deadline.current(), is(Optional.empty()));
+  }
+
+  @Test
+  public void earlierDeadlineOfTheThreadStays() {
+    // given
+    var earlier = Deadline.after(Duration.ofSeconds(1));
+    var later = Deadline.after(Duration.ofSeconds(5));
+
+    // when
+    Optional<Deadline> bound = earlier.call(() -> later.call(Deadline::current));
+
+    // then
+    assertThat(bound, is(Optional.of(earlier)));
+  }
+
+  @Test
+  public void remainingTimeGoesDown() throws InterruptedException {
+    // given
+    var deadline = Deadline.after(Duration.ofMillis(50));
+
+    // when
+    Thread.sleep(60);
+
+    // then
+    assertThat(deadline.isExpired(), is(true));
+    assertThat(deadline.remaining(), is(Duration.ZERO));
+    assertThat(deadline.remainingNanos(), lessThan(0L));
+  }
+
+}
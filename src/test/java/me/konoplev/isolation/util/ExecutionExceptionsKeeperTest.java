@@ -1,10 +1,16 @@
 package me.konoplev.isolation.util;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import me.konoplev.isolation.util.PhaseSync.Phases;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.stringContainsInOrder;
+import static org.hamcrest.Matchers.*;
 import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -34,7 +40,7 @@ class ExecutionExceptionsKeeperTest {
       "Unexpected exception java.lang.RuntimeException in FIRST",
         "message: test message",
         "stack trace: ",
-        "\tphases.ExecutionExceptionsKeeperTest.unexpectedExceptionCanBeHandledAndPrinted(ExecutionExceptionsKeeperTest.java:"
+        "\tme.konoplev.isolation.util.ExecutionExceptionsKeeperTest.unexpectedExceptionCanBeHandledAndPrinted(ExecutionExceptionsKeeperTest.java:"
                                                                ));
   }
 
@@ -84,4 +90,78 @@ class ExecutionExceptionsKeeperTest {
     assertDoesNotThrow(keeper::ifAnyExceptionRethrow);
   }
 
+  @Test
+  public void exceptionsAreCountedPerPhaseAndType() {
+    // given
+    ExecutionExceptionsKeeper<Phases> keeper = new ExecutionExceptionsKeeper<>();
+
+    // when
+    for (int i = 0; i < 10; i++) {
+      keeper.handleUnexpectedException(Phases.FIRST, new IllegalStateException("state " + i));
+    }
+    keeper.handleUnexpectedException(Phases.FIRST, new IllegalArgumentException("argument"));
+    keeper.handleUnexpectedException(Phases.SECOND, new IllegalStateException("state"));
+
+    // then
+    assertThat(keeper.count(Phases.FIRST, IllegalStateException.class), is(10L));
+    assertThat(keeper.count(Phases.FIRST, IllegalArgumentException.class), is(1L));
+    assertThat(keeper.count(Phases.SECOND, IllegalStateException.class), is(1L));
+    assertThat(keeper.totalCount(), is(12L));
+    assertThat(keeper.exceptionDetails(), stringContainsInOrder(
+        "Unexpected exception java.lang.IllegalStateException in FIRST (10 times)",
+        "message: state 0",
+        "message: state 2",
+        "... 7 more",
+        "Unexpected exception java.lang.IllegalArgumentException in FIRST",
+        "Unexpected exception java.lang.IllegalStateException in SECOND"));
+    assertThat(keeper.exceptionDetails(), not(containsString("message: state 3")));
+  }
+
+  @Test
+  public void latestExceptionIsRethrownWithEarlierOnesSuppressed() {
+    // given
+    ExecutionExceptionsKeeper<Phases> keeper = new ExecutionExceptionsKeeper<>();
+    var first = new IllegalStateException("first");
+    var second = new IllegalArgumentException("second");
+    keeper.handleUnexpectedException(Phases.FIRST, first);
+    keeper.handleUnexpectedException(Phases.SECOND, second);
+
+    // when
+    var rethrown = assertThrows(IllegalArgumentException.class, keeper::ifAnyExceptionRethrow);
+
+    // then
+    assertThat(rethrown, sameInstance(second));
+    assertThat(rethrown.getSuppressed(), arrayContaining(first));
+  }
+
+  @Test
+  public void concurrentExceptionsAreAllCounted() throws Exception {
+    // given
+    ExecutionExceptionsKeeper<Phases> keeper = new ExecutionExceptionsKeeper<>();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    // when
+    try {
+      List<Future<?>> threads = new ArrayList<>();
+      for (int thread = 0; thread < 8; thread++) {
+        threads.add(executor.submit(() -> {
+          for (int i = 0; i < 10_000; i++) {
+            keeper.handleUnexpectedException(Phases.values()[i % 2], new RuntimeException());
+          }
+        }));
+      }
+      for (Future<?> thread : threads) {
+        thread.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    // then
+    assertThat(keeper.count(Phases.FIRST, RuntimeException.class), is(40_000L));
+    assertThat(keeper.count(Phases.SECOND, RuntimeException.class), is(40_000L));
+    var rethrown = assertThrows(RuntimeException.class, keeper::ifAnyExceptionRethrow);
+    assertThat(rethrown.getSuppressed().length, is(ExecutionExceptionsKeeper.MAX_SUPPRESSED));
+  }
+
 }
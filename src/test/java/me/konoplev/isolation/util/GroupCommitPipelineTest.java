@@ -0,0 +1,178 @@
+package me.konoplev.isolation.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.Throughput;
+import me.konoplev.isolation.repository.AccountRepository;
+import me.konoplev.isolation.repository.UserRepository;
+import me.konoplev.isolation.repository.dto.Account;
+import me.konoplev.isolation.repository.dto.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@PostgresTest
+class GroupCommitPipelineTest {
+
+  @Autowired
+  private GroupCommit groupCommit;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private TransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @Test
+  public void concurrentRequestsShareCommits() throws Exception {
+    //given
+    createAccount(1, 0);
+
+    //when
+    try (var pipeline = groupCommit.pipeline(50, Duration.ofMillis(20))) {
+      List<CompletableFuture<Void>> results = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        results.add(pipeline.submit(() -> jdbcTemplate.update("update account set amount = amount + 1 where id = 1")));
+      }
+      CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get();
+
+      //then
+      assertThat(pipeline.committedRequests(), is(200L));
+      assertThat(pipeline.commits(), lessThan(200L));
+      assertThat(amount(1), is(200));
+    }
+  }
+
+  @Test
+  public void failedRequestDoesNotSinkTheOthers() throws Exception {
+    //given
+    createAccount(1, 0);
+
+    //when
+    try (var pipeline = groupCommit.pipeline(10, Duration.ofSeconds(1))) {
+      var first = pipeline.submit(() -> jdbcTemplate.update("update account set amount = amount + 1 where id = 1"));
+      var duplicate = pipeline.submit(() -> jdbcTemplate.update("insert into account (id, amount) values (1, 0)"));
+      var last = pipeline.submit(() -> jdbcTemplate.update("update account set amount = amount + 10 where id = 1"));
+
+      //then
+      first.get();
+      last.get();
+      var failure = assertThrows(ExecutionException.class, duplicate::get);
+      assertThat(failure.getCause(), instanceOf(DataIntegrityViolationException.class));
+      assertThat(amount(1), is(11));
+      assertThat(pipeline.commits(), is(1L));
+    }
+  }
+
+  @Test
+  public void requestFailingInARepositoryCallDoesNotSinkTheOthers() throws Exception {
+    //given
+    createAccount(1, 0);
+    transactionsWrapper.readCommitted(() -> createUser("taken"));
+
+    //when
+    try (var pipeline = groupCommit.pipeline(10, Duration.ofSeconds(1))) {
+      var first = pipeline.submit(() -> accountRepository.updateAmount(1, 1));
+      var duplicate = pipeline.submit(() -> createUser("taken"));
+      var last = pipeline.submit(() -> accountRepository.updateAmount(1, 11));
+
+      //then
+      first.get();
+      last.get();
+      var failure = assertThrows(ExecutionException.class, duplicate::get);
+      assertThat(failure.getCause(), instanceOf(DataIntegrityViolationException.class));
+      assertThat(amount(1), is(11));
+      assertThat(userRepository.count(), is(1L));
+      assertThat(pipeline.commits(), is(1L));
+    }
+  }
+
+  @Test
+  public void requestsSubmittedWhileClosingAllComplete() throws Exception {
+    //given
+    createAccount(1, 0);
+    List<CompletableFuture<Void>> results = new CopyOnWriteArrayList<>();
+    var pipeline = groupCommit.pipeline(10, Duration.ofMillis(1));
+    var submitting = CompletableFuture.runAsync(() -> {
+      for (int i = 0; i < 10_000; i++) {
+        results.add(pipeline.submit(() -> jdbcTemplate.update("update account set amount = amount + 1 where id = 1")));
+      }
+    });
+
+    //when
+    Thread.sleep(20);
+    pipeline.close();
+    submitting.join();
+
+    //then
+    // every future is completed, either by its batch or as closed
+    assertThat(results.stream().allMatch(CompletableFuture::isDone), is(true));
+    assertThat((long) amount(1), is(pipeline.committedRequests()));
+  }
+
+  @Test
+  public void commitsPerSecondDependOnBatchSize() throws Exception {
+    for (int maxBatchSize : new int[] {1, 10, 100}) {
+      //given
+      databaseCleaner.cleanUp();
+      createAccount(1, 0);
+
+      //when
+      try (var pipeline = groupCommit.pipeline(maxBatchSize, Duration.ofMillis(5))) {
+        var result = Throughput.measure(32, 50, (thread, iteration) -> pipeline.submit(() ->
+            jdbcTemplate.update("update account set amount = amount + 1 where id = 1")).get());
+
+        //then
+        System.out.println("Max batch " + maxBatchSize + ": " + result + ", " + pipeline.commits() + " commits");
+        assertThat(result.failures(), is(0L));
+        assertThat(amount(1), is(32 * 50));
+      }
+    }
+  }
+
+  private void createAccount(int id, int amount) {
+    transactionsWrapper.readCommitted(() -> {
+      var account = new Account();
+      account.setId(id);
+      account.setAmount(amount);
+      accountRepository.saveAndFlush(account);
+    });
+  }
+
+  private void createUser(String userName) {
+    var user = new User();
+    user.setUserName(userName);
+    userRepository.saveAndFlush(user);
+  }
+
+  private int amount(int id) {
+    return accountRepository.findById(id).map(Account::getAmount).orElseThrow();
+  }
+
+}
@@ -0,0 +1,190 @@
+package me.konoplev.isolation.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.zaxxer.hikari.HikariDataSource;
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.Throughput;
+import me.konoplev.isolation.Throughput.Result;
+import me.konoplev.isolation.repository.AccountRepository;
+import me.konoplev.isolation.repository.UserRepository;
+import me.konoplev.isolation.repository.dto.Account;
+import me.konoplev.isolation.repository.dto.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionSystemException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@PostgresTest
+class NestedTransactionsTest {
+
+  private static final int THREADS = 5;
+
+  @Autowired
+  private TransactionsWrapper transactionsWrapper;
+
+  @Autowired
+  private AccountRepository accountRepository;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private DatabaseCleaner databaseCleaner;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private HikariDataSource dataSource;
+
+  @BeforeEach
+  public void cleanUp() {
+    databaseCleaner.cleanUp();
+  }
+
+  @Test
+  public void failedNestedTransactionRollsBackToItsSavepointOnly() {
+    //given
+    createAccount(1, 0);
+    createAccount(2, 0);
+    createUser("taken");
+
+    //when
+    transactionsWrapper.readCommitted(() -> {
+      accountRepository.updateAmount(1, 10);
+      assertThrows(DataIntegrityViolationException.class, () -> transactionsWrapper.nested(() -> {
+        accountRepository.updateAmount(2, 666);
+        createUser("taken");
+      }));
+      transactionsWrapper.nested(() -> accountRepository.updateAmount(2, 20));
+    });
+
+    //then
+    assertThat(amount(1), is(10));
+    assertThat(amount(2), is(20));
+    assertThat(userRepository.count(), is(1L));
+  }
+
+  @Test
+  public void entitiesLoadedBeforeAFailedNestedTransactionAreStillFlushed() {
+    //given
+    createAccount(1, 0);
+    createAccount(2, 0);
+    createUser("taken");
+
+    //when
+    transactionsWrapper.readCommitted(() -> {
+      Account account = accountRepository.findById(1).orElseThrow();
+      assertThrows(DataIntegrityViolationException.class, () -> transactionsWrapper.nested(() -> {
+        accountRepository.findById(2).orElseThrow().setAmount(666);
+        createUser("taken");
+      }));
+      account.setAmount(10);
+    });
+
+    //then
+    assertThat(amount(1), is(10));
+    assertThat(amount(2), is(0));
+  }
+
+  @Test
+  public void changingAnEntityOfTheOuterTransactionInAFailedNestedOneRollsBackBoth() {
+    //given
+    createAccount(1, 0);
+    createUser("taken");
+
+    //when
+    assertThrows(TransactionSystemException.class, () -> transactionsWrapper.readCommitted(() -> {
+      Account account = accountRepository.findById(1).orElseThrow();
+      transactionsWrapper.nested(() -> {
+        account.setAmount(666);
+        createUser("taken");
+      });
+    }));
+
+    //then
+    assertThat(amount(1), is(0));
+  }
+
+  @Test
+  public void nestedTransactionsDoNotTakeASecondConnection() {
+    //given
+    // one account for the outer and one for the inner transaction of every thread
+    for (int id = 0; id < 2 * THREADS; id++) {
+      createAccount(id, 0);
+    }
+
+    //when
+    var requiresNew = measureWithPeakConnections(inner -> transactionsWrapper.readCommitted(inner));
+    var nested = measureWithPeakConnections(inner -> transactionsWrapper.nested(inner));
+
+    //then
+    System.out.println("REQUIRES_NEW: " + requiresNew);
+    System.out.println("NESTED: " + nested);
+    assertThat(requiresNew.result().failures(), is(0L));
+    assertThat(nested.result().failures(), is(0L));
+    assertThat(nested.peakConnections(), lessThanOrEqualTo(THREADS));
+    assertThat(amount(0), is(2 * 200));
+    assertThat(amount(THREADS), is(2 * 200));
+  }
+
+  private Measurement measureWithPeakConnections(InnerTransaction innerTransaction) {
+    var peak = new AtomicInteger();
+    var sampler = Executors.newSingleThreadScheduledExecutor();
+    sampler.scheduleAtFixedRate(() -> peak.accumulateAndGet(dataSource.getHikariPoolMXBean().getActiveConnections(), Math::max),
+        0, 200, TimeUnit.MICROSECONDS);
+    try {
+      var result = Throughput.measure(THREADS, 200, (thread, iteration) -> transactionsWrapper.readCommitted(() -> {
+        jdbcTemplate.update("update account set amount = amount + 1 where id = ?", thread);
+        // a REQUIRES_NEW transaction updating the row of the suspended outer one would wait for it forever
+        innerTransaction.run(() -> jdbcTemplate.update("update account set amount = amount + 1 where id = ?",
+            THREADS + thread));
+      }));
+      return new Measurement(result, peak.get());
+    } finally {
+      sampler.shutdownNow();
+    }
+  }
+
+  private void createAccount(int id, int amount) {
+    transactionsWrapper.readCommitted(() -> {
+      var account = new Account();
+      account.setId(id);
+      account.setAmount(amount);
+      accountRepository.saveAndFlush(account);
+    });
+  }
+
+  private void createUser(String userName) {
+    var user = new User();
+    user.setUserName(userName);
+    userRepository.saveAndFlush(user);
+  }
+
+  private int amount(int id) {
+    return accountRepository.findById(id).map(Account::getAmount).orElseThrow();
+  }
+
+  @FunctionalInterface
+  private interface InnerTransaction {
+    void run(Runnable inner);
+  }
+
+  private record Measurement(Result result, int peakConnections) {
+
+    @Override
+    public String toString() {
+      return result + ", at most " + peakConnections + " connections in use";
+    }
+  }
+
+}
@@ -3,6 +3,8 @@ package me.konoplev.isolation.util;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BinaryOperator;
 
@@ -11,7 +13,13 @@ import org.junit.jupiter.api.Test;
 
 import static java.util.concurrent.CompletableFuture.runAsync;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.hamcrest.Matchers.stringContainsInOrder;
 import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -129,4 +137,82 @@ class PhaseSyncTest {
     assertThat(phaseSync.noExceptions(), is(false));
   }
 
+  @Test
+  public void stalledScenarioFailsFastAfterTheDeadline() {
+    // given
+    PhaseSync phaseSync = new PhaseSync(Duration.ofMillis(200));
+
+    // when
+    long startedAt = System.nanoTime();
+    phaseSync.phase(Phases.SECOND, () -> {});
+    phaseSync.phase(Phases.THIRD, () -> {});
+    phaseSync.phase(Phases.FOURTH, () -> {});
+
+    // then
+    assertThat(Duration.ofNanos(System.nanoTime() - startedAt), lessThan(Duration.ofSeconds(1)));
+    assertThat(phaseSync.exceptionDetails(), stringContainsInOrder(
+        "Unexpected exception java.util.concurrent.TimeoutException in SECOND",
+        "message: Timeout waiting for SECOND, the deadline of 200 ms is over. Nobody has executed FIRST",
+        "Unexpected exception java.util.concurrent.TimeoutException in THIRD",
+        "Unexpected exception java.util.concurrent.TimeoutException in FOURTH"));
+  }
+
+  @Test
+  public void phaseBlockedInExecutionIsReported() {
+    // given
+    PhaseSync phaseSync = new PhaseSync(Duration.ofMillis(300));
+    phaseSync.setStallDiagnostics(() -> "session 42 waits for session 7");
+    CountDownLatch release = new CountDownLatch(1);
+    var blocked = runAsync(() -> phaseSync.phase(Phases.FIRST, release::await));
+
+    // when
+    phaseSync.phase(Phases.SECOND, () -> {});
+    release.countDown();
+    blocked.join();
+
+    // then
+    assertThat(phaseSync.exceptionDetails(), stringContainsInOrder(
+        "Timeout waiting for SECOND", "FIRST is executing for", "blocked in", "session 42 waits for session 7"));
+  }
+
+  @Test
+  public void waitsExecutionsAndTransactionsAreRecorded() {
+    // given
+    PhaseSync phaseSync = new PhaseSync();
+
+    // when
+    var second = runAsync(() -> phaseSync.transaction("t2", () -> phaseSync.phase(Phases.SECOND, () -> {})));
+    phaseSync.transaction("t1", () -> phaseSync.phase(Phases.FIRST, () -> Thread.sleep(50)));
+    second.join();
+
+    // then
+    var summary = phaseSync.latencies().summary();
+    assertThat(summary.stream().map(s -> s.kind() + " " + s.name()).toList(), contains(
+        "wait FIRST", "execution FIRST", "wait SECOND", "execution SECOND", "transaction t1", "transaction t2"));
+    assertThat(summary.stream().allMatch(s -> s.count() == 1), is(true));
+    // the sleep is the only lower bound that doesn't depend on when the other thread gets scheduled
+    assertThat(summary.get(1).p50(), greaterThanOrEqualTo(Duration.ofMillis(49)));
+    assertThat(summary.get(4).p50(), greaterThanOrEqualTo(Duration.ofMillis(49)));
+    // the wait for SECOND is a part of t2
+    assertThat(summary.get(2).p50(), lessThanOrEqualTo(summary.get(5).p50()));
+    assertThat(phaseSync.latencies().toCsv(), startsWith("kind,name,count,p50_us,p99_us,p999_us,max_us\nwait,FIRST,1,"));
+  }
+
+  @Test
+  public void transactionsAndPhasesRunUnderTheDeadline() {
+    // given
+    PhaseSync phaseSync = new PhaseSync();
+    var inTransaction = new AtomicReference<Deadline>();
+    var inPhase = new AtomicReference<Deadline>();
+
+    // when
+    phaseSync.transaction("t1", () -> inTransaction.set(Deadline.current().orElseThrow()));
+    runAsync(() -> phaseSync.phase(Phases.FIRST, () -> inPhase.set(Deadline.current().orElseThrow()))).join();
+
+    // then
+    assertThat(inTransaction.get(), is(phaseSync.deadline()));
+    assertThat(inPhase.get(), is(phaseSync.deadline()));
+    assertThat(Deadline.current().isPresent(), is(false));
+  }
+
 }
@@ -0,0 +1,112 @@
+package me.konoplev.isolation.util;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import me.konoplev.isolation.MySqlTest;
+import me.konoplev.isolation.PostgresTest;
+import me.konoplev.isolation.Throughput;
+import me.konoplev.isolation.repository.AccountRepository;
+import me.konoplev.isolation.repository.dto.Account;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * The same repository calls with the default connection settings and with the {@code performance} profile,
+ * every nested class gets its own application context.
+ */
+class StatementCachingTest {
+
+  private static final int CALLS = 2000;
+  private static final Map<String, Duration> latencies = new ConcurrentHashMap<>();
+
+  @AfterAll
+  public static void printComparison() {
+    latencies.keySet().stream().sorted()
+        .forEach(name -> System.out.println(name + ": " + latencies.get(name).toNanos() / 1000 + " us per call"));
+  }
+
+  @Nested
+  @PostgresTest
+  class PostgresDefault extends RepositoryLatency {
+  }
+
+  @Nested
+  @PostgresTest
+  @ActiveProfiles("performance")
+  class PostgresPerformance extends RepositoryLatency {
+
+    @Autowired
+    private StatementCachingValidator validator;
+
+    @Test
+    public void statementsArePreparedOnTheServerFromTheFirstExecution() {
+      assertThat(validator.settings(), hasEntry("prepareThreshold", 1));
+      assertThat(validator.settings(), hasEntry(StatementCachingValidator.IN_CLAUSE_PARAMETER_PADDING, true));
+    }
+  }
+
+  @Nested
+  @MySqlTest
+  class MySqlDefault extends RepositoryLatency {
+  }
+
+  @Nested
+  @MySqlTest
+  @ActiveProfiles("performance")
+  class MySqlPerformance extends RepositoryLatency {
+
+    @Autowired
+    private StatementCachingValidator validator;
+
+    @Test
+    public void preparedStatementsAreCachedOnTheServer() {
+      assertThat(validator.settings(), hasEntry("useServerPrepStmts", true));
+      assertThat(validator.settings(), hasEntry("cachePrepStmts", true));
+      assertThat(validator.settings(), hasEntry("rewriteBatchedStatements", true));
+    }
+  }
+
+  abstract static class RepositoryLatency {
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionsWrapper transactionsWrapper;
+
+    @Autowired
+    private DatabaseCleaner databaseCleaner;
+
+    @Test
+    public void findByIdAndUpdateAmount() {
+      //given
+      databaseCleaner.cleanUp();
+      transactionsWrapper.readCommitted(() -> {
+        var account = new Account();
+        account.setId(1);
+        account.setAmount(0);
+        accountRepository.saveAndFlush(account);
+      });
+
+      //when
+      var result = Throughput.measure(1, CALLS, (thread, iteration) -> transactionsWrapper.readCommitted(() -> {
+        int amount = accountRepository.findById(1).orElseThrow().getAmount();
+        accountRepository.updateAmount(1, amount + 1);
+      }));
+
+      //then
+      latencies.put(getClass().getSimpleName(), result.elapsed().dividedBy(CALLS));
+      assertThat(result.failures(), is(0L));
+      assertThat(accountRepository.findById(1).orElseThrow().getAmount(), is(CALLS));
+    }
+  }
+
+}